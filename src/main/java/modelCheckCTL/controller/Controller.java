@@ -3,18 +3,33 @@ package modelCheckCTL.controller;
 import modelCheckCTL.controller.ctl.Validator.ParseException;
 import modelCheckCTL.controller.ctl.Validator.Validator;
 import modelCheckCTL.controller.types.kripke.KripkeFileObj;
+import modelCheckCTL.controller.types.kripke.KripkeLoader;
+import modelCheckCTL.controller.types.kripke.KripkeRepository;
+import modelCheckCTL.controller.types.kripke.KripkeSnapshot;
 import modelCheckCTL.controller.types.misc.Options;
 import modelCheckCTL.controller.types.misc.TestFiles;
 import modelCheckCTL.controller.types.modelCheckRelated.*;
 import modelCheckCTL.model.Model;
+import modelCheckCTL.controller.types.kripke.BisimulationQuotient;
 import modelCheckCTL.controller.types.kripke.Kripke;
 import modelCheckCTL.controller.types.kripke.State;
+import modelCheckCTL.controller.types.kripke.StateSet;
 import modelCheckCTL.controller.types.kripke.Transition;
 import modelCheckCTL.view.View;
 import modelCheckCTL.controller.ctl.Parser.Parser;
+import modelCheckCTL.controller.ctl.checker.Evaluator;
+import modelCheckCTL.controller.ctl.checker.LocalChecker;
+import modelCheckCTL.controller.ctl.checker.SymbolicChecker;
+import modelCheckCTL.controller.ctl.formula.Formula;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 
 import static modelCheckCTL.controller.types.modelCheckRelated.FormulaInputSource.ARGUMENT;
@@ -45,6 +60,53 @@ public class Controller {
      */
     private String testFilesDir = "end-to-end-tests";
 
+    /**
+     * Loads each kripke file once and shares the parsed (frozen) {@link Kripke} between everything that needs it - validation, the state to check, model checking and the end to end tests. The files are parsed by a {@link KripkeLoader}.
+     */
+    private final KripkeRepository kripkeRepository = new KripkeRepository(new KripkeLoader(), getClass().getClassLoader());
+
+    /**
+     * One {@link Evaluator} per shared {@link Kripke}, so the memoized subformula results are reused by every formula checked on the same model. Weak keys, so an Evaluator goes away with its Kripke when the repository drops it.
+     */
+    private final Map<Kripke, Evaluator> evaluators = new WeakHashMap<Kripke, Evaluator>();
+
+    /**
+     * One {@link LocalChecker} per shared {@link Kripke}, for the same reason as evaluators
+     */
+    private final Map<Kripke, LocalChecker> localCheckers = new WeakHashMap<Kripke, LocalChecker>();
+
+    /**
+     * One {@link SymbolicChecker} per shared {@link Kripke} (-x symbolic), for the same reason as evaluators
+     */
+    private final Map<Kripke, SymbolicChecker> symbolicCheckers = new WeakHashMap<Kripke, SymbolicChecker>();
+
+    /**
+     * One stress tested {@link SymbolicChecker} (see {@link SymbolicChecker#SymbolicChecker(Kripke, boolean)}) per shared {@link Kripke}, for the cross check (-x cross)
+     */
+    private final Map<Kripke, SymbolicChecker> stressTestedSymbolicCheckers = new WeakHashMap<Kripke, SymbolicChecker>();
+
+    /**
+     * Pool the {@link Evaluator}s split the preE, AX and fixpoint steps of big models over (-p), or null if that's off (-p 1, the default)
+     */
+    private final ForkJoinPool preImagePool;
+
+    /**
+     * True if formulas are checked on the {@link BisimulationQuotient} of the Kripke (-q) and the results mapped back to its states
+     */
+    private final boolean minimize;
+
+    /**
+     * Names of the initial states (-i), or null if none were specified, and the kripke file they're for
+     */
+    private final String[] initialStates;
+    private final String initialStatesKripkeFilepath;
+
+    /**
+     * The last kripke file restricted to the initial states: the file as loaded and as restricted. Guarded by initialStates.
+     */
+    private KripkeFileObj unrestrictedKripkeFileObj;
+    private KripkeFileObj restrictedKripkeFileObj;
+
 
     /**
      * Kicks off the program after being called from Main
@@ -57,7 +119,16 @@ public class Controller {
         if (model == null || view == null || options == null) { throw new NullPointerException("A param to Controller constructor is null"); }
         this.model = model;
         this.view = view;
-        runProgram(options);
+        Integer parallelism = options.getParallelism();
+        this.preImagePool = parallelism != null && parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.minimize = options.getMinimize() != null && options.getMinimize();
+        this.initialStates = options.getInitialStates();
+        this.initialStatesKripkeFilepath = options.getKripkeFilepath();
+        try {
+            runProgram(options);
+        } finally {
+            if (preImagePool != null) { preImagePool.shutdown(); }
+        }
     }
 
 
@@ -72,19 +143,30 @@ public class Controller {
      */
     public void runProgram(Options options) throws Exception {
 
+        // batch mode is its own thing: many formulas on one model, results printed as they come
+        if (options.getRunBatch()) {
+            runBatch(options);
+            return;
+        }
+
+        // so is converting a kripke file to a snapshot
+        if (options.getRunSnapshotConversion()) {
+            convertToSnapshot(options);
+            return;
+        }
+
         // declare vars
         Boolean runEndToEndTests = options.getRunEndToEndTests();
         Boolean runAllEndToEndTests = options.getRunAllEndToEndTests();
         Boolean runOnlyEndToEndTests = options.getRunOnlyEndToEndTests();
         Boolean runOnlyMicrowave = options.getRunOnlyMicrowave();
-        Set statesThatHold = null;
-        Set allStates = null;
+        Kripke kripke = null;
         if (!runOnlyEndToEndTests) {
             if (runOnlyMicrowave) {
                 EndToEndTestResultWithValidation endToEndTestResult = runEndToEndTest("Microwave.txt", "Microwave - Test Formulas.txt", options);
                 model.setEndToEndTestResult(endToEndTestResult);
             } else {
-                allStates = getKripkeFileObj(options.getKripkeFilepath()).getStates();
+                kripke = getKripkeFileObj(options.getKripkeFilepath()).getKripke();
             }
         }
         String stateToCheck = options.getStateToCheckStr();
@@ -112,8 +194,7 @@ public class Controller {
             model.setValidationResults(validationResults);
 
             // run model checking
-            statesThatHold = modelCheck(options.getKripkeFilepath(), getFormula(options));
-            ModelCheckResults modelCheckResults = new ModelCheckResults(statesThatHold, allStates, stateToCheck, getFormula(options));
+            ModelCheckResults modelCheckResults = modelCheck(kripke, getFormula(options), stateToCheck, options.getEngine());
             model.setModelCheckResults(modelCheckResults);
         }
 
@@ -140,24 +221,259 @@ public class Controller {
     // MODEL CHECKING
 
     /**
-     * Model checks a single supplied formula on a single supplied model. Returns the {@link Set} of {@link State}s which hold for the formula.
+     * Model checks a single supplied formula on a single supplied model. Returns the {@link StateSet} of the states which hold for the formula.
+     * The formula is parsed to a {@link Formula} AST by {@link Parser#compile(String)} (which caches it, so the same formula on another model isn't parsed again) and then evaluated by an {@link Evaluator} for the model's {@link Kripke}.
      * @param kripkeFilepath {@link String} of the file/filepath of the kripke file. Will be like kripke.txt if the file is in /resources or like end-to-end-tests/kripe.txt if in a subfolder of /resources.
      * @param formula {@link String} CTL formula to model check
-     * @return the {@link Set} of {@link State}s which hold for the formula.
+     * @return the {@link StateSet} of the states which hold for the formula. The indices in the set refer to the states of the {@link Kripke} parsed from kripkeFilepath.
      * @throws IOException
      * @throws modelCheckCTL.controller.ctl.Parser.ParseException
      */
-    public Set modelCheck(String kripkeFilepath, String formula) throws IOException, modelCheckCTL.controller.ctl.Parser.ParseException {
+    public StateSet modelCheck(String kripkeFilepath, String formula) throws IOException, modelCheckCTL.controller.ctl.Parser.ParseException {
         KripkeFileObj kripkeFileObj = getKripkeFileObj(kripkeFilepath);
         ModelCheckInputs modelCheckInputs = new ModelCheckInputs(kripkeFileObj.getKripke(), formula);
-        Parser parser = new Parser(modelCheckInputs);
-        Set statesThatHold = parser.Parse();
+        Evaluator evaluator = getEvaluator(modelCheckInputs.getKripke());
+        return modelCheck(evaluator, modelCheckInputs.getFormula());
+    }
+
+    /**
+     * Model checks a single supplied formula on a {@link Kripke} with the specified {@link Engine}. With the local engine (which AUTO picks when there is a state to check) only the state to check is checked, by a {@link LocalChecker} searching forward from it, and the results don't have the states that held. With the symbolic engine the formula is evaluated for every state by the Kripke's {@link SymbolicChecker}. Otherwise (global, and cross, which only adds the {@link #crossCheck(Kripke, String)} of the end to end tests) the formula is evaluated for every state by the Kripke's {@link Evaluator}.
+     * With -q the formula is checked on the Kripke's {@link BisimulationQuotient} for the formula's atoms instead (with the checkers of the quotient): the labels are projected onto the atoms the formula mentions and the states it can't tell apart are merged. The states that held are mapped back, so the results are always about the Kripke's own states.
+     * @param kripke {@link Kripke} to model check
+     * @param formula {@link String} CTL formula to model check
+     * @param stateToCheck name of the state to check, ie "s1", or null for all states
+     * @param engine {@link Engine} to model check with
+     * @return {@link ModelCheckResults} of the check
+     * @throws modelCheckCTL.controller.ctl.Parser.ParseException
+     */
+    public ModelCheckResults modelCheck(Kripke kripke, String formula, String stateToCheck, Engine engine) throws modelCheckCTL.controller.ctl.Parser.ParseException {
+        Formula compiledFormula = Parser.compile(formula);
+        BisimulationQuotient quotient = minimize ? kripke.getBisimulationQuotient(compiledFormula.getAtoms()) : null;
+        Kripke checkedKripke = quotient != null ? quotient.getQuotient() : kripke;
+        if (stateToCheck != null && (engine == null || engine == Engine.AUTO || engine == Engine.LOCAL)) {
+            int index = kripke.indexOf(stateToCheck);
+            if (index >= 0 && quotient != null) { index = quotient.getBlock(index); }
+            Boolean stateToCheckHold = index >= 0 && getLocalChecker(checkedKripke).holds(compiledFormula, index);
+            return new ModelCheckResults(stateToCheckHold, kripke, stateToCheck, formula);
+        }
+        StateSet statesThatHold;
+        if (engine == Engine.SYMBOLIC) {
+            statesThatHold = getSymbolicChecker(checkedKripke).evaluate(compiledFormula);
+        } else {
+            statesThatHold = getEvaluator(checkedKripke).evaluate(compiledFormula);
+        }
+        if (quotient != null) { statesThatHold = quotient.lift(statesThatHold).readOnly(); }
+        return new ModelCheckResults(statesThatHold, kripke, stateToCheck, formula);
+    }
+
+    /**
+     * Cross check (-x cross): checks a formula on every state of a {@link Kripke} with each of the other engines and compares them with the global engine (the Kripke's {@link Evaluator}). The engines compared are the symbolic engine, the symbolic engine with the BDDs garbage collected and reordered in every operation, the local engine, and the global, symbolic and local engines on the Kripke's {@link BisimulationQuotient} for the formula's atoms (-q).
+     * @param kripke {@link Kripke} to model check
+     * @param formula {@link String} CTL formula to model check
+     * @return a description of the first disagreement found, ie "symbolic engine disagrees with global on s3 (holds)" or the exception an engine threw, or null if all the engines agree
+     * @throws modelCheckCTL.controller.ctl.Parser.ParseException
+     */
+    public String crossCheck(Kripke kripke, String formula) throws modelCheckCTL.controller.ctl.Parser.ParseException {
+        Formula compiledFormula = Parser.compile(formula);
+        StateSet expected = getEvaluator(kripke).evaluate(compiledFormula);
+        BisimulationQuotient quotient = kripke.getBisimulationQuotient(compiledFormula.getAtoms());
+        Kripke quotientKripke = quotient.getQuotient();
+        String[] engineNames = { "symbolic", "stress tested symbolic", "local", "global -q", "symbolic -q", "local -q" };
+        for (int e = 0; e < engineNames.length; e++) {
+            StateSet actual;
+            try {
+                switch (e) {
+                    case 0: actual = getSymbolicChecker(kripke).evaluate(compiledFormula); break;
+                    case 1: actual = getStressTestedSymbolicChecker(kripke).evaluate(compiledFormula); break;
+                    case 2: actual = holdingStates(getLocalChecker(kripke), compiledFormula); break;
+                    case 3: actual = quotient.lift(getEvaluator(quotientKripke).evaluate(compiledFormula)); break;
+                    case 4: actual = quotient.lift(getSymbolicChecker(quotientKripke).evaluate(compiledFormula)); break;
+                    default: actual = quotient.lift(holdingStates(getLocalChecker(quotientKripke), compiledFormula)); break;
+                }
+            } catch (RuntimeException ex) {
+                return engineNames[e] + " engine failed: " + ex;
+            }
+            int state = expected.symmetricDifference(actual).nextSetBit(0);
+            if (state >= 0) {
+                return engineNames[e] + " engine disagrees with global on " + kripke.getStateName(state) + " (" + (actual.contains(state) ? "holds" : "does not hold") + ")";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the {@link StateSet} of the states of the {@link LocalChecker}'s Kripke which hold for the formula, checking them one at a time
+     */
+    private StateSet holdingStates(LocalChecker localChecker, Formula formula) {
+        int numStates = localChecker.getKripke().getNumStates();
+        StateSet statesThatHold = new StateSet(numStates);
+        for (int i = 0; i < numStates; i++) {
+            if (localChecker.holds(formula, i)) { statesThatHold.add(i); }
+        }
+        return statesThatHold;
+    }
+
+    /**
+     * Gets the shared stress tested {@link SymbolicChecker} for a {@link Kripke} (see {@link SymbolicChecker#SymbolicChecker(Kripke, boolean)}), creating it the first time
+     * @param kripke {@link Kripke} to model check
+     * @return the stress tested {@link SymbolicChecker} for the Kripke
+     */
+    private SymbolicChecker getStressTestedSymbolicChecker(Kripke kripke) {
+        synchronized (stressTestedSymbolicCheckers) {
+            SymbolicChecker symbolicChecker = stressTestedSymbolicCheckers.get(kripke);
+            if (symbolicChecker == null) {
+                symbolicChecker = new SymbolicChecker(kripke, true);
+                stressTestedSymbolicCheckers.put(kripke, symbolicChecker);
+            }
+            return symbolicChecker;
+        }
+    }
+
+    /**
+     * Gets the shared {@link SymbolicChecker} for a {@link Kripke}, creating it the first time
+     * @param kripke {@link Kripke} to model check
+     * @return the {@link SymbolicChecker} for the Kripke
+     */
+    public SymbolicChecker getSymbolicChecker(Kripke kripke) {
+        synchronized (symbolicCheckers) {
+            SymbolicChecker symbolicChecker = symbolicCheckers.get(kripke);
+            if (symbolicChecker == null) {
+                symbolicChecker = new SymbolicChecker(kripke);
+                symbolicCheckers.put(kripke, symbolicChecker);
+            }
+            return symbolicChecker;
+        }
+    }
+
+    /**
+     * Gets the shared {@link LocalChecker} for a {@link Kripke}, creating it the first time
+     * @param kripke {@link Kripke} to model check
+     * @return the {@link LocalChecker} for the Kripke
+     */
+    public LocalChecker getLocalChecker(Kripke kripke) {
+        synchronized (localCheckers) {
+            LocalChecker localChecker = localCheckers.get(kripke);
+            if (localChecker == null) {
+                localChecker = new LocalChecker(kripke);
+                localCheckers.put(kripke, localChecker);
+            }
+            return localChecker;
+        }
+    }
+
+    /**
+     * Gets the shared {@link Evaluator} for a {@link Kripke}, creating it the first time
+     * @param kripke {@link Kripke} to model check
+     * @return the {@link Evaluator} for the Kripke
+     */
+    public Evaluator getEvaluator(Kripke kripke) {
+        synchronized (evaluators) {
+            Evaluator evaluator = evaluators.get(kripke);
+            if (evaluator == null) {
+                evaluator = new Evaluator(kripke, preImagePool);
+                evaluators.put(kripke, evaluator);
+            }
+            return evaluator;
+        }
+    }
+
+    /**
+     * Model checks a single supplied formula with an existing {@link Evaluator}. Use this when checking several formulas on the same model - the Evaluator memoizes the states of each subformula, so subformulas shared between the formulas are only computed once.
+     * @param evaluator {@link Evaluator} for the {@link Kripke} to model check
+     * @param formula {@link String} CTL formula to model check
+     * @return the read-only {@link StateSet} of the states which hold for the formula
+     * @throws modelCheckCTL.controller.ctl.Parser.ParseException
+     */
+    public StateSet modelCheck(Evaluator evaluator, String formula) throws modelCheckCTL.controller.ctl.Parser.ParseException {
+        Formula compiledFormula = Parser.compile(formula);
+        StateSet statesThatHold = evaluator.evaluate(compiledFormula);
         return statesThatHold;
     }
 
 
 
 
+    // BATCH MODE
+
+    /**
+     * Batch mode (-k <kripke file> -b <formula file>): model checks every formula in the formula file against the one model. The model is loaded once and all the formulas share the model's {@link Evaluator} (or {@link LocalChecker} for the lines with a state to check, unless -x global), so subformulas repeated across the formulas are only computed once.
+     * The formula file has one formula per line, optionally with a state to check and a semicolon in front of it (ie, "EXp" or "s1;EXp"). Blank lines and lines starting with # are skipped.
+     * Each formula's result is printed as soon as it's checked (see {@link View#printBatchResult}). A formula which isn't well formed or a state which isn't in the model gets an error line and the rest of the file is still checked.
+     * @param options {@link Options} object with options specified by user in the command line arguments as well as the hardcoded options at the top of Main.java
+     * @throws Exception
+     */
+    public void runBatch(Options options) throws Exception {
+        KripkeFileObj kripkeFileObj = getKripkeFileObj(options.getKripkeFilepath());
+        if (kripkeFileObj.getErrorMessage() != null) {
+            handleError("❌ failed parsing - " + kripkeFileObj.getErrorMessage(), options.getPrintExceptions());
+            return;
+        }
+        Kripke kripke = kripkeFileObj.getKripke();
+        String batchFilename = options.getBatchFilename();
+        int numChecked = 0;
+        int numErrors = 0;
+        ClassLoader classLoader = getClass().getClassLoader();
+        try (InputStream inputStream = classLoader.getResourceAsStream(batchFilename)) {
+            if (inputStream == null) {
+                throw new IllegalArgumentException("file not found! " + batchFilename);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
+            String rawLine;
+            int lineNum = 0;
+            while ((rawLine = reader.readLine()) != null) {
+                lineNum++;
+                String line = rawLine.replaceAll("\uFEFF", "").trim();
+                if (line.equals("") || line.startsWith("#")) { continue; }
+                String stateToCheck = null;
+                String formula = line;
+                int semicolon = line.indexOf(';');
+                if (semicolon >= 0) {
+                    stateToCheck = line.substring(0, semicolon).trim();
+                    formula = line.substring(semicolon + 1).trim();
+                    if (kripke.indexOf(stateToCheck) < 0) {
+                        view.printBatchError(lineNum, formula, "state to check " + stateToCheck + " is not in the model");
+                        numErrors++;
+                        continue;
+                    }
+                }
+                ModelCheckResults modelCheckResults;
+                try {
+                    modelCheckResults = modelCheck(kripke, formula, stateToCheck, options.getEngine());
+                } catch (modelCheckCTL.controller.ctl.Parser.ParseException | modelCheckCTL.controller.ctl.Parser.TokenMgrError e) {
+                    view.printBatchError(lineNum, formula, "formula is not well formed: " + e.getMessage().split("\n")[0]);
+                    numErrors++;
+                    continue;
+                }
+                view.printBatchResult(lineNum, modelCheckResults);
+                numChecked++;
+            }
+        }
+        view.printBatchSummary(batchFilename, numChecked, numErrors);
+    }
+
+
+
+
+    // SNAPSHOTS
+
+    /**
+     * Snapshot conversion (-k <kripke file> -c <snapshot file>): parses the kripke text file and saves it as a {@link KripkeSnapshot}, which loads much faster than the text file the next time (use it like any kripke file, ie -k model.ksnap). A model which doesn't pass parsing isn't saved.
+     * @param options {@link Options} object with options specified by user in the command line arguments as well as the hardcoded options at the top of Main.java
+     * @throws Exception
+     */
+    public void convertToSnapshot(Options options) throws Exception {
+        KripkeFileObj kripkeFileObj = getKripkeFileObj(options.getKripkeFilepath());
+        if (kripkeFileObj.getErrorMessage() != null) {
+            handleError("❌ failed parsing - " + kripkeFileObj.getErrorMessage(), options.getPrintExceptions());
+            return;
+        }
+        KripkeSnapshot.save(kripkeFileObj.getKripke(), new File(options.getSnapshotFilename()));
+        view.printSnapshotSaved(options.getKripkeFilepath(), options.getSnapshotFilename(), kripkeFileObj.getKripke());
+    }
+
+
+
+
     // VALIDATION (OF INDIVIDUAL MODEL/FORMULA/STATES, NOT VALIDATION OF THE END TO END TESTS)
 
     /**
@@ -171,7 +487,12 @@ public class Controller {
         ValidateFormulaResults validateFormulaResults = validateFormula(getFormula(options));
         ValidateStateToCheckResults validateStateToCheckResults = null;
         if (options.getStateToCheckStr() != null) {
-            validateStateToCheckResults = validateStateToCheck(options.getStateToCheckStr(), getKripkeFileObj(options.getKripkeFilepath()).getStates());
+            KripkeFileObj kripkeFileObj = getKripkeFileObj(options.getKripkeFilepath());
+            if (kripkeFileObj.getKripke() != null) {
+                validateStateToCheckResults = validateStateToCheck(options.getStateToCheckStr(), kripkeFileObj.getKripke());
+            } else {
+                validateStateToCheckResults = validateStateToCheck(options.getStateToCheckStr(), kripkeFileObj.getStates());
+            }
         }
         ValidationResults validationResults = new ValidationResults(validateModelResults,validateFormulaResults,validateStateToCheckResults);
         return validationResults;
@@ -231,6 +552,16 @@ public class Controller {
         return new ValidateStateToCheckResults(stateToCheckPass, stateToCheck);
     }
 
+    /**
+     * Same as validateStateToCheck with the states in the model, but looks the state up in the {@link Kripke}'s state index, so the {@link State} objects of a big model (ie, a snapshot, see {@link KripkeSnapshot}) don't have to be made just for this
+     * @param stateToCheck name of the state to check
+     * @param kripke {@link Kripke} of the model
+     * @return A {@link ValidateStateToCheckResults} results object
+     */
+    public ValidateStateToCheckResults validateStateToCheck(String stateToCheck, Kripke kripke) {
+        return new ValidateStateToCheckResults(kripke.indexOf(stateToCheck) >= 0, stateToCheck);
+    }
+
 
 
 
@@ -302,163 +633,45 @@ public class Controller {
      * s2 : q t r,
      * s3 : , (i.e. set of propositional atoms for state s3 is empty)
      * s4 : t;
+     * The file is only parsed the first time (or when it changed since), after that the same {@link KripkeFileObj} is returned from the {@link KripkeRepository}.
      * @param kripkeFilepath {@link String} filename of a kripke text file
-     * @return A {@link Kripke} object
+     * @return A {@link KripkeFileObj} object with the {@link Kripke} in it. Shared, so it must not be modified.
      * @throws IOException
      */
     public KripkeFileObj getKripkeFileObj(String kripkeFilepath) throws IOException {
-        ClassLoader classLoader = getClass().getClassLoader();
-        InputStream inputStream = null;
-        inputStream = classLoader.getResourceAsStream(kripkeFilepath);
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
-        Set states = new HashSet<State>();
-        Set transitions  = new HashSet<Transition>();
-        Boolean parsedKripkeLabelsLine = false;
-        KripkeFileObj kripkeFileObj = new KripkeFileObj();
-        kripkeFileObj.setKripkeFilepath(kripkeFilepath);
-        kripkeFileObj.setStates(states);
-        kripkeFileObj.setTransitions(transitions);
-        kripkeFileObj.setLineNum(1);
-        while (reader.ready()) {
-            String line = reader.readLine();
-            line = line.trim();
-            char firstChar = line.charAt(0);
-
-            // first line should always be state line
-            if (kripkeFileObj.getLineNum() == 1) {
-                line = removeByteOrderMark(line);
-                kripkeFileObj = parseKripkeStates(kripkeFileObj, line); }
-            // after first line, if it starts with a "t", it's a transition line
-            else if (firstChar == 't') {
-                if (kripkeFileObj.getErrorMessage() == null) {
-                    kripkeFileObj = parseKripkeTransitionLine(kripkeFileObj, line);
-                }
-            }
-            // and if it starts with an s it's a labels line
-            else if (firstChar == 's') {
-                kripkeFileObj = parseKripkeLabelsLine(kripkeFileObj, line);
-                parsedKripkeLabelsLine = true;
-            }
-            int curLineNum = kripkeFileObj.getLineNum();
-            curLineNum++;
-            kripkeFileObj.setLineNum(curLineNum);
-        }
-        Kripke kripke = new Kripke(kripkeFileObj.getStates(), kripkeFileObj.getTransitions());
-        if (parsedKripkeLabelsLine == false) {
-            kripkeFileObj.setErrorMessage(kripkeFileObj.getKripkeFilepath() + ": Syntax error on line " + kripkeFileObj.getLineNum() + ": no labels line found (a label line example could be: \"s1 : p;\").");
-        }
-        kripkeFileObj.setKripke(kripke);
-        return kripkeFileObj;
-    }
-
-    /**
-     * Gets a {@link Set} of labels from a line in the Kripke text file. Return is void void because it's modifying an existing state (adding labels to it), which is why all the states are passed as a param. The line must be in one the following type of formats:
-     * s1 : p q, (propositional atom names are separated by a space; a name consists of letters, it is casesensitive)
-     * s2 : q t r,
-     * s3 : , (i.e. set of propositional atoms for state s3 is empty)
-     * s4 : t; (will end in a comma if not the last line, or a semicolon if it is the last line)
-     * @param line {@link String} a labels line from a Kripke text file. Must be in a format like "s2 : q t r,". Case sensitive and spaces matter. Can end in a comma or semicolon.
-     * @param kripkeFileObj
-     * @throws IOException
-     */
-    private static KripkeFileObj parseKripkeLabelsLine(KripkeFileObj kripkeFileObj, String line) throws IOException {
-        String[] lineArr = line.split(" ",0);
-        String stateName = lineArr[0];
-        stateName = stateName.replace(",","");
-        Integer stateNum = parseInt(stateName.replace("s",""));
-        if (!contains(kripkeFileObj.getStates(),new State(stateNum))) { kripkeFileObj.setErrorMessage(kripkeFileObj.getKripkeFilepath() + ": Syntax error on line " + kripkeFileObj.getLineNum() + ": state \"" + stateName + "\" not found in kripke states."); }
-        Set labels = new HashSet<Character>();
-        lineArr[lineArr.length - 1] = lineArr[lineArr.length - 1].replace(",","");
-        lineArr[lineArr.length - 1] = lineArr[lineArr.length - 1].replace(";","");
-        int lineArrElemNum = 0;
-        for (Object lineArrElemObj : lineArr) {
-            String lineArrElem = (String) lineArrElemObj;
-            if (lineArrElemNum != 0 && lineArrElemNum != 1) { // skip state name and colon and start at labels
-                String label = lineArrElem;
-                label = label.replace(",","");
-                label = label.replace(";","");
-                if (labels.contains(label)) { kripkeFileObj.setErrorMessage(kripkeFileObj.getKripkeFilepath() + ": Syntax error on line " + kripkeFileObj.getLineNum() + ": label \"" + label + "\" already exists in state \"" + stateName + "\"."); }
-                labels.add(label);
-            }
-            lineArrElemNum++;
-        }
-        if (contains(kripkeFileObj.getStates(),new State(stateNum))) {
-            getState(stateNum, kripkeFileObj.getStates()).setLabels(labels);
-        }
-        return kripkeFileObj;
+        KripkeFileObj kripkeFileObj = kripkeRepository.get(kripkeFilepath);
+        if (initialStates == null || !kripkeFilepath.equals(initialStatesKripkeFilepath)) { return kripkeFileObj; }
+        return restrictToInitialStates(kripkeFileObj);
     }
 
     /**
-     * Gets all the states in a Kripke from the text file of the Kripke. The line must be in a format like this: "s1, s2, s3, s4;" where the states are separated by a comma and a space and the last state is followed by a semicolon.
-     * @param line {@link String} line from a Kripke text file (the first line). The line must be in a format like this: "s1, s2, s3, s4;" where the states are separated by a comma and a space and the last state is followed by a semicolon.
-     * @return A {@link Set} representing all the {@link State}s specified in the line.
+     * Restricts the kripke file (-k) to the states reachable from the initial states (-i), see {@link Kripke#restrictToReachable(StateSet)}. The result is kept until the repository loads the file again.
+     * @param kripkeFileObj {@link KripkeFileObj} of the kripke file as loaded
+     * @return a {@link KripkeFileObj} with the restricted {@link Kripke}, or with an error message if an initial state isn't in the kripke. kripkeFileObj itself if it has an error already.
      */
-    private static KripkeFileObj parseKripkeStates(KripkeFileObj kripkeFileObj, String line) throws IOException {
-        Set states = new HashSet<State>();
-        line = line.trim();
-        String[] stateStrings = line.split(",",0);
-        for (Object stateObj : stateStrings) {
-            String stateStr = (String) stateObj;
-            stateStr = stateStr.trim();
-            stateStr = stateStr.replace(",","");
-            stateStr = stateStr.replace(";","");
-            stateStr = stateStr.replace("s","");
-            Integer stateInt = parseInt(stateStr);
-            State newState = new State(stateInt);
-            if (contains(states, newState)) {
-                kripkeFileObj.setErrorMessage(kripkeFileObj.getKripkeFilepath() + ": Syntax error on line 1: duplicate state \"" + newState.toString() + "\" found.");
-            }
-            states.add(newState);
-        }
-        kripkeFileObj.setStates(states);
-       return kripkeFileObj;
-    }
-
-    /**
-     * Gets a single transition from one line of the Kripke text file. The line must be in the format like "t4 : s4 – s2,", which is the transition name and the from and to states of the transition respectively. The spaces matter and the transition line must end in a comma or semicolon.
-     * The from and to states are actual references to the states in the Kripe. Ie, they have the same memory address and are not a copy. For a text output that shouldn't matter, but for a graphical output rendering the directed graph, that will be necessary.
-     * @param line One {@link String} line of the Kripke text file. Any line that starts with "t" is a transition. The line must be in the format like "t4 : s4 – s2,", which is the transition name and the from and to states of the transition respectively. The spaces matter and the transition line must end in a comma or semicolon.
-     * @return A {@link Transition} of the transition name and its from and to states.
-     */
-    private static KripkeFileObj parseKripkeTransitionLine(KripkeFileObj kripkeFileObj, String line) throws IOException {
-        String[] transitionLineArr = line.split(" ",0); // ie, ["t1",":","s1","-","s2,"]
-        String transitionName = transitionLineArr[0];
-        if (transitionLineArr.length > 1) {
-            if (!transitionLineArr[1].equals(":")) {
-                kripkeFileObj.setErrorMessage(kripkeFileObj.getKripkeFilepath() + ": Syntax error on line " + kripkeFileObj.getLineNum() + ": no colon found in transition line (a correct transition line example could be: \"t1 : s1 – s2;\").");
-            }
-        }
-        if (kripkeFileObj.getErrorMessage() == null) {
-            String fromName = transitionLineArr[2];
-            if (transitionLineArr.length < 4) {
-                kripkeFileObj.setErrorMessage(kripkeFileObj.getKripkeFilepath() + ": Syntax error on line " + kripkeFileObj.getLineNum() + ": no destination state found in transition line (a correct transition line example could be: \"t1 : s1 – s2;\").");
-            }
-            if (kripkeFileObj.getErrorMessage() == null) {
-                String toName = transitionLineArr[4];
-                toName = toName.replace(",", "");
-                toName = toName.replace(";", "");
-                Integer transitionNum = parseInt(transitionName.replace("t", ""));
-                Integer fromNum = parseInt(fromName.replace("s", ""));
-                Integer toNum = parseInt(toName.replace("s", ""));
-                State fromState = new State(fromNum);
-                if (!contains(kripkeFileObj.getStates(),fromState)) { kripkeFileObj.setErrorMessage(kripkeFileObj.getKripkeFilepath() + ": Syntax error on line " + kripkeFileObj.getLineNum() + ": transition from state (\"" + fromName + "\") not found in kripke states."); }
-                State toState = new State(toNum);
-                if (!contains(kripkeFileObj.getStates(),toState)) { kripkeFileObj.setErrorMessage(kripkeFileObj.getKripkeFilepath() + ": Syntax error on line " + kripkeFileObj.getLineNum() + ": transition to state (\"" + toName + "\") not found in kripke states."); }
-                Transition newTransition = new Transition(transitionNum, fromState, toState);
-                for (int i = 1; i <= kripkeFileObj.getTransitions().size(); i++) {
-                    Transition thisTransition = getTransition(i, kripkeFileObj.getTransitions());
-                    if (thisTransition.getFrom().getNumber() == newTransition.getFrom().getNumber()) {
-                        if (thisTransition.getTo().getNumber() == newTransition.getTo().getNumber()) {
-                            kripkeFileObj.setErrorMessage(kripkeFileObj.getKripkeFilepath() + ": Syntax error on line " + kripkeFileObj.getLineNum() + ": duplicate transition found (\"" + thisTransition.toStringDetailed() + "\" and \"" + newTransition.toStringDetailed() + "\").");
-                        }
+    private KripkeFileObj restrictToInitialStates(KripkeFileObj kripkeFileObj) {
+        if (kripkeFileObj.getErrorMessage() != null) { return kripkeFileObj; }
+        synchronized (initialStates) {
+            if (kripkeFileObj != unrestrictedKripkeFileObj) {
+                Kripke kripke = kripkeFileObj.getKripke();
+                KripkeFileObj restricted = new KripkeFileObj();
+                restricted.setKripkeFilepath(kripkeFileObj.getKripkeFilepath());
+                restricted.setLineNum(kripkeFileObj.getLineNum());
+                StateSet initial = kripke.emptySet();
+                for (String initialState : initialStates) {
+                    int index = kripke.indexOf(initialState);
+                    if (index < 0) {
+                        restricted.setErrorMessage(kripkeFileObj.getKripkeFilepath() + ": initial state \"" + initialState + "\" (-i) not found in kripke states.");
+                    } else {
+                        initial.add(index);
                     }
                 }
-                fromState = getState(fromNum,kripkeFileObj.getStates());
-                fromState.addTransition(newTransition);
-                kripkeFileObj.getTransitions().add(newTransition);
+                restricted.setKripke(restricted.getErrorMessage() == null ? kripke.restrictToReachable(initial) : kripke);
+                unrestrictedKripkeFileObj = kripkeFileObj;
+                restrictedKripkeFileObj = restricted;
             }
+            return restrictedKripkeFileObj;
         }
-        return kripkeFileObj;
     }
 
 
@@ -468,16 +681,95 @@ public class Controller {
 
     /**
      * Runs all the end to end tests in the /resources folder. Validates the models and formulas to make sure they don't contain syntax errors and checks if the states to check are in the models. Then model checks all the test files.
+     * Each (model, formula file) pair is validated and model checked as its own task on a thread pool of options.getNumThreads() threads (the -j option), along with one task per broken model and one for the formula validation. The results are put back together in the same order as running them one after the other, so the output doesn't depend on the number of threads.
      * @param {@link Option} object with options specified by user in the command line arguments as well as the hardcoded options at the top of Main.java
      * @return {@link AllEndToEndTestResults} object which has three {@link List}s - one of the results of the model validations, one of the results of the formula validations and one with the results of the model checks
      * @throws Exception
      */
-    private AllEndToEndTestResults runAllEndToEndTests(Options options) throws Exception {
-        List validateModelResultsList = validateEndToEndTestModels(options);
-        List validateFormulaResultList = validateEndToEndFormulas(options);
-        List endToEndTestResultsList = modelCheckEndToEndTests(options);
-        AllEndToEndTestResults allEndToEndTestResults = new AllEndToEndTestResults(validateModelResultsList, validateFormulaResultList, endToEndTestResultsList);
-        return allEndToEndTestResults;
+    private AllEndToEndTestResults runAllEndToEndTests(final Options options) throws Exception {
+        TestFiles testFiles = options.getEndToEndTests();
+        List kripkeFiles = testFiles.getKripkesValid();
+        List formulaFiles = testFiles.getFormulas();
+        List invalidKripkeFiles = testFiles.getKripkesInvalid();
+        ExecutorService pool = Executors.newFixedThreadPool(options.getNumThreads());
+        try {
+            List<Future<EndToEndTestResultWithValidation>> testFutures = new ArrayList<Future<EndToEndTestResultWithValidation>>();
+            for (int i=0; i<kripkeFiles.size(); i++) {
+                final String kripkeFilename = (String) kripkeFiles.get(i);
+                final String formulaFilename = (String) formulaFiles.get(i);
+                testFutures.add(pool.submit(new Callable<EndToEndTestResultWithValidation>() {
+                    @Override
+                    public EndToEndTestResultWithValidation call() throws Exception {
+                        ValidateModelResults validateModelResults = validateEndToEndTestModel(kripkeFilename, options);
+                        List endToEndTestResults = modelCheckEndToEndTest(kripkeFilename, formulaFilename, options);
+                        return new EndToEndTestResultWithValidation(validateModelResults, null, endToEndTestResults);
+                    }
+                }));
+            }
+            List<Future<ValidateModelResults>> invalidModelFutures = new ArrayList<Future<ValidateModelResults>>();
+            for (Object invalidKripkeFileObj : invalidKripkeFiles) {
+                final String kripkeFilename = (String) invalidKripkeFileObj;
+                invalidModelFutures.add(pool.submit(new Callable<ValidateModelResults>() {
+                    @Override
+                    public ValidateModelResults call() throws Exception {
+                        return validateEndToEndTestModel(kripkeFilename, options);
+                    }
+                }));
+            }
+            Future<List> formulasFuture = pool.submit(new Callable<List>() {
+                @Override
+                public List call() throws Exception {
+                    return validateEndToEndFormulas(options);
+                }
+            });
+
+            List validateModelResultsList = new ArrayList();
+            List endToEndTestResultsLists = new ArrayList();
+            for (Future<EndToEndTestResultWithValidation> testFuture : testFutures) {
+                EndToEndTestResultWithValidation endToEndTestResultWithValidation = getResult(testFuture);
+                validateModelResultsList.add(endToEndTestResultWithValidation.getValidateModelResults());
+                endToEndTestResultsLists.add(endToEndTestResultWithValidation.getEndToEndTestResult());
+            }
+            for (Future<ValidateModelResults> invalidModelFuture : invalidModelFutures) {
+                validateModelResultsList.add(getResult(invalidModelFuture));
+            }
+            List validateFormulaResultList = getResult(formulasFuture);
+            List endToEndTestResultsList = concatLastModelFirst(endToEndTestResultsLists);
+            AllEndToEndTestResults allEndToEndTestResults = new AllEndToEndTestResults(validateModelResultsList, validateFormulaResultList, endToEndTestResultsList);
+            return allEndToEndTestResults;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for a task of runAllEndToEndTests and gives back its result, rethrowing whatever the task threw
+     * @param future {@link Future} of the task
+     * @return the result of the task
+     * @throws Exception
+     */
+    private static <T> T getResult(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) { throw (Exception) cause; }
+            if (cause instanceof Error) { throw (Error) cause; }
+            throw e;
+        }
+    }
+
+    /**
+     * Puts the model check results of each model together into one list, last model first (the order the end to end results have always been printed in)
+     * @param endToEndTestResultsLists {@link List} of {@link List}s of {@link EndToEndTestResult}s, one per model in the order of the models
+     * @return a {@link List} of all the {@link EndToEndTestResult}s
+     */
+    private static List concatLastModelFirst(List endToEndTestResultsLists) {
+        List endToEndTestResultsList = new ArrayList();
+        for (int i=endToEndTestResultsLists.size()-1; i>=0; i--) {
+            endToEndTestResultsList.addAll((List) endToEndTestResultsLists.get(i));
+        }
+        return endToEndTestResultsList;
     }
 
     /**
@@ -651,43 +943,6 @@ public class Controller {
         return validateFormulaResultsList;
     }
 
-    /**
-     * Model checks all the end to end tests
-     * @param options (@link Options) object containing user entered options in command line arguments as well as the options hard coded at the top of Main.java
-     * @return a {@link List} of {@link EndToEndTestResult} objects, each containing the results of one model check test
-     * @throws IOException
-     * @throws ParseException
-     */
-    private List modelCheckEndToEndTests(Options options) throws IOException, modelCheckCTL.controller.ctl.Parser.ParseException {
-        List endToEndTestResultsList = new ArrayList();
-        // TestFiles testFilesObj = getTestFiles(testFilesDir);
-        TestFiles testFilesObj = options.getEndToEndTests();
-        List kripkeFiles = testFilesObj.getKripkesValid();
-        List formulaFiles = testFilesObj.getFormulas();
-
-        for (int i=0; i<kripkeFiles.size(); i++) {
-            Object kripkeFilenameObj = kripkeFiles.get(i);
-            String kripkeFilename = (String) kripkeFilenameObj;
-            Object formulaFilenameObj = formulaFiles.get(i);
-            String formulaFilename = (String) formulaFilenameObj;
-
-            List newEndToEndTestResultList = new ArrayList();
-            List thisEndToEndTestResultsList = modelCheckEndToEndTest(kripkeFilename, formulaFilename, options);
-            for (Object thisEndToEndTestResultObj : thisEndToEndTestResultsList) {
-                EndToEndTestResult thisEndToEndTestResult = (EndToEndTestResult) thisEndToEndTestResultObj;
-                newEndToEndTestResultList.add(thisEndToEndTestResult);
-            }
-            for (Object endToEndTestResultsObj : endToEndTestResultsList) {
-                EndToEndTestResult endToEndTestResults = (EndToEndTestResult) endToEndTestResultsObj;
-                newEndToEndTestResultList.add(endToEndTestResults);
-            }
-
-            endToEndTestResultsList = newEndToEndTestResultList;
-        }
-        return endToEndTestResultsList;
-    }
-
-
     /**
      * Model checks an end to end test
      * @param kripkeFilename {@link String} specifying the name of the kripke file
@@ -702,9 +957,9 @@ public class Controller {
         List formulaFileObjList = getFormulaFileObjList(formulaFilename, options);
         int numToTest = formulaFileObjList.size();
         int numTested = 0;
+        KripkeFileObj kripkeFileObj = getKripkeFileObj(kripkeFilename);
+        Kripke kripke = kripkeFileObj.getKripke();
         while (numTested < numToTest) {
-            Set statesThatHold = null;
-            Set allStates = null;
             String stateToCheck = "";
             String formula = "";
             Boolean stateToCheckHold = null;
@@ -713,18 +968,13 @@ public class Controller {
             Boolean testPass = null;
             ModelCheckResults modelCheckResults;
             EndToEndTestResult endToEndTestResult;
-            String kripkeFilepath = kripkeFilename;
-            KripkeFileObj kripkeFileObj = getKripkeFileObj(kripkeFilepath);
             EndToEndFormulaFileObj endToEndFormulaFileObj = (EndToEndFormulaFileObj) formulaFileObjList.get(numTested);
-            Kripke kripke = kripkeFileObj.getKripke();
-            allStates = kripke.getStates();
             formula = endToEndFormulaFileObj.getFormula();
             stateToCheck = endToEndFormulaFileObj.getStateToTest();
             expectedResult = endToEndFormulaFileObj.getExpected();
-            statesThatHold = modelCheck(kripkeFilepath, formula);
-            modelCheckResults = new ModelCheckResults(statesThatHold, allStates, stateToCheck, formula);
+            modelCheckResults = modelCheck(kripke, formula, stateToCheck, options.getEngine());  // the Kripke's shared Evaluator or LocalChecker, so subformulas repeated across the formulas are only worked out once
             actualResult = null;
-            if (containsStateName(statesThatHold, endToEndFormulaFileObj.getStateToTest())) {
+            if (modelCheckResults.holds(endToEndFormulaFileObj.getStateToTest())) {
                 actualResult = true;
             } else {
                 actualResult = false;
@@ -734,7 +984,10 @@ public class Controller {
             } else {
                 testPass = false;
             }
+            String engineMismatch = options.getEngine() == Engine.CROSS ? crossCheck(kripke, formula) : null;
+            if (engineMismatch != null) { testPass = false; }
             endToEndTestResult = new EndToEndTestResult(modelCheckResults,expectedResult,actualResult,testPass,formula, stateToCheck);
+            endToEndTestResult.setEngineMismatch(engineMismatch);
             endToEndTestResultsList.add(endToEndTestResult);
             numTested++;
         }
@@ -1,19 +1,11 @@
 /* ParserTokenManager.java */
 /* Generated By:JavaCC: Do not edit this line. ParserTokenManager.java */
 package modelCheckCTL.controller.ctl.Parser;
-import java.io.IOException;
-import java.util.Set;
-import java.util.HashSet;
-import modelCheckCTL.controller.types.modelCheckRelated.ModelCheckInputs;
-import modelCheckCTL.controller.types.kripke.Kripke;
-import modelCheckCTL.controller.types.kripke.State;
-import modelCheckCTL.controller.types.kripke.Transition;
-import static modelCheckCTL.utils.Utils.statesWithLabel;
-import static modelCheckCTL.utils.Utils.union;
-import static modelCheckCTL.utils.Utils.intersection;
-import static modelCheckCTL.utils.Utils.subtract;
-import static modelCheckCTL.utils.Utils.contains;
-import static modelCheckCTL.utils.Utils.areEqual;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import modelCheckCTL.controller.ctl.formula.Formula;
 
 /** Token Manager. */
 @SuppressWarnings ("unused")
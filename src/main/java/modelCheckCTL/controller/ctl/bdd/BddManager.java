@@ -0,0 +1,985 @@
+package modelCheckCTL.controller.ctl.bdd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A pure Java reduced ordered binary decision diagram (BDD) package. A BDD is an int: the index of its root node in the manager's node arrays. FALSE (0) and TRUE (1) are the two terminal nodes.
+ * Every node is unique (there's a hash table of the nodes per variable, so mk gives back the existing node for a variable and two children it has seen before), which makes two BDDs equal exactly when they are the same int. Operation results are cached in a computed table, so an operation on the same nodes isn't done twice.
+ *
+ * Memory is managed by reference counting the BDDs held outside the manager (see {@link #ref(int)} and {@link #deref(int)}) plus mark and sweep garbage collection: when enough nodes have been made since the last collection, the next operation first frees every node that can't be reached from a referenced BDD or from the arguments of the operation.
+ * So a caller has to ref every BDD it keeps across more than one operation (a BDD passed straight into the next operation, like and(a, or(b, c)), is safe without it).
+ *
+ * The variables can be reordered (see {@link #reorder()}) by sifting: each variable in turn is moved through every level by swapping adjacent levels, and left at the level where the BDDs were smallest. A swap rewrites the nodes in place, so BDDs held by callers keep their ints and their meaning. With auto reordering on, the manager also reorders by itself when the number of nodes has doubled since the last reordering.
+ * A manager is not thread safe.
+ */
+public class BddManager {
+
+    public static final int FALSE = 0;
+    public static final int TRUE = 1;
+
+    private static final int OP_AND = 0;
+    private static final int OP_OR = 1;
+    private static final int OP_DIFF = 2;
+    private static final int OP_NOT = 3;
+    private static final int OP_ITE = 4;
+    private static final int OP_EXISTS = 5;
+    private static final int OP_REL_PROD = 6;
+    private static final int OP_REPLACE = 7;
+
+    /**
+     * Number of nodes made since the last garbage collection before the next operation collects garbage (at least)
+     */
+    private static final int MIN_GC_THRESHOLD = 1 << 16;
+
+    /**
+     * Largest computed table (number of entries)
+     */
+    private static final int MAX_CACHE_SIZE = 1 << 22;
+
+    /**
+     * While sifting a variable, stop moving it in one direction once the BDDs are this many times bigger than the smallest size found
+     */
+    private static final double MAX_SIFT_GROWTH = 1.2;
+
+    /**
+     * Number of variables. The terminal nodes have variable numVars, which is always at the bottom level.
+     */
+    private final int numVars;
+
+    /**
+     * The nodes. nodeVar is -1 for a free node. nodeNext chains the nodes of one bucket of a variable's unique table, and the free nodes. nodeRef is the number of references from outside the manager.
+     */
+    private int[] nodeVar;
+    private int[] nodeLow;
+    private int[] nodeHigh;
+    private int[] nodeNext;
+    private int[] nodeRef;
+
+    /**
+     * First free node, or -1 if the node arrays are full
+     */
+    private int freeHead = -1;
+
+    /**
+     * Number of nodes in use (not counting the terminals)
+     */
+    private int numNodes;
+
+    /**
+     * The unique table of each variable: buckets of node chains, hashed by the node's children
+     */
+    private int[][] buckets;
+
+    /**
+     * Number of nodes of each variable
+     */
+    private int[] varCount;
+
+    /**
+     * The variable order: var2level[v] is the level of variable v (0 is the top) and level2var is the other direction. var2level[numVars] is numVars, the level of the terminals.
+     */
+    private final int[] var2level;
+    private final int[] level2var;
+
+    /**
+     * The computed table, direct mapped. cacheOp is -1 for an empty entry.
+     */
+    private int[] cacheOp;
+    private int[] cacheA;
+    private int[] cacheB;
+    private int[] cacheC;
+    private int[] cacheResult;
+
+    /**
+     * The arguments of the operations in progress, which garbage collection and reordering treat as referenced
+     */
+    private int[] protectedNodes = new int[48];
+    private int numProtected;
+
+    /**
+     * The variable maps of replace, by id (see {@link #newReplacement(int[])})
+     */
+    private final List<int[]> replacements = new ArrayList<int[]>();
+
+    /**
+     * Number of nodes in use at which the next operation collects garbage first
+     */
+    private int gcThreshold = MIN_GC_THRESHOLD;
+
+    private boolean autoReorder;
+
+    /**
+     * Number of nodes in use (after collecting garbage) at which the next operation reorders first, when auto reordering is on
+     */
+    private int reorderThreshold;
+
+    /**
+     * If true every operation collects garbage first, and reorders too when auto reordering is on (see {@link #setStressTest(boolean)})
+     */
+    private boolean stressTest;
+
+    /**
+     * Reference counts from the parent nodes, outside references and protected arguments. Only kept up to date while reordering.
+     */
+    private int[] internalRef;
+
+    /**
+     * @param numVars number of variables. Variable v starts out at level v.
+     */
+    public BddManager(int numVars) {
+        if (numVars < 0) { throw new IllegalArgumentException("number of BDD variables is negative"); }
+        this.numVars = numVars;
+        int capacity = 1 << 12;
+        nodeVar = new int[capacity];
+        nodeLow = new int[capacity];
+        nodeHigh = new int[capacity];
+        nodeNext = new int[capacity];
+        nodeRef = new int[capacity];
+        nodeVar[FALSE] = numVars;
+        nodeVar[TRUE] = numVars;
+        addFreeNodes(2, capacity);
+        buckets = new int[numVars][];
+        varCount = new int[numVars];
+        for (int v = 0; v < numVars; v++) {
+            buckets[v] = new int[16];
+            Arrays.fill(buckets[v], -1);
+        }
+        var2level = new int[numVars + 1];
+        level2var = new int[numVars + 1];
+        for (int v = 0; v <= numVars; v++) {
+            var2level[v] = v;
+            level2var[v] = v;
+        }
+        newCache(1 << 14);
+        reorderThreshold = MIN_GC_THRESHOLD;
+    }
+
+    public int getNumVars() {
+        return numVars;
+    }
+
+    /**
+     * @return number of nodes in use, including garbage not collected yet (not counting the terminals)
+     */
+    public int getNumNodes() {
+        return numNodes;
+    }
+
+    /**
+     * @param var a variable
+     * @return the level of the variable in the current order (0 is the top)
+     */
+    public int getLevel(int var) {
+        checkVar(var);
+        return var2level[var];
+    }
+
+    /**
+     * @param node a non-terminal node
+     * @return the variable the node tests
+     */
+    public int getVar(int node) {
+        checkNode(node);
+        return nodeVar[node];
+    }
+
+    /**
+     * @param node a non-terminal node
+     * @return the node's child for its variable being false
+     */
+    public int getLow(int node) {
+        checkNode(node);
+        return nodeLow[node];
+    }
+
+    /**
+     * @param node a non-terminal node
+     * @return the node's child for its variable being true
+     */
+    public int getHigh(int node) {
+        checkNode(node);
+        return nodeHigh[node];
+    }
+
+    /**
+     * Turns auto reordering on or off (see the class comment)
+     */
+    public void setAutoReorder(boolean autoReorder) {
+        this.autoReorder = autoReorder;
+        this.reorderThreshold = Math.max(MIN_GC_THRESHOLD, 2 * numNodes);
+    }
+
+    /**
+     * Turns stress testing on or off: when on, every operation collects garbage first (and reorders, if auto reordering is on) instead of only the ones that pass a threshold. Very slow, but makes small models go through garbage collection and reordering in the middle of every operation, so the cross check of the engines (-x cross) catches results which depend on them.
+     */
+    public void setStressTest(boolean stressTest) {
+        this.stressTest = stressTest;
+    }
+
+
+    // References
+
+    /**
+     * Adds a reference from outside the manager, so the BDD isn't garbage collected
+     * @param f BDD
+     * @return f
+     */
+    public int ref(int f) {
+        checkBdd(f);
+        nodeRef[f]++;
+        return f;
+    }
+
+    /**
+     * Removes a reference added with ref
+     * @param f BDD
+     */
+    public void deref(int f) {
+        checkBdd(f);
+        if (nodeRef[f] <= 0) { throw new IllegalStateException("BDD " + f + " is not referenced"); }
+        nodeRef[f]--;
+    }
+
+
+    // Making BDDs
+
+    /**
+     * @param var a variable
+     * @return the BDD of the variable being true
+     */
+    public int var(int var) {
+        checkVar(var);
+        enter(FALSE, FALSE, FALSE);
+        try {
+            return mk(var, FALSE, TRUE);
+        } finally {
+            leave();
+        }
+    }
+
+    /**
+     * @param vars variables
+     * @return the BDD of all the variables being true (used as the set of variables to quantify in exists and relProd)
+     */
+    public int cube(int[] vars) {
+        enter(FALSE, FALSE, FALSE);
+        try {
+            int[] levels = new int[vars.length];
+            for (int i = 0; i < vars.length; i++) {
+                checkVar(vars[i]);
+                levels[i] = var2level[vars[i]];
+            }
+            Arrays.sort(levels);
+            int cube = TRUE;
+            for (int i = levels.length - 1; i >= 0; i--) {
+                cube = mk(level2var[levels[i]], FALSE, cube);
+            }
+            return cube;
+        } finally {
+            leave();
+        }
+    }
+
+    /**
+     * Builds the BDD of a set of bit strings directly, without any and/or operations. Key i is the bit string with vars[0] as its most significant bit (bit vars.length - 1 of the long) down to vars[vars.length - 1] as its least significant bit.
+     * The variables can be in any order: once the operation has started (and collected garbage or reordered, if it's time to), the bits of the keys are moved into the current level order of their variables and the keys sorted, so the order can't change under it.
+     * @param keys the bit strings, in any order and with duplicates allowed. Rearranged in place.
+     * @param count number of keys used from the start of keys
+     * @param vars the variable of each bit, from the most significant bit down, without duplicates
+     * @return the BDD which is true exactly for the assignments of vars which are one of the keys
+     */
+    public int fromKeys(long[] keys, int count, int[] vars) {
+        if (vars.length > 63) { throw new IllegalArgumentException("too many variables for fromKeys"); }
+        for (int i = 0; i < vars.length; i++) {
+            checkVar(vars[i]);
+        }
+        enter(FALSE, FALSE, FALSE);
+        try {
+            final int[] levels = new int[vars.length];
+            Integer[] byLevel = new Integer[vars.length];
+            for (int i = 0; i < vars.length; i++) {
+                levels[i] = var2level[vars[i]];
+                byLevel[i] = i;
+            }
+            Arrays.sort(byLevel, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return levels[a] - levels[b];
+                }
+            });
+            int width = vars.length;
+            int[] sortedVars = new int[width];
+            boolean inOrder = true;
+            for (int i = 0; i < width; i++) {
+                sortedVars[i] = vars[byLevel[i]];
+                inOrder &= byLevel[i] == i;
+                if (i > 0 && levels[byLevel[i]] == levels[byLevel[i - 1]]) { throw new IllegalArgumentException("fromKeys variables have duplicates"); }
+            }
+            if (!inOrder) {
+                for (int k = 0; k < count; k++) {
+                    long key = 0;
+                    for (int i = 0; i < width; i++) {
+                        key = (key << 1) | ((keys[k] >>> (width - 1 - byLevel[i])) & 1L);
+                    }
+                    keys[k] = key;
+                }
+            }
+            Arrays.sort(keys, 0, count);
+            int numDistinct = 0;
+            for (int k = 0; k < count; k++) {
+                if (numDistinct == 0 || keys[k] != keys[numDistinct - 1]) { keys[numDistinct++] = keys[k]; }
+            }
+            return fromSortedKeys(keys, 0, numDistinct, sortedVars, 0);
+        } finally {
+            leave();
+        }
+    }
+
+    private int fromSortedKeys(long[] keys, int from, int to, int[] vars, int bit) {
+        if (from == to) { return FALSE; }
+        if (bit == vars.length) { return TRUE; }
+        long mask = 1L << (vars.length - 1 - bit);
+        // the keys in from..to agree on the bits above this one, so the ones with this bit set are all at the end
+        int split = from;
+        int high = to;
+        while (split < high) {
+            int middle = (split + high) >>> 1;
+            if ((keys[middle] & mask) == 0) { split = middle + 1; } else { high = middle; }
+        }
+        int low = fromSortedKeys(keys, from, split, vars, bit + 1);
+        int highChild = fromSortedKeys(keys, split, to, vars, bit + 1);
+        return mk(vars[bit], low, highChild);
+    }
+
+
+    // Operations
+
+    public int not(int f) {
+        checkBdd(f);
+        enter(f, FALSE, FALSE);
+        try {
+            return not0(f);
+        } finally {
+            leave();
+        }
+    }
+
+    public int and(int f, int g) {
+        return apply(OP_AND, f, g);
+    }
+
+    public int or(int f, int g) {
+        return apply(OP_OR, f, g);
+    }
+
+    /**
+     * @return the BDD of f and not g
+     */
+    public int diff(int f, int g) {
+        return apply(OP_DIFF, f, g);
+    }
+
+    /**
+     * If-then-else
+     * @return the BDD of (f and g) or (not f and h)
+     */
+    public int ite(int f, int g, int h) {
+        checkBdd(f);
+        checkBdd(g);
+        checkBdd(h);
+        enter(f, g, h);
+        try {
+            return ite0(f, g, h);
+        } finally {
+            leave();
+        }
+    }
+
+    /**
+     * Existential quantification
+     * @param f BDD
+     * @param cube {@link #cube(int[])} of the variables to quantify
+     * @return the BDD of "there are values of the cube's variables for which f is true"
+     */
+    public int exists(int f, int cube) {
+        checkBdd(f);
+        checkBdd(cube);
+        enter(f, cube, FALSE);
+        try {
+            return exists0(f, cube);
+        } finally {
+            leave();
+        }
+    }
+
+    /**
+     * Relational product: exists(and(f, g), cube) in one pass, without building and(f, g). This is the image/preimage operation of symbolic model checking.
+     * @param f BDD
+     * @param g BDD
+     * @param cube {@link #cube(int[])} of the variables to quantify
+     * @return the BDD of "there are values of the cube's variables for which f and g are true"
+     */
+    public int relProd(int f, int g, int cube) {
+        checkBdd(f);
+        checkBdd(g);
+        checkBdd(cube);
+        enter(f, g, cube);
+        try {
+            return relProd0(f, g, cube);
+        } finally {
+            leave();
+        }
+    }
+
+    /**
+     * Registers a variable renaming for replace
+     * @param map map[v] is the variable v is renamed to, or -1 to leave v alone. Has one entry per variable.
+     * @return id of the renaming, for replace
+     */
+    public int newReplacement(int[] map) {
+        if (map.length != numVars) { throw new IllegalArgumentException("replacement map doesn't have one entry per variable"); }
+        int[] copy = new int[numVars];
+        for (int v = 0; v < numVars; v++) {
+            if (map[v] != -1) { checkVar(map[v]); }
+            copy[v] = map[v] == -1 ? v : map[v];
+        }
+        replacements.add(copy);
+        return replacements.size() - 1;
+    }
+
+    /**
+     * Renames the variables of a BDD. The renamed variables don't have to keep their order.
+     * @param f BDD
+     * @param replacement id from {@link #newReplacement(int[])}
+     * @return the BDD of f with each variable v replaced by the variable it's mapped to
+     */
+    public int replace(int f, int replacement) {
+        checkBdd(f);
+        if (replacement < 0 || replacement >= replacements.size()) { throw new IllegalArgumentException("unknown replacement " + replacement); }
+        enter(f, FALSE, FALSE);
+        try {
+            return replace0(f, replacement);
+        } finally {
+            leave();
+        }
+    }
+
+    private int apply(int op, int f, int g) {
+        checkBdd(f);
+        checkBdd(g);
+        enter(f, g, FALSE);
+        try {
+            return apply0(op, f, g);
+        } finally {
+            leave();
+        }
+    }
+
+    private int apply0(int op, int f, int g) {
+        switch (op) {
+            case OP_AND:
+                if (f == FALSE || g == FALSE) { return FALSE; }
+                if (f == TRUE || f == g) { return g; }
+                if (g == TRUE) { return f; }
+                break;
+            case OP_OR:
+                if (f == TRUE || g == TRUE) { return TRUE; }
+                if (f == FALSE || f == g) { return g; }
+                if (g == FALSE) { return f; }
+                break;
+            default:  // OP_DIFF
+                if (f == FALSE || g == TRUE || f == g) { return FALSE; }
+                if (g == FALSE) { return f; }
+                if (f == TRUE) { return not0(g); }
+                break;
+        }
+        if (op != OP_DIFF && f > g) {
+            int swap = f;
+            f = g;
+            g = swap;
+        }
+        int cached = lookup(op, f, g, 0);
+        if (cached >= 0) { return cached; }
+        int levelF = level(f);
+        int levelG = level(g);
+        int top = Math.min(levelF, levelG);
+        int low = apply0(op, levelF == top ? nodeLow[f] : f, levelG == top ? nodeLow[g] : g);
+        int high = apply0(op, levelF == top ? nodeHigh[f] : f, levelG == top ? nodeHigh[g] : g);
+        int result = mk(level2var[top], low, high);
+        store(op, f, g, 0, result);
+        return result;
+    }
+
+    private int not0(int f) {
+        if (f == FALSE) { return TRUE; }
+        if (f == TRUE) { return FALSE; }
+        int cached = lookup(OP_NOT, f, 0, 0);
+        if (cached >= 0) { return cached; }
+        int low = not0(nodeLow[f]);
+        int high = not0(nodeHigh[f]);
+        int result = mk(nodeVar[f], low, high);
+        store(OP_NOT, f, 0, 0, result);
+        return result;
+    }
+
+    private int ite0(int f, int g, int h) {
+        if (f == TRUE) { return g; }
+        if (f == FALSE) { return h; }
+        if (g == h) { return g; }
+        if (g == TRUE && h == FALSE) { return f; }
+        if (g == FALSE && h == TRUE) { return not0(f); }
+        int cached = lookup(OP_ITE, f, g, h);
+        if (cached >= 0) { return cached; }
+        int levelF = level(f);
+        int levelG = level(g);
+        int levelH = level(h);
+        int top = Math.min(levelF, Math.min(levelG, levelH));
+        int low = ite0(levelF == top ? nodeLow[f] : f, levelG == top ? nodeLow[g] : g, levelH == top ? nodeLow[h] : h);
+        int high = ite0(levelF == top ? nodeHigh[f] : f, levelG == top ? nodeHigh[g] : g, levelH == top ? nodeHigh[h] : h);
+        int result = mk(level2var[top], low, high);
+        store(OP_ITE, f, g, h, result);
+        return result;
+    }
+
+    private int exists0(int f, int cube) {
+        if (f == FALSE || f == TRUE) { return f; }
+        int levelF = level(f);
+        while (cube != TRUE && level(cube) < levelF) {
+            cube = nodeHigh[cube];
+        }
+        if (cube == TRUE) { return f; }
+        int cached = lookup(OP_EXISTS, f, cube, 0);
+        if (cached >= 0) { return cached; }
+        int result;
+        if (level(cube) == levelF) {
+            int low = exists0(nodeLow[f], nodeHigh[cube]);
+            if (low == TRUE) {
+                result = TRUE;
+            } else {
+                result = apply0(OP_OR, low, exists0(nodeHigh[f], nodeHigh[cube]));
+            }
+        } else {
+            int low = exists0(nodeLow[f], cube);
+            int high = exists0(nodeHigh[f], cube);
+            result = mk(nodeVar[f], low, high);
+        }
+        store(OP_EXISTS, f, cube, 0, result);
+        return result;
+    }
+
+    private int relProd0(int f, int g, int cube) {
+        if (f == FALSE || g == FALSE) { return FALSE; }
+        if (f == TRUE && g == TRUE) { return TRUE; }
+        if (f == TRUE || f == g) { return exists0(g, cube); }
+        if (g == TRUE) { return exists0(f, cube); }
+        if (cube == TRUE) { return apply0(OP_AND, f, g); }
+        if (f > g) {
+            int swap = f;
+            f = g;
+            g = swap;
+        }
+        int levelF = level(f);
+        int levelG = level(g);
+        int top = Math.min(levelF, levelG);
+        while (cube != TRUE && level(cube) < top) {
+            cube = nodeHigh[cube];
+        }
+        if (cube == TRUE) { return apply0(OP_AND, f, g); }
+        int cached = lookup(OP_REL_PROD, f, g, cube);
+        if (cached >= 0) { return cached; }
+        int f0 = levelF == top ? nodeLow[f] : f;
+        int f1 = levelF == top ? nodeHigh[f] : f;
+        int g0 = levelG == top ? nodeLow[g] : g;
+        int g1 = levelG == top ? nodeHigh[g] : g;
+        int result;
+        if (level(cube) == top) {
+            int low = relProd0(f0, g0, nodeHigh[cube]);
+            if (low == TRUE) {
+                result = TRUE;
+            } else {
+                result = apply0(OP_OR, low, relProd0(f1, g1, nodeHigh[cube]));
+            }
+        } else {
+            int low = relProd0(f0, g0, cube);
+            int high = relProd0(f1, g1, cube);
+            result = mk(level2var[top], low, high);
+        }
+        store(OP_REL_PROD, f, g, cube, result);
+        return result;
+    }
+
+    private int replace0(int f, int replacement) {
+        if (f == FALSE || f == TRUE) { return f; }
+        int cached = lookup(OP_REPLACE, f, replacement, 0);
+        if (cached >= 0) { return cached; }
+        int low = replace0(nodeLow[f], replacement);
+        int high = replace0(nodeHigh[f], replacement);
+        int result = ite0(mk(replacements.get(replacement)[nodeVar[f]], FALSE, TRUE), high, low);
+        store(OP_REPLACE, f, replacement, 0, result);
+        return result;
+    }
+
+
+    // Nodes and the unique tables
+
+    private int level(int node) {
+        return var2level[nodeVar[node]];
+    }
+
+    /**
+     * Gets the node for a variable and two children, making it if it doesn't exist. The children must be below the variable's level.
+     */
+    private int mk(int var, int low, int high) {
+        if (low == high) { return low; }
+        int[] table = buckets[var];
+        for (int node = table[hash(low, high) & (table.length - 1)]; node >= 0; node = nodeNext[node]) {
+            if (nodeLow[node] == low && nodeHigh[node] == high) { return node; }
+        }
+        int node = allocate();
+        nodeVar[node] = var;
+        nodeLow[node] = low;
+        nodeHigh[node] = high;
+        nodeRef[node] = 0;
+        insert(node);
+        return node;
+    }
+
+    private static int hash(int low, int high) {
+        int h = low * 0x9E3779B1 + high * 0x85EBCA77;
+        return h ^ (h >>> 15);
+    }
+
+    private void insert(int node) {
+        int var = nodeVar[node];
+        int[] table = buckets[var];
+        int bucket = hash(nodeLow[node], nodeHigh[node]) & (table.length - 1);
+        nodeNext[node] = table[bucket];
+        table[bucket] = node;
+        varCount[var]++;
+        if (varCount[var] > 2 * table.length) { resizeTable(var); }
+    }
+
+    private void remove(int node) {
+        int var = nodeVar[node];
+        int[] table = buckets[var];
+        int bucket = hash(nodeLow[node], nodeHigh[node]) & (table.length - 1);
+        if (table[bucket] == node) {
+            table[bucket] = nodeNext[node];
+        } else {
+            int previous = table[bucket];
+            while (nodeNext[previous] != node) {
+                previous = nodeNext[previous];
+            }
+            nodeNext[previous] = nodeNext[node];
+        }
+        varCount[var]--;
+    }
+
+    private void resizeTable(int var) {
+        int[] oldTable = buckets[var];
+        int[] table = new int[oldTable.length * 2];
+        Arrays.fill(table, -1);
+        for (int bucket = 0; bucket < oldTable.length; bucket++) {
+            int node = oldTable[bucket];
+            while (node >= 0) {
+                int next = nodeNext[node];
+                int newBucket = hash(nodeLow[node], nodeHigh[node]) & (table.length - 1);
+                nodeNext[node] = table[newBucket];
+                table[newBucket] = node;
+                node = next;
+            }
+        }
+        buckets[var] = table;
+    }
+
+    private int allocate() {
+        if (freeHead < 0) { grow(); }
+        int node = freeHead;
+        freeHead = nodeNext[node];
+        numNodes++;
+        return node;
+    }
+
+    private void free(int node) {
+        nodeVar[node] = -1;
+        nodeNext[node] = freeHead;
+        freeHead = node;
+        numNodes--;
+    }
+
+    private void grow() {
+        int oldCapacity = nodeVar.length;
+        int capacity = oldCapacity * 2;
+        nodeVar = Arrays.copyOf(nodeVar, capacity);
+        nodeLow = Arrays.copyOf(nodeLow, capacity);
+        nodeHigh = Arrays.copyOf(nodeHigh, capacity);
+        nodeNext = Arrays.copyOf(nodeNext, capacity);
+        nodeRef = Arrays.copyOf(nodeRef, capacity);
+        if (internalRef != null) { internalRef = Arrays.copyOf(internalRef, capacity); }
+        addFreeNodes(oldCapacity, capacity);
+        if (cacheOp.length < capacity && cacheOp.length < MAX_CACHE_SIZE) {
+            newCache(cacheOp.length * 2);
+        }
+    }
+
+    private void addFreeNodes(int from, int to) {
+        for (int node = to - 1; node >= from; node--) {
+            nodeVar[node] = -1;
+            nodeNext[node] = freeHead;
+            freeHead = node;
+        }
+    }
+
+
+    // The computed table
+
+    private void newCache(int size) {
+        cacheOp = new int[size];
+        cacheA = new int[size];
+        cacheB = new int[size];
+        cacheC = new int[size];
+        cacheResult = new int[size];
+        Arrays.fill(cacheOp, -1);
+    }
+
+    private int cacheIndex(int op, int a, int b, int c) {
+        int h = (a * 0x9E3779B1) ^ (b * 0x85EBCA77) ^ (c * 0xC2B2AE3D) ^ op;
+        return (h ^ (h >>> 16)) & (cacheOp.length - 1);
+    }
+
+    private int lookup(int op, int a, int b, int c) {
+        int i = cacheIndex(op, a, b, c);
+        if (cacheOp[i] == op && cacheA[i] == a && cacheB[i] == b && cacheC[i] == c) { return cacheResult[i]; }
+        return -1;
+    }
+
+    private void store(int op, int a, int b, int c, int result) {
+        int i = cacheIndex(op, a, b, c);
+        cacheOp[i] = op;
+        cacheA[i] = a;
+        cacheB[i] = b;
+        cacheC[i] = c;
+        cacheResult[i] = result;
+    }
+
+
+    // Garbage collection
+
+    /**
+     * Called at the start of every operation: protects its arguments, then collects garbage (and reorders, if auto reordering is on) if it's time to
+     */
+    private void enter(int a, int b, int c) {
+        if (numProtected + 3 > protectedNodes.length) { protectedNodes = Arrays.copyOf(protectedNodes, protectedNodes.length * 2); }
+        protectedNodes[numProtected++] = a;
+        protectedNodes[numProtected++] = b;
+        protectedNodes[numProtected++] = c;
+        if (stressTest || numNodes >= gcThreshold || (autoReorder && numNodes >= reorderThreshold)) {
+            gc();
+            gcThreshold = Math.max(MIN_GC_THRESHOLD, 2 * numNodes);
+            if (autoReorder && (stressTest || numNodes >= reorderThreshold)) {
+                reorder();
+                reorderThreshold = Math.max(MIN_GC_THRESHOLD, 2 * numNodes);
+            }
+        }
+    }
+
+    private void leave() {
+        numProtected -= 3;
+    }
+
+    /**
+     * Frees every node which can't be reached from a referenced BDD or the arguments of an operation in progress, and clears the computed table
+     */
+    public void gc() {
+        int capacity = nodeVar.length;
+        boolean[] marked = new boolean[capacity];
+        marked[FALSE] = true;
+        marked[TRUE] = true;
+        for (int node = 2; node < capacity; node++) {
+            if (nodeVar[node] >= 0 && nodeRef[node] > 0) { mark(node, marked); }
+        }
+        for (int i = 0; i < numProtected; i++) {
+            mark(protectedNodes[i], marked);
+        }
+        for (int v = 0; v < numVars; v++) {
+            Arrays.fill(buckets[v], -1);
+            varCount[v] = 0;
+        }
+        for (int node = capacity - 1; node >= 2; node--) {
+            if (nodeVar[node] < 0) { continue; }
+            if (marked[node]) {
+                insert(node);
+            } else {
+                free(node);
+            }
+        }
+        Arrays.fill(cacheOp, -1);
+    }
+
+    private void mark(int node, boolean[] marked) {
+        if (marked[node]) { return; }
+        marked[node] = true;
+        mark(nodeLow[node], marked);
+        mark(nodeHigh[node], marked);
+    }
+
+
+    // Reordering
+
+    /**
+     * Reorders the variables by sifting (see the class comment). Collects garbage first. BDDs keep their ints and their meaning.
+     */
+    public void reorder() {
+        gc();
+        internalRef = new int[nodeVar.length];
+        for (int node = 2; node < nodeVar.length; node++) {
+            if (nodeVar[node] < 0) { continue; }
+            internalRef[node] += nodeRef[node];
+            internalRef[nodeLow[node]]++;
+            internalRef[nodeHigh[node]]++;
+        }
+        for (int i = 0; i < numProtected; i++) {
+            internalRef[protectedNodes[i]]++;
+        }
+        // biggest variables first
+        Integer[] vars = new Integer[numVars];
+        for (int v = 0; v < numVars; v++) {
+            vars[v] = v;
+        }
+        final int[] counts = varCount.clone();
+        Arrays.sort(vars, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return counts[b] - counts[a];
+            }
+        });
+        for (Integer var : vars) {
+            sift(var);
+        }
+        internalRef = null;
+        Arrays.fill(cacheOp, -1);
+    }
+
+    /**
+     * Moves a variable down to the bottom, then up to the top, then to the level where there were the fewest nodes
+     */
+    private void sift(int var) {
+        int best = numNodes;
+        int bestLevel = var2level[var];
+        while (var2level[var] < numVars - 1 && numNodes <= MAX_SIFT_GROWTH * best) {
+            swap(var2level[var]);
+            if (numNodes < best) {
+                best = numNodes;
+                bestLevel = var2level[var];
+            }
+        }
+        while (var2level[var] > 0 && (numNodes <= MAX_SIFT_GROWTH * best || var2level[var] > bestLevel)) {
+            swap(var2level[var] - 1);
+            if (numNodes < best) {
+                best = numNodes;
+                bestLevel = var2level[var];
+            }
+        }
+        while (var2level[var] < bestLevel) {
+            swap(var2level[var]);
+        }
+    }
+
+    /**
+     * Swaps the variables at a level and the level below it. Each node x of the upper variable with a child testing the lower variable y is rewritten in place into a node testing y whose children test x (its four grandchildren regrouped), so it still means the same function. Nodes which become unreachable are freed straight away.
+     */
+    private void swap(int level) {
+        int x = level2var[level];
+        int y = level2var[level + 1];
+        int[] xNodes = new int[varCount[x]];
+        int numXNodes = 0;
+        for (int bucket : buckets[x]) {
+            for (int node = bucket; node >= 0; node = nodeNext[node]) {
+                xNodes[numXNodes++] = node;
+            }
+        }
+        for (int i = 0; i < numXNodes; i++) {
+            int node = xNodes[i];
+            int f0 = nodeLow[node];
+            int f1 = nodeHigh[node];
+            boolean f0TestsY = nodeVar[f0] == y;
+            boolean f1TestsY = nodeVar[f1] == y;
+            if (!f0TestsY && !f1TestsY) { continue; }
+            int f00 = f0TestsY ? nodeLow[f0] : f0;
+            int f01 = f0TestsY ? nodeHigh[f0] : f0;
+            int f10 = f1TestsY ? nodeLow[f1] : f1;
+            int f11 = f1TestsY ? nodeHigh[f1] : f1;
+            int low = mkReferenced(x, f00, f10);
+            int high = mkReferenced(x, f01, f11);
+            remove(node);
+            nodeVar[node] = y;
+            nodeLow[node] = low;
+            nodeHigh[node] = high;
+            insert(node);
+            dereferenceInternal(f0);
+            dereferenceInternal(f1);
+        }
+        level2var[level] = y;
+        level2var[level + 1] = x;
+        var2level[x] = level + 1;
+        var2level[y] = level;
+    }
+
+    /**
+     * mk while reordering: also counts the reference to the node it gives back
+     */
+    private int mkReferenced(int var, int low, int high) {
+        if (low == high) {
+            internalRef[low]++;
+            return low;
+        }
+        int[] table = buckets[var];
+        for (int node = table[hash(low, high) & (table.length - 1)]; node >= 0; node = nodeNext[node]) {
+            if (nodeLow[node] == low && nodeHigh[node] == high) {
+                internalRef[node]++;
+                return node;
+            }
+        }
+        int node = allocate();
+        nodeVar[node] = var;
+        nodeLow[node] = low;
+        nodeHigh[node] = high;
+        nodeRef[node] = 0;
+        insert(node);
+        internalRef[node] = 1;
+        internalRef[low]++;
+        internalRef[high]++;
+        return node;
+    }
+
+    private void dereferenceInternal(int node) {
+        if (node == FALSE || node == TRUE) { return; }
+        if (--internalRef[node] > 0) { return; }
+        int low = nodeLow[node];
+        int high = nodeHigh[node];
+        remove(node);
+        free(node);
+        dereferenceInternal(low);
+        dereferenceInternal(high);
+    }
+
+
+    // Checks
+
+    private void checkVar(int var) {
+        if (var < 0 || var >= numVars) { throw new IllegalArgumentException("BDD variable " + var + " is out of range (0 to " + (numVars - 1) + ")"); }
+    }
+
+    private void checkBdd(int f) {
+        if (f < 0 || f >= nodeVar.length || nodeVar[f] < 0) { throw new IllegalArgumentException(f + " is not a BDD"); }
+    }
+
+    private void checkNode(int node) {
+        checkBdd(node);
+        if (node == FALSE || node == TRUE) { throw new IllegalArgumentException("terminal node has no variable or children"); }
+    }
+
+}
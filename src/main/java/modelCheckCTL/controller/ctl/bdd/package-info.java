@@ -0,0 +1,4 @@
+/**
+ * A small binary decision diagram (BDD) package (see BddManager.java) - the SymbolicChecker in /checker uses it to model check a Kripke symbolically
+ */
+package modelCheckCTL.controller.ctl.bdd;
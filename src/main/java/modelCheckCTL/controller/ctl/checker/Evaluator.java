@@ -0,0 +1,863 @@
+package modelCheckCTL.controller.ctl.checker;
+
+import modelCheckCTL.controller.ctl.formula.Atom;
+import modelCheckCTL.controller.ctl.formula.BinaryFormula;
+import modelCheckCTL.controller.ctl.formula.Formula;
+import modelCheckCTL.controller.ctl.formula.Operator;
+import modelCheckCTL.controller.ctl.formula.UnaryFormula;
+import modelCheckCTL.controller.types.kripke.Kripke;
+import modelCheckCTL.controller.types.kripke.KripkeDelta;
+import modelCheckCTL.controller.types.kripke.SccDecomposition;
+import modelCheckCTL.controller.types.kripke.StateSet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static modelCheckCTL.utils.Utils.union;
+import static modelCheckCTL.utils.Utils.intersection;
+
+/**
+ * The Evaluator does the heavy lifting for the model checking and contains the SAT algorithms. It walks a {@link Formula} AST (built by the {@link modelCheckCTL.controller.ctl.Parser.Parser}) bottom up and computes the {@link StateSet} of the states of one {@link Kripke} which satisfy each node.
+ * The Parser only builds the AST, so a formula parsed once can be evaluated against any number of Kripkes with one Evaluator per Kripke.
+ * Formulas are hash-consed (see {@link Formula}), so a subformula which appears several times in a formula, or in several formulas, is one node. The Evaluator memoizes the (read-only) {@link StateSet} of every node it evaluates, so a repeated subformula is only computed once per Kripke - within one formula and across all the formulas checked with the same Evaluator.
+ * An Evaluator has no state besides its Kripke and the memo, and every kernel (EX, EU, preE etc) only uses local scratch arrays, so one Evaluator can check many formulas on many threads at the same time (see {@link #evaluate(Formula)}).
+ * An Evaluator made with a {@link ForkJoinPool} (the -p flag) also splits the big steps of big Kripkes over the pool's threads: preE (see {@link #preE(StateSet)}), AX, and the frontier steps of the EU, AU and AG fixpoints (see {@link #EU(StateSet, StateSet)}).
+ * When the Kripke is edited (see {@link Kripke#addTransition(int, int)} etc) the memo isn't thrown away: the memoized sets are brought up to date from the recorded edits, only redoing the subformulas and the parts of the fixpoints the edits can have changed (see refresh).
+ * All the individual methods like EX, EF, EG etc are modeled after the psuedocode SAT algorithms on page 227 of Logic In Computer Science by Michael Huth
+ */
+public class Evaluator {
+
+    /**
+    * The {@link Kripke} the formulas are checked against. The Kripke is an object representation of the kripke text file (which is a representation of a directed graph) and contains the all the states, transitions and labels specified in the text file.
+    */
+    private final Kripke kripke;
+
+    /**
+     * Maximum number of satisfaction sets kept in memo
+     */
+    private static final int MEMO_SIZE = 1024;
+
+    /**
+     * The memoized satisfaction set of each evaluated (non-atom) node. Least recently used sets are dropped once there are more than MEMO_SIZE of them. Only read and written while holding its own lock.
+     */
+    private final Map<Formula, StateSet> memo = new LinkedHashMap<Formula, StateSet>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Formula, StateSet> eldest) {
+            return size() > MEMO_SIZE;
+        }
+    };
+
+    /**
+     * The {@link Kripke#getVersion()} the memoized sets were computed for. If the Kripke was edited since, the memo is brought up to date (see refresh), and if its states or transitions were replaced, the memo is cleared. Guarded by memo's lock.
+     */
+    private int memoVersion;
+
+    /**
+     * Pool preE, AX and the fixpoints' frontier steps are split over, or null to always compute them on the calling thread
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Kripkes with fewer states than this are always checked on the calling thread, since splitting their steps up costs more than it saves
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Number of bitset words (64 states each) a parallel task does without splitting further
+     */
+    private static final int CHUNK_WORDS = 256;
+
+    /**
+     * Sets (phi of preE, or the frontier of a fixpoint) with fewer states than this are always walked on the calling thread: walking a few predecessors costs less than handing them to the pool, which matters for the small sets the updates after an edit work with
+     */
+    static final int PARALLEL_MIN_STATES = 1 << 12;
+
+    /**
+     * When the delete step of updating a fixpoint after an edit takes out more than 1 / DELETE_LIMIT of the states, the fixpoint is computed from scratch instead, which is cheaper than deleting and rederiving most of the Kripke (see updateEU)
+     */
+    private static final int DELETE_LIMIT = 4;
+
+    /**
+     * @param kripke {@link Kripke} to evaluate formulas against. The Kripke must be fully populated (see {@link Kripke#checkKripkeForNulls()}).
+     */
+    public Evaluator(Kripke kripke) {
+        this(kripke, null);
+    }
+
+    /**
+     * @param kripke {@link Kripke} to evaluate formulas against. The Kripke must be fully populated (see {@link Kripke#checkKripkeForNulls()}).
+     * @param pool {@link ForkJoinPool} to split preE, AX and the fixpoints' frontier steps over, or null for none. Not shut down by the Evaluator.
+     */
+    public Evaluator(Kripke kripke, ForkJoinPool pool) {
+        if (kripke == null) { throw new NullPointerException("kripke is null in Evaluator call"); }
+        this.kripke = kripke;
+        this.memoVersion = kripke.getVersion();
+        this.pool = pool;
+    }
+
+    public Kripke getKripke() {
+        return kripke;
+    }
+
+    /**
+    * Evaluates a formula against the Kripke. Each node's set is looked up in the memo first and only computed if it isn't there.
+    * Safe to call from several threads at the same time: the memo is only touched while holding its lock and the sets are computed outside of it, so threads checking different formulas don't wait on each other (two threads may both compute the same subformula, which only costs the duplicate work). The one exception is bringing the memo up to date after the Kripke was edited, which is done while holding the lock, since the other threads' memoized sets would be stale anyway.
+    * @param formula {@link Formula} to check
+    * @return The read-only {@link StateSet} of the states in the Kripke which hold for the formula
+    */
+    public StateSet evaluate(Formula formula) {
+        int version = kripke.getVersion();
+        synchronized (memo) {
+            if (memoVersion != version) {
+                KripkeDelta delta = kripke.getDeltaSince(memoVersion);
+                if (delta == null) {
+                    memo.clear();
+                } else {
+                    refresh(delta);
+                }
+                memoVersion = version;
+            }
+        }
+        return evaluateNode(formula, version);
+    }
+
+    private StateSet evaluateNode(Formula formula, int version) {
+        if (formula.getOperator() == Operator.ATOM) {
+            return kripke.getStatesWithLabel(((Atom) formula).getName());
+        }
+        StateSet statesThatHold;
+        synchronized (memo) {
+            statesThatHold = memo.get(formula);
+        }
+        if (statesThatHold == null) {
+            if (formula instanceof UnaryFormula) {
+                statesThatHold = evaluateUnary((UnaryFormula) formula, version).readOnly();
+            } else {
+                statesThatHold = evaluateBinary((BinaryFormula) formula, version).readOnly();
+            }
+            synchronized (memo) {
+                if (memoVersion == version) { memo.put(formula, statesThatHold); }
+            }
+        }
+        return statesThatHold;
+    }
+
+    private StateSet evaluateUnary(UnaryFormula formula, int version) {
+        StateSet phi = evaluateNode(formula.getOperand(), version);
+        return applyUnary(formula.getOperator(), phi);
+    }
+
+    private StateSet evaluateBinary(BinaryFormula formula, int version) {
+        StateSet a = evaluateNode(formula.getLeft(), version);
+        StateSet b = evaluateNode(formula.getRight(), version);
+        return applyBinary(formula.getOperator(), a, b);
+    }
+
+    private StateSet applyUnary(Operator operator, StateSet phi) {
+        switch (operator) {
+            case NOT: return not(phi);
+            case AX: return AX(phi);
+            case AF: return AF(phi);
+            case AG: return AG(phi);
+            case EX: return EX(phi);
+            case EF: return EF(phi);
+            case EG: return EG(phi);
+            default: throw new IllegalArgumentException(operator + " is not a unary operator");
+        }
+    }
+
+    private StateSet applyBinary(Operator operator, StateSet a, StateSet b) {
+        switch (operator) {
+            case AND: return and(a,b);
+            case OR: return or(a,b);
+            case IMPLIES: return or(not(a),b);  /* (not a or b) */
+            case EU: return EU(a,b);
+            case AU: return AU(a,b);
+            default: throw new IllegalArgumentException(operator + " is not a binary operator");
+        }
+    }
+
+    /**
+    * Brings the memo up to date after the Kripke was edited, instead of clearing it. Every memoized node is redone bottom up from its old set, its operands' new sets and the states where its operands' sets changed (see update): a node whose operands didn't change is reused as it is (unless it's temporal and transitions were edited), so the subformulas over atoms the edits didn't touch aren't redone at all. Nodes which weren't memoized (ie, dropped from the memo as least recently used) are computed from scratch. Called while holding memo's lock.
+    * @param delta {@link KripkeDelta} of the edits since memoVersion
+    */
+    private void refresh(KripkeDelta delta) {
+        Map<Formula, StateSet> previous = new HashMap<Formula, StateSet>(memo);
+        memo.clear();
+        Map<Formula, StateSet> refreshed = new HashMap<Formula, StateSet>();
+        Map<Formula, StateSet> changes = new HashMap<Formula, StateSet>();
+        for (Formula formula : previous.keySet()) {
+            refreshNode(formula, previous, refreshed, changes, delta);
+        }
+    }
+
+    /**
+    * Redoes one node for refresh, after redoing its operands
+    * @return the {@link StateSet} of the states whose membership in the node's set changed, or null if the node wasn't memoized before (so that isn't known)
+    */
+    private StateSet refreshNode(Formula formula, Map<Formula, StateSet> previous, Map<Formula, StateSet> refreshed, Map<Formula, StateSet> changes, KripkeDelta delta) {
+        if (formula.getOperator() == Operator.ATOM) {
+            return delta.getChangedStates(((Atom) formula).getName());
+        }
+        if (changes.containsKey(formula)) { return changes.get(formula); }
+        Formula left = formula instanceof UnaryFormula ? ((UnaryFormula) formula).getOperand() : ((BinaryFormula) formula).getLeft();
+        Formula right = formula instanceof UnaryFormula ? null : ((BinaryFormula) formula).getRight();
+        StateSet changedA = refreshNode(left, previous, refreshed, changes, delta);
+        StateSet a = refreshedSet(left, refreshed);
+        StateSet changedB = right == null ? null : refreshNode(right, previous, refreshed, changes, delta);
+        StateSet b = right == null ? null : refreshedSet(right, refreshed);
+        StateSet old = previous.get(formula);
+        StateSet statesThatHold;
+        if (old == null || changedA == null || (right != null && changedB == null)) {
+            statesThatHold = right == null ? applyUnary(formula.getOperator(), a) : applyBinary(formula.getOperator(), a, b);
+        } else {
+            statesThatHold = update(formula.getOperator(), old, a, changedA, b, changedB, delta);
+        }
+        statesThatHold = statesThatHold.readOnly();
+        memo.put(formula, statesThatHold);
+        refreshed.put(formula, statesThatHold);
+        StateSet changed = null;
+        if (old != null) {
+            changed = statesThatHold == old ? kripke.emptySet() : old.symmetricDifference(statesThatHold);
+        }
+        changes.put(formula, changed);
+        return changed;
+    }
+
+    private StateSet refreshedSet(Formula formula, Map<Formula, StateSet> refreshed) {
+        if (formula.getOperator() == Operator.ATOM) {
+            return kripke.getStatesWithLabel(((Atom) formula).getName());
+        }
+        return refreshed.get(formula);
+    }
+
+    /**
+    * Works out a node's new set from its old one after the Kripke was edited. The boolean operators are just redone (they're a pass over the bits). EX and AX only redo the states which had transitions edited or have a successor whose operand set changed.
+    * The fixpoints delete and rederive (see updateEU and updateAU). The seeds are the states which had transitions edited or whose operand sets changed, and only the seeds whose change can take them out of the set start the delete step: for EU the ones which left phi or psi or lost a transition, for AU also the ones which got a new transition (it may go somewhere outside the set) and the ones left with no transitions. A change that can only grow the set (ie, a new label or a new transition for EU) deletes nothing.
+    * EG and AG are the complements of AF and EF of the complement (EG phi is not(AF(not(phi))) and AG phi is not(EF(not(phi))), deadlocks included), so they're updated that way.
+    * @param operator the node's operator
+    * @param old the node's set before the edits
+    * @param a new set of the (left) operand
+    * @param changedA states where a changed
+    * @param b new set of the right operand, or null for a unary operator
+    * @param changedB states where b changed, or null for a unary operator
+    * @param delta {@link KripkeDelta} of the edits
+    * @return The {@link StateSet} of states that hold for the node, which is old itself if nothing the node depends on changed
+    */
+    private StateSet update(Operator operator, StateSet old, StateSet a, StateSet changedA, StateSet b, StateSet changedB, KripkeDelta delta) {
+        boolean operandsChanged = !changedA.isEmpty() || (changedB != null && !changedB.isEmpty());
+        switch (operator) {
+            case NOT: return operandsChanged ? not(a) : old;
+            case AND:
+            case OR:
+            case IMPLIES: return operandsChanged ? applyBinary(operator, a, b) : old;
+            default: if (!operandsChanged && !delta.hasTransitionChanges()) { return old; }
+        }
+        StateSet seeds = delta.getChangedSources().union(changedA);
+        if (changedB != null) { seeds.addAll(changedB); }
+        StateSet lost = changedA.difference(a);  // states which left a or b
+        if (changedB != null) { lost.addAll(changedB.difference(b)); }
+        StateSet deadlocked = kripke.emptySet();
+        StateSet removedSources = delta.getRemovedSources();
+        for (int i = removedSources.nextSetBit(0); i >= 0; i = removedSources.nextSetBit(i + 1)) {
+            if (kripke.getOutDegree(i) == 0) { deadlocked.add(i); }
+        }
+        StateSet tautology = kripke.allStatesSet();
+        StateSet updated;
+        switch (operator) {
+            case EX: return updateNext(old, a, changedA, delta.getChangedSources(), false);
+            case AX: return updateNext(old, a, changedA, delta.getChangedSources(), true);
+            case EF: updated = updateEU(old, tautology, a, seeds, lost.addAll(removedSources)); break;
+            case EU: updated = updateEU(old, a, b, seeds, lost.addAll(removedSources)); break;
+            case AF: updated = updateAU(old, tautology, a, seeds, lost.addAll(delta.getAddedSources()).addAll(deadlocked)); break;
+            case AU: updated = updateAU(old, a, b, seeds, lost.addAll(delta.getAddedSources()).addAll(deadlocked)); break;
+            case EG:
+                updated = updateAU(old.complemented(), tautology, a.complemented(), seeds, changedA.intersection(a).addAll(delta.getAddedSources()).addAll(deadlocked));
+                if (updated != null) { updated.complement(); }
+                break;
+            case AG:
+                updated = updateEU(old.complemented(), tautology, a.complemented(), seeds, changedA.intersection(a).addAll(removedSources));
+                if (updated != null) { updated.complement(); }
+                break;
+            default: throw new IllegalArgumentException(operator + " is not a temporal operator");
+        }
+        if (updated == null) {  // the edits reach most of the fixpoint
+            return b == null ? applyUnary(operator, a) : applyBinary(operator, a, b);
+        }
+        return updated;
+    }
+
+    /**
+    * Updates EX phi (all = false) or AX phi (all = true): only the states with edited transitions and the predecessors of the states where phi changed can have a different answer, so only those look at their successors again
+    */
+    private StateSet updateNext(StateSet old, StateSet phi, StateSet changedPhi, StateSet changedSources, boolean all) {
+        int[] succOffsets = kripke.getSuccOffsets();
+        int[] succTargets = kripke.getSuccTargets();
+        StateSet dirty = preE(changedPhi).addAll(changedSources);
+        StateSet result = old.copy();
+        for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+            boolean holds = all;  // a state with no transitions is in AX phi and not in EX phi
+            for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+                if (phi.contains(succTargets[s]) != all) {
+                    holds = !all;
+                    break;
+                }
+            }
+            if (holds) {
+                result.add(i);
+            } else {
+                result.remove(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+    * Updates E[phi U psi] from its old set. Deletes first: every old state which can reach a delete seed through old states loses its place, since the path it was in the set for may go through the seed (a state which can't reach any delete seed still has the same path, so it stays). Then rederives: the deleted states and the seeds are in the set again if they're psi states or phi states with a successor in the set, and the backward pass of EU goes on from the ones added, same as addBackwardReachable.
+    * Only the deleted states, the seeds and the states added back (and their predecessors) are looked at, so an edit far from where the paths go costs little. An edit most of the paths go through costs more than starting over, so if the delete step takes out too many states (see DELETE_LIMIT) this gives up.
+    * @param old E[phi U psi] before the edits
+    * @param phi new phi
+    * @param psi new psi
+    * @param seeds states which had transitions edited or where phi or psi changed
+    * @param deleteSeeds the seeds which may have left the set
+    * @return The {@link StateSet} of states that hold for E[phi U psi], or null if the delete step took out too many states
+    */
+    private StateSet updateEU(StateSet old, StateSet phi, StateSet psi, StateSet seeds, StateSet deleteSeeds) {
+        int n = kripke.getNumStates();
+        int[] predOffsets = kripke.getPredOffsets();
+        int[] predSources = kripke.getPredSources();
+        int[] succOffsets = kripke.getSuccOffsets();
+        int[] succTargets = kripke.getSuccTargets();
+        StateSet Y = old.copy();
+        int[] candidates = new int[n];
+        int numCandidates = deleteBackwardReachable(Y, seeds, deleteSeeds, candidates);
+        if (numCandidates < 0) { return null; }
+        int[] worklist = new int[n];
+        int worklistSize = 0;
+        for (int k = 0; k < numCandidates; k++) {
+            int i = candidates[k];
+            if (Y.contains(i)) { continue; }
+            boolean holds = psi.contains(i);
+            if (!holds && phi.contains(i)) {
+                for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+                    if (Y.contains(succTargets[s])) {
+                        holds = true;
+                        break;
+                    }
+                }
+            }
+            if (holds && Y.add(i)) { worklist[worklistSize++] = i; }
+        }
+        while (worklistSize > 0) {
+            int i = worklist[--worklistSize];
+            for (int p = predOffsets[i]; p < predOffsets[i + 1]; p++) {
+                int pred = predSources[p];
+                if (phi.contains(pred) && Y.add(pred)) {
+                    worklist[worklistSize++] = pred;
+                }
+            }
+        }
+        return Y;
+    }
+
+    /**
+    * Updates A[phi U psi] from its old set. Deletes the same way as updateEU (a state is in A[phi U psi] because of the states it can reach, so one which can't reach a seed stays). Then rederives with the counters of AU, but only for the states that need one: a counter is the number of successors not settled yet (in the set and done with), worked out the first time the state is looked at and counted down after that. The deleted states and the seeds get theirs first, then the pass goes on backwards from the ones added.
+    * @param old A[phi U psi] before the edits
+    * @param phi new phi
+    * @param psi new psi
+    * @param seeds states which had transitions edited or where phi or psi changed
+    * @param deleteSeeds the seeds which may have left the set
+    * @return The {@link StateSet} of states that hold for A[phi U psi], or null if the delete step took out too many states (same as updateEU)
+    */
+    private StateSet updateAU(StateSet old, StateSet phi, StateSet psi, StateSet seeds, StateSet deleteSeeds) {
+        int n = kripke.getNumStates();
+        int[] predOffsets = kripke.getPredOffsets();
+        int[] predSources = kripke.getPredSources();
+        StateSet Y = old.copy();
+        int[] candidates = new int[n];
+        int numCandidates = deleteBackwardReachable(Y, seeds, deleteSeeds, candidates);
+        if (numCandidates < 0) { return null; }
+        StateSet settled = Y.copy();
+        int[] remaining = new int[n];
+        Arrays.fill(remaining, -1);
+        int[] worklist = new int[n];
+        int worklistSize = 0;
+        for (int k = 0; k < numCandidates; k++) {
+            int i = candidates[k];
+            if (Y.contains(i)) { continue; }
+            boolean holds = psi.contains(i);
+            if (!holds && phi.contains(i) && kripke.getOutDegree(i) > 0) {
+                remaining[i] = countUnsettled(i, settled);
+                holds = remaining[i] == 0;
+            }
+            if (holds && Y.add(i)) { worklist[worklistSize++] = i; }
+        }
+        while (worklistSize > 0) {
+            int i = worklist[--worklistSize];
+            for (int p = predOffsets[i]; p < predOffsets[i + 1]; p++) {
+                int pred = predSources[p];
+                if (Y.contains(pred) || !phi.contains(pred)) { continue; }
+                if (remaining[pred] < 0) { remaining[pred] = countUnsettled(pred, settled); }
+                if (--remaining[pred] == 0 && Y.add(pred)) {
+                    worklist[worklistSize++] = pred;
+                }
+            }
+            settled.add(i);  // after its predecessors, so a counter worked out above still counts i and is counted down once for each transition into it
+        }
+        return Y;
+    }
+
+    /**
+    * The delete step of updateEU and updateAU: removes from Y the delete seeds and every state of Y with a path through Y into one
+    * @param Y modifiable {@link StateSet} to delete from
+    * @param seeds {@link StateSet} of the seeds
+    * @param deleteSeeds {@link StateSet} of the seeds to delete from
+    * @param candidates filled with the seeds and the deleted states
+    * @return the number of entries put in candidates, or -1 if more than 1 / DELETE_LIMIT of the states were deleted (Y is left half done)
+    */
+    private int deleteBackwardReachable(StateSet Y, StateSet seeds, StateSet deleteSeeds, int[] candidates) {
+        int[] predOffsets = kripke.getPredOffsets();
+        int[] predSources = kripke.getPredSources();
+        int[] worklist = new int[kripke.getNumStates()];
+        int worklistSize = 0;
+        int numCandidates = 0;
+        int numDeleted = 0;
+        int maxDeleted = kripke.getNumStates() / DELETE_LIMIT;
+        for (int i = seeds.nextSetBit(0); i >= 0; i = seeds.nextSetBit(i + 1)) {
+            candidates[numCandidates++] = i;
+            if (deleteSeeds.contains(i) && Y.remove(i)) {
+                worklist[worklistSize++] = i;
+                numDeleted++;
+            }
+        }
+        while (worklistSize > 0) {
+            int i = worklist[--worklistSize];
+            for (int p = predOffsets[i]; p < predOffsets[i + 1]; p++) {
+                int pred = predSources[p];
+                if (Y.remove(pred)) {
+                    if (++numDeleted > maxDeleted) { return -1; }
+                    worklist[worklistSize++] = pred;
+                    if (!seeds.contains(pred)) { candidates[numCandidates++] = pred; }
+                }
+            }
+        }
+        return numCandidates;
+    }
+
+    private int countUnsettled(int i, StateSet settled) {
+        int[] succOffsets = kripke.getSuccOffsets();
+        int[] succTargets = kripke.getSuccTargets();
+        int count = 0;
+        for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+            if (!settled.contains(succTargets[s])) { count++; }
+        }
+        return count;
+    }
+
+    /**
+    * "Phi exists in a next state"
+    * @param phi is a {@link StateSet} about which we want to know which states satisfy EX
+    * @return The {@link StateSet} of states that hold for EX(phi)
+    */
+    public StateSet EX(StateSet phi) {
+        return preE(phi);
+    }
+
+    /**
+    * "Phi exists in a future state". EF phi is E[true U phi], so this is just the EU worklist with every state allowed on the path.
+    * @param phi is a {@link StateSet} about which we want to know which states satisfy EF
+    * @return The {@link StateSet} of states that hold for EF(phi)
+    */
+    public StateSet EF(StateSet phi) {
+        StateSet tautology = kripke.allStatesSet();
+        return EU(tautology,phi);
+    }
+
+    /**
+    * "Phi exists globally"
+    * Computed from the strongly connected components of the Kripke restricted to the phi states (see {@link SccDecomposition}, which the Kripke caches per restriction): a path can stay in phi forever from any state of a nontrivial component, and a phi state with no transitions satisfies EG too (same as not(AF(not(phi))), which this used to be). EG phi is then E[phi U those states], found by growing the seed set in place with the backward pass of EU. Both steps are O(|S| + |T|) and the seed set is the only set allocated.
+    * @param phi is a {@link StateSet} about which we want to know which states satisfy EG
+    * @return The {@link StateSet} of states that hold for EG(phi)
+    */
+    public StateSet EG(StateSet phi) {
+        StateSet seeds = kripke.getSccDecomposition(phi).getNontrivialStates().copy();
+        for (int i = phi.nextSetBit(0); i >= 0; i = phi.nextSetBit(i + 1)) {
+            if (kripke.getOutDegree(i) == 0) { seeds.add(i); }
+        }
+        return addBackwardReachable(seeds,phi);
+    }
+
+    /**
+    * "Phi is in all next states"
+    * Computed directly (not as not(EX(not(phi)))) with one pass over the Kripke's successor arrays: a state is in AX phi when none of its successors is outside phi, so a state with no transitions satisfies AX phi, same as not(EX(not(phi))). O(|S| + |T|) and the result is the only set allocated.
+    * With a pool and a big Kripke, the states are split over the pool instead (see parallelImage).
+    * @param phi is a {@link StateSet} about which we want to know which states satisfy AX
+    * @return The {@link StateSet} of states that hold for AX(phi)
+    */
+    public StateSet AX(StateSet phi) {
+        if (isParallel()) { return parallelImage(phi, true); }
+        int n = kripke.getNumStates();
+        int[] succOffsets = kripke.getSuccOffsets();
+        int[] succTargets = kripke.getSuccTargets();
+        StateSet AX = kripke.emptySet();
+        nextState:
+        for (int i = 0; i < n; i++) {
+            for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+                if (!phi.contains(succTargets[s])) { continue nextState; }
+            }
+            AX.add(i);
+        }
+        return AX;
+    }
+
+    /**
+    * "Phi is in the future in all paths from the current state". AF phi is A[true U phi], so this is just the counter based AU with every state allowed on the path.
+    * @param phi is a {@link StateSet} about which we want to know which states satisfy AF
+    * @return The {@link StateSet} of states that hold for AF(phi)
+    */
+    public StateSet AF(StateSet phi) {
+        StateSet tautology = kripke.allStatesSet();
+        return AU(tautology,phi);
+    }
+
+    /**
+    * "Phi is globally present in paths from the current state"
+    * Computed directly (not as not(EF(not(phi)))) as a greatest fixpoint: starts from the phi states and prunes them backwards from the states outside phi, removing each phi predecessor of a removed (or non-phi) state and putting it on the worklist. What is left are the phi states from which no path leaves phi. Every predecessor edge is looked at at most once, so this is O(|S| + |T|), and the result is the only set allocated.
+    * With a pool and a big Kripke, the pruning goes a level at a time while the frontier (the states removed by the last level) is big, with each level's predecessors split over the pool (see parallelPredecessors), and the worklist takes over from the first small frontier.
+    * @param phi is a {@link StateSet} about which we want to know which states satisfy AG
+    * @return The {@link StateSet} of states that hold for AG(phi)
+    */
+    public StateSet AG(StateSet phi) {
+        int n = kripke.getNumStates();
+        int[] predOffsets = kripke.getPredOffsets();
+        int[] predSources = kripke.getPredSources();
+        StateSet Y = phi.copy();
+        StateSet frontier = phi.complemented();
+        if (isParallel()) {
+            while (frontier.cardinality() >= PARALLEL_MIN_STATES) {
+                StateSet next = parallelPredecessors(frontier, Y, null, null);
+                Y.removeAll(next);
+                frontier = next;
+            }
+        }
+        int[] worklist = new int[n];
+        int worklistSize = 0;
+        for (int i = frontier.nextSetBit(0); i >= 0; i = frontier.nextSetBit(i + 1)) {
+            worklist[worklistSize++] = i;
+        }
+        while (worklistSize > 0) {
+            int i = worklist[--worklistSize];
+            for (int p = predOffsets[i]; p < predOffsets[i + 1]; p++) {
+                int pred = predSources[p];
+                if (Y.remove(pred)) {
+                    worklist[worklistSize++] = pred;
+                }
+            }
+        }
+        return Y;
+    }
+
+    /**
+    * "Phi until psi in a path from the current state"
+    * Backward worklist version of the SAT_EU algorithm: starts from the psi states and walks the Kripke's predecessor arrays, adding each phi predecessor that isn't in the result yet and putting it on the worklist. Every state goes on the worklist at most once, so every predecessor edge is looked at at most once and the whole operation is O(|S| + |T|), instead of one full preE pass per step of the longest phi path.
+    * With a pool and a big Kripke, the states are added a level at a time while the frontier (the states added by the last level) is big, with each level's predecessors split over the pool (see parallelPredecessors), and the worklist takes over from the first small frontier. EF, EG and AU grow their results the same way.
+    * @param phi {@link StateSet} about which we want to know if they happen until psi
+    * @param psi {@link StateSet} about which we want to know if phi happens unil
+    * @return The {@link StateSet} of states that hold for E[phi U psi]
+    */
+    public StateSet EU(StateSet phi, StateSet psi) {
+        return addBackwardReachable(psi.copy(),phi);
+    }
+
+    /**
+    * The backward worklist pass of EU, done in place: adds to Y every phi state which has a path through phi states into Y
+    * @param Y modifiable {@link StateSet} to grow (psi in E[phi U psi])
+    * @param phi {@link StateSet} of the states allowed on the paths
+    * @return Y
+    */
+    private StateSet addBackwardReachable(StateSet Y, StateSet phi) {
+        int[] predOffsets = kripke.getPredOffsets();
+        int[] predSources = kripke.getPredSources();
+        StateSet frontier = Y;
+        if (isParallel()) {
+            frontier = Y.copy();
+            while (frontier.cardinality() >= PARALLEL_MIN_STATES) {
+                StateSet next = parallelPredecessors(frontier, phi, Y, null);
+                Y.addAll(next);
+                frontier = next;
+            }
+        }
+        int[] worklist = new int[kripke.getNumStates()];
+        int worklistSize = 0;
+        for (int i = frontier.nextSetBit(0); i >= 0; i = frontier.nextSetBit(i + 1)) {
+            worklist[worklistSize++] = i;
+        }
+        while (worklistSize > 0) {
+            int i = worklist[--worklistSize];
+            for (int p = predOffsets[i]; p < predOffsets[i + 1]; p++) {
+                int pred = predSources[p];
+                if (phi.contains(pred) && Y.add(pred)) {
+                    worklist[worklistSize++] = pred;
+                }
+            }
+        }
+        return Y;
+    }
+
+    /**
+    * "Phi until psi in all path from the current state"
+    * Computed directly (not through EG, EU and the complements) with one backward pass: every state keeps a counter of its successors which aren't known to satisfy A[phi U psi] yet, starting at its number of transitions. Starting from the psi states, each state added to the result decrements the counters of its predecessors through the Kripke's predecessor arrays, and a phi state whose counter reaches zero (all its successors satisfy A[phi U psi]) is added in turn.
+    * A state with no transitions never reaches zero, so it's only in the result if it satisfies psi. Every predecessor edge is looked at at most once, so this is O(|S| + |T|).
+    * @param phi {@link StateSet} about which we want to know if they happen in all paths until psi
+    * @param psi {@link StateSet} about which we want to know if phi happens in all paths unil
+    * @return The {@link StateSet} of states that hold for A[phi U psi]
+    */
+    public StateSet AU(StateSet phi, StateSet psi) {
+        int n = kripke.getNumStates();
+        int[] predOffsets = kripke.getPredOffsets();
+        int[] predSources = kripke.getPredSources();
+        int[] succOffsets = kripke.getSuccOffsets();
+        int[] remaining = new int[n];
+        for (int i = 0; i < n; i++) {
+            remaining[i] = succOffsets[i + 1] - succOffsets[i];
+        }
+        StateSet Y = psi.copy();
+        StateSet frontier = Y;
+        if (isParallel()) {
+            AtomicIntegerArray sharedRemaining = new AtomicIntegerArray(remaining);
+            frontier = Y.copy();
+            while (frontier.cardinality() >= PARALLEL_MIN_STATES) {
+                StateSet next = parallelPredecessors(frontier, phi, Y, sharedRemaining);
+                Y.addAll(next);
+                frontier = next;
+            }
+            for (int i = 0; i < n; i++) {
+                remaining[i] = sharedRemaining.get(i);
+            }
+        }
+        int[] worklist = new int[n];
+        int worklistSize = 0;
+        for (int i = frontier.nextSetBit(0); i >= 0; i = frontier.nextSetBit(i + 1)) {
+            worklist[worklistSize++] = i;
+        }
+        while (worklistSize > 0) {
+            int i = worklist[--worklistSize];
+            for (int p = predOffsets[i]; p < predOffsets[i + 1]; p++) {
+                int pred = predSources[p];
+                if (--remaining[pred] == 0 && phi.contains(pred) && Y.add(pred)) {
+                    worklist[worklistSize++] = pred;
+                }
+            }
+        }
+        return Y;
+    }
+
+    /**
+    * The "or" set operator: "a or b"
+    * @param a {@link StateSet} we want to "or" with b
+    * @param b {@link StateSet} we want to "or" with a
+    * @return The {@link StateSet} of states in the union of a and b
+    */
+    public StateSet or(StateSet a, StateSet b) {
+        return union(a,b);
+    }
+
+    /**
+    * The "and" set operator: "a and b"
+    * @param a {@link StateSet} we want to "and" with b
+    * @param b {@link StateSet} we want to "and" with a
+    * @return The {@link StateSet} of states in the intersection of a and b
+    */
+    public StateSet and(StateSet a, StateSet b) {
+        return intersection(a,b);
+    }
+
+    /**
+    * The "not" set operator: "not a". O(1): the result is a lazy complement which shares a's bits (see {@link StateSet}), so the nots chained by AX, AG and IMPLIES don't copy anything.
+    * @param a {@link StateSet} we want to use the "not" operator on
+    * @return The {@link StateSet} of states not in set a
+    */
+    public StateSet not(StateSet a) {
+        return a.complemented();
+    }
+
+    /**
+    * The preE operation used in the CTL SAT algorithms. Walks the Kripke's reverse adjacency arrays from each state in phi, so only the predecessors of phi are touched.
+    * With a pool and a big Kripke, a big phi is split over the pool instead: when phi has more than 1 / (number of threads) of the states, each thread looking at the successors of its own share of the states (see parallelImage) beats walking the predecessors of phi on one thread, and otherwise phi's states are split up and each thread walks the predecessors of its share (see parallelPredecessors). A small phi (ie, the few states an edit changed) is always done on the calling thread.
+    * @param phi {@link StateSet} we want to use the preE operation on
+    * @return The {@link StateSet} of states that have a transition into phi (including states in phi that transition into other states in phi)
+    */
+    public StateSet preE(StateSet phi) {
+        if (isParallel()) {
+            int size = phi.cardinality();
+            if (size > kripke.getNumStates() / pool.getParallelism()) { return parallelImage(phi, false); }
+            if (size >= PARALLEL_MIN_STATES) { return parallelPredecessors(phi, null, null, null); }
+        }
+        int[] predOffsets = kripke.getPredOffsets();
+        int[] predSources = kripke.getPredSources();
+        StateSet preE = kripke.emptySet();
+        for (int i = phi.nextSetBit(0); i >= 0; i = phi.nextSetBit(i + 1)) {
+            for (int p = predOffsets[i]; p < predOffsets[i + 1]; p++) {
+                preE.add(predSources[p]);
+            }
+        }
+        return preE;
+    }
+
+    private boolean isParallel() {
+        return pool != null && kripke.getNumStates() >= PARALLEL_THRESHOLD;
+    }
+
+    /**
+    * preE (all = false) or AX (all = true) of a dense phi split over the pool. The state indices are cut into chunks of CHUNK_WORDS bitset words, and every state of a chunk looks at its own successors and sets its own bit, so each chunk fills in only its own words of the result and no locking is needed.
+    * Unlike the sequential preE this looks at every state's successors, not just the predecessors of phi, so it only pays off when phi is a big part of the Kripke.
+    * @param phi {@link StateSet} we want to use the operation on
+    * @param all false for preE, true for AX
+    * @return The {@link StateSet} of states in preE(phi) or AX(phi)
+    */
+    private StateSet parallelImage(StateSet phi, boolean all) {
+        int n = kripke.getNumStates();
+        long[] words = new long[(n + 63) >>> 6];
+        pool.invoke(new ImageTask(kripke.getSuccOffsets(), kripke.getSuccTargets(), n, phi, all, words, 0, words.length));
+        return StateSet.fromWords(n, words);
+    }
+
+    /**
+    * Fork join task for parallelImage: fills in words fromWord to toWord of the result, splitting the range in half until it's at most CHUNK_WORDS words
+    */
+    private static class ImageTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] succOffsets;
+        private final int[] succTargets;
+        private final int n;
+        private final StateSet phi;
+        private final boolean all;
+        private final long[] words;
+        private final int fromWord;
+        private final int toWord;
+
+        ImageTask(int[] succOffsets, int[] succTargets, int n, StateSet phi, boolean all, long[] words, int fromWord, int toWord) {
+            this.succOffsets = succOffsets;
+            this.succTargets = succTargets;
+            this.n = n;
+            this.phi = phi;
+            this.all = all;
+            this.words = words;
+            this.fromWord = fromWord;
+            this.toWord = toWord;
+        }
+
+        @Override
+        protected void compute() {
+            if (toWord - fromWord > CHUNK_WORDS) {
+                int middle = (fromWord + toWord) >>> 1;
+                invokeAll(new ImageTask(succOffsets, succTargets, n, phi, all, words, fromWord, middle),
+                          new ImageTask(succOffsets, succTargets, n, phi, all, words, middle, toWord));
+                return;
+            }
+            for (int w = fromWord; w < toWord; w++) {
+                long word = 0;
+                int end = Math.min(n, (w + 1) << 6);
+                for (int i = w << 6; i < end; i++) {
+                    boolean in = all;  // a state with no transitions is in AX but not in preE
+                    for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+                        if (phi.contains(succTargets[s]) != all) {
+                            in = !all;
+                            break;
+                        }
+                    }
+                    if (in) { word |= 1L << i; }
+                }
+                words[w] = word;
+            }
+        }
+    }
+
+    /**
+    * The predecessors of frontier which pass the filters, split over the pool: a sparse preE, or one level of the EU, AU or AG fixpoints. The states of frontier are cut into chunks of CHUNK_WORDS bitset words and every chunk walks the predecessors of its own states. A predecessor can be anywhere in the Kripke, so the results are marked in shared words with compare and set.
+    * frontier, allowed and excluded are only read, so they must not change until this returns.
+    * @param frontier {@link StateSet} whose predecessors are walked
+    * @param allowed {@link StateSet} the marked predecessors have to be in, or null for any state
+    * @param excluded {@link StateSet} the marked predecessors must not be in, or null for none
+    * @param remaining counters of successors not yet in the result (see AU), counted down once for each transition walked, so that a predecessor is only marked by the transition which takes its counter to zero; or null to mark every predecessor
+    * @return The {@link StateSet} of the marked states
+    */
+    private StateSet parallelPredecessors(StateSet frontier, StateSet allowed, StateSet excluded, AtomicIntegerArray remaining) {
+        int n = kripke.getNumStates();
+        AtomicLongArray marks = new AtomicLongArray((n + 63) >>> 6);
+        pool.invoke(new PredecessorTask(kripke.getPredOffsets(), kripke.getPredSources(), n, frontier, allowed, excluded, remaining, marks, 0, marks.length()));
+        long[] words = new long[marks.length()];
+        for (int w = 0; w < words.length; w++) {
+            words[w] = marks.get(w);
+        }
+        return StateSet.fromWords(n, words);
+    }
+
+    /**
+    * Fork join task for parallelPredecessors: walks the predecessors of the frontier states in words fromWord to toWord, splitting the range in half until it's at most CHUNK_WORDS words
+    */
+    private static class PredecessorTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] predOffsets;
+        private final int[] predSources;
+        private final int n;
+        private final StateSet frontier;
+        private final StateSet allowed;
+        private final StateSet excluded;
+        private final AtomicIntegerArray remaining;
+        private final AtomicLongArray marks;
+        private final int fromWord;
+        private final int toWord;
+
+        PredecessorTask(int[] predOffsets, int[] predSources, int n, StateSet frontier, StateSet allowed, StateSet excluded, AtomicIntegerArray remaining, AtomicLongArray marks, int fromWord, int toWord) {
+            this.predOffsets = predOffsets;
+            this.predSources = predSources;
+            this.n = n;
+            this.frontier = frontier;
+            this.allowed = allowed;
+            this.excluded = excluded;
+            this.remaining = remaining;
+            this.marks = marks;
+            this.fromWord = fromWord;
+            this.toWord = toWord;
+        }
+
+        @Override
+        protected void compute() {
+            if (toWord - fromWord > CHUNK_WORDS) {
+                int middle = (fromWord + toWord) >>> 1;
+                invokeAll(new PredecessorTask(predOffsets, predSources, n, frontier, allowed, excluded, remaining, marks, fromWord, middle),
+                          new PredecessorTask(predOffsets, predSources, n, frontier, allowed, excluded, remaining, marks, middle, toWord));
+                return;
+            }
+            int end = Math.min(n, toWord << 6);
+            for (int i = frontier.nextSetBit(fromWord << 6); i >= 0 && i < end; i = frontier.nextSetBit(i + 1)) {
+                for (int p = predOffsets[i]; p < predOffsets[i + 1]; p++) {
+                    int pred = predSources[p];
+                    if ((remaining == null || remaining.decrementAndGet(pred) == 0)
+                            && (allowed == null || allowed.contains(pred))
+                            && (excluded == null || !excluded.contains(pred))) {
+                        mark(pred);
+                    }
+                }
+            }
+        }
+
+        private void mark(int i) {
+            int w = i >>> 6;
+            long bit = 1L << i;
+            long word = marks.get(w);
+            while ((word & bit) == 0 && !marks.compareAndSet(w, word, word | bit)) {
+                word = marks.get(w);
+            }
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package modelCheckCTL.controller.ctl.checker;
+
+import modelCheckCTL.controller.ctl.formula.Atom;
+import modelCheckCTL.controller.ctl.formula.BinaryFormula;
+import modelCheckCTL.controller.ctl.formula.Formula;
+import modelCheckCTL.controller.ctl.formula.UnaryFormula;
+import modelCheckCTL.controller.types.kripke.Kripke;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Local (on-the-fly) model checker, for when only one state is asked about (the -s flag). Where the {@link Evaluator} computes the states of the whole Kripke which hold for every subformula, the LocalChecker starts at the state to check and only looks at the states it has to: it only follows transitions forward from the state to check, each temporal operator stops searching as soon as its answer is known (ie, EF p stops at the first p state it reaches) and subformulas are only checked on the states the search gets to.
+ * So on a big model a query about one state usually only touches the part of the model near it, instead of every state and transition.
+ *
+ * The answer for every (subformula, state) pair the checker works out is memoized, so it isn't worked out again by a later search or a later formula. A failed search also settles every state it went through (ie, if E[p U q] doesn't hold for the state to check, it doesn't hold for any state the search reached either), and AU settles every state it explored.
+ * The results are exactly the same as the Evaluator's, including for states with no transitions (AX and AG hold vacuously on them, EG holds on a phi state with no transitions, AU and AF don't hold on one unless psi does).
+ * Safe to use from several threads: checks on one LocalChecker are done one at a time.
+ */
+public class LocalChecker {
+
+    /**
+     * The {@link Kripke} the formulas are checked against
+     */
+    private final Kripke kripke;
+
+    /**
+     * Maximum number of subformulas kept in memo
+     */
+    private static final int MEMO_SIZE = 1024;
+
+    /**
+     * The memoized answers of the temporal subformulas: for each subformula, whether it holds for each state it was worked out for. Least recently used subformulas are dropped once there are more than MEMO_SIZE of them. Only used while holding its own lock.
+     */
+    private final Map<Formula, Map<Integer, Boolean>> memo = new LinkedHashMap<Formula, Map<Integer, Boolean>>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Formula, Map<Integer, Boolean>> eldest) {
+            return size() > MEMO_SIZE;
+        }
+    };
+
+    /**
+     * The {@link Kripke#getVersion()} the memoized answers were worked out for. Guarded by memo's lock.
+     */
+    private int memoVersion;
+
+    /**
+     * @param kripke {@link Kripke} to check formulas against
+     */
+    public LocalChecker(Kripke kripke) {
+        if (kripke == null) { throw new NullPointerException("kripke is null in LocalChecker call"); }
+        this.kripke = kripke;
+        this.memoVersion = kripke.getVersion();
+    }
+
+    public Kripke getKripke() {
+        return kripke;
+    }
+
+    /**
+     * Checks if a formula holds for one state
+     * @param formula {@link Formula} to check
+     * @param state dense index of the state to check (see {@link Kripke#indexOf(String)})
+     * @return true if the formula holds for the state
+     */
+    public boolean holds(Formula formula, int state) {
+        if (state < 0 || state >= kripke.getNumStates()) { throw new IndexOutOfBoundsException("state index " + state + " is not in the Kripke"); }
+        synchronized (memo) {
+            if (memoVersion != kripke.getVersion()) {
+                memo.clear();
+                memoVersion = kripke.getVersion();
+            }
+            return check(formula, state);
+        }
+    }
+
+    private boolean check(Formula formula, int state) {
+        switch (formula.getOperator()) {
+            case ATOM: return kripke.getStatesWithLabel(((Atom) formula).getName()).contains(state);
+            case NOT: return !check(((UnaryFormula) formula).getOperand(), state);
+            case AND: return check(left(formula), state) && check(right(formula), state);
+            case OR: return check(left(formula), state) || check(right(formula), state);
+            case IMPLIES: return !check(left(formula), state) || check(right(formula), state);
+            default: break;
+        }
+        Boolean known = lookup(formula, state);
+        if (known != null) { return known; }
+        boolean holds;
+        switch (formula.getOperator()) {
+            case EX: holds = EX(((UnaryFormula) formula).getOperand(), state); break;
+            case AX: holds = AX(((UnaryFormula) formula).getOperand(), state); break;
+            case EF: holds = search(formula, null, ((UnaryFormula) formula).getOperand(), true, state); break;
+            case EU: holds = search(formula, left(formula), right(formula), true, state); break;
+            case AG: holds = search(formula, null, ((UnaryFormula) formula).getOperand(), false, state); break;
+            case EG: holds = EG(formula, ((UnaryFormula) formula).getOperand(), state); break;
+            case AF: holds = AU(formula, null, ((UnaryFormula) formula).getOperand(), state); break;
+            case AU: holds = AU(formula, left(formula), right(formula), state); break;
+            default: throw new IllegalArgumentException(formula.getOperator() + " is not an operator");
+        }
+        remember(formula, state, holds);
+        return holds;
+    }
+
+    /**
+     * EX phi: stops at the first successor phi holds for
+     */
+    private boolean EX(Formula phi, int state) {
+        int[] succOffsets = kripke.getSuccOffsets();
+        int[] succTargets = kripke.getSuccTargets();
+        for (int s = succOffsets[state]; s < succOffsets[state + 1]; s++) {
+            if (check(phi, succTargets[s])) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * AX phi: stops at the first successor phi doesn't hold for. Holds for a state with no transitions.
+     */
+    private boolean AX(Formula phi, int state) {
+        int[] succOffsets = kripke.getSuccOffsets();
+        int[] succTargets = kripke.getSuccTargets();
+        for (int s = succOffsets[state]; s < succOffsets[state + 1]; s++) {
+            if (!check(phi, succTargets[s])) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Depth first search forward from a state for a state where target is goal, only going on from states which phi holds for (from every state if phi is null). Used for EU and EF (the formula holds if a psi state is found) and AG (the formula holds if no state without phi is found).
+     * If nothing is found, the formula's answer is settled for every state the search went through, since everything reachable from them was searched too.
+     * @param formula the EU, EF or AG formula being checked
+     * @param phi {@link Formula} which has to hold on the way, or null for any state
+     * @param target {@link Formula} being searched for
+     * @param goal value of target being searched for: true for EU and EF, false for AG
+     * @param state state the search starts from
+     * @return true for EU and EF if a target state was found, true for AG if none was (ie, the formula's answer for the state)
+     */
+    private boolean search(Formula formula, Formula phi, Formula target, boolean goal, int state) {
+        int[] succOffsets = kripke.getSuccOffsets();
+        int[] succTargets = kripke.getSuccTargets();
+        Map<Integer, Boolean> known = answers(formula);
+        Set<Integer> visited = new HashSet<Integer>();
+        int[] stack = new int[16];
+        int stackSize = 0;
+        visited.add(state);
+        stack[stackSize++] = state;
+        while (stackSize > 0) {
+            int i = stack[--stackSize];
+            Boolean answer = i == state ? null : known.get(i);
+            if (answer != null) {
+                if (answer == goal) { return goal; }
+                continue;  // settled by an earlier search, and the target isn't reachable from it
+            }
+            if (check(target, i) == goal) { return goal; }
+            if (phi != null && !check(phi, i)) { continue; }
+            for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+                int succ = succTargets[s];
+                if (visited.add(succ)) {
+                    if (stackSize == stack.length) { stack = Arrays.copyOf(stack, stackSize * 2); }
+                    stack[stackSize++] = succ;
+                }
+            }
+        }
+        for (Integer i : visited) {
+            known.put(i, !goal);
+        }
+        return !goal;
+    }
+
+    /**
+     * EG phi: depth first search forward through the phi states for a path which stays in phi forever (a transition back to a state on the search stack closes a cycle) or ends in a phi state with no transitions. If neither is found, EG phi doesn't hold for any state the search went through.
+     */
+    private boolean EG(Formula formula, Formula phi, int state) {
+        int[] succOffsets = kripke.getSuccOffsets();
+        int[] succTargets = kripke.getSuccTargets();
+        Map<Integer, Boolean> known = answers(formula);
+        if (!check(phi, state)) { return false; }
+        Map<Integer, Boolean> onStack = new HashMap<Integer, Boolean>();  // visited states, true while they're on the stack
+        int[] stack = new int[16];
+        int[] next = new int[16];  // for each state on the stack, the position in succTargets of its next transition to follow
+        int stackSize = 0;
+        onStack.put(state, true);
+        stack[stackSize] = state;
+        next[stackSize++] = succOffsets[state];
+        if (succOffsets[state] == succOffsets[state + 1]) { return true; }
+        while (stackSize > 0) {
+            int i = stack[stackSize - 1];
+            if (next[stackSize - 1] == succOffsets[i + 1]) {
+                onStack.put(i, false);
+                stackSize--;
+                continue;
+            }
+            int succ = succTargets[next[stackSize - 1]++];
+            Boolean visited = onStack.get(succ);
+            if (visited != null) {
+                if (visited) { return true; }  // cycle through phi states
+                continue;  // already searched, no way to stay in phi from it
+            }
+            Boolean answer = known.get(succ);
+            if (answer != null) {
+                if (answer) { return true; }
+                continue;
+            }
+            if (!check(phi, succ)) { continue; }
+            if (succOffsets[succ] == succOffsets[succ + 1]) { return true; }  // phi state with no transitions
+            onStack.put(succ, true);
+            if (stackSize == stack.length) {
+                stack = Arrays.copyOf(stack, stackSize * 2);
+                next = Arrays.copyOf(next, stackSize * 2);
+            }
+            stack[stackSize] = succ;
+            next[stackSize++] = succOffsets[succ];
+        }
+        for (Integer i : onStack.keySet()) {
+            known.put(i, false);
+        }
+        return false;
+    }
+
+    /**
+     * A[phi U psi] (AF psi when phi is null). First explores forward from the state through the states where phi holds and psi doesn't, stopping with false as soon as it reaches a state where neither holds, or one of those states with no transitions. Otherwise every path out of the explored states ends in a psi state, so the formula holds for an explored state exactly when no cycle of explored states can be reached from it, which is worked out with the same successor counters as {@link Evaluator#AU(modelCheckCTL.controller.types.kripke.StateSet, modelCheckCTL.controller.types.kripke.StateSet)}, only over the explored states. The answers for all of them are memoized.
+     */
+    private boolean AU(Formula formula, Formula phi, Formula psi, int state) {
+        int[] succOffsets = kripke.getSuccOffsets();
+        int[] succTargets = kripke.getSuccTargets();
+        Map<Integer, Boolean> known = answers(formula);
+        Map<Integer, Integer> localIndex = new HashMap<Integer, Integer>();  // explored state -> its position in explored
+        List<Integer> explored = new ArrayList<Integer>();
+        localIndex.put(state, 0);
+        explored.add(state);
+        for (int e = 0; e < explored.size(); e++) {
+            int i = explored.get(e);
+            if (e > 0 && Boolean.TRUE.equals(known.get(i))) { continue; }  // already known to hold, so every path from it reaches psi
+            if (check(psi, i)) {
+                if (i == state) { return true; }
+                continue;
+            }
+            if (phi != null && !check(phi, i)) { return false; }
+            if (succOffsets[i] == succOffsets[i + 1]) { return false; }
+            for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+                int succ = succTargets[s];
+                if (localIndex.containsKey(succ)) { continue; }
+                Boolean answer = known.get(succ);
+                if (answer != null && !answer) { return false; }
+                localIndex.put(succ, explored.size());
+                explored.add(succ);
+            }
+        }
+
+        // the explored states where psi holds (and the ones already known to hold, the known false ones ended the search above) are the starting points, same as the psi states in Evaluator.AU
+        int numExplored = explored.size();
+        int[] remaining = new int[numExplored];
+        int[] worklist = new int[numExplored];
+        int worklistSize = 0;
+        boolean[] holds = new boolean[numExplored];
+        for (int e = 0; e < numExplored; e++) {
+            int i = explored.get(e);
+            if ((e > 0 && Boolean.TRUE.equals(known.get(i))) || check(psi, i)) {
+                holds[e] = true;
+                worklist[worklistSize++] = e;
+            } else {
+                for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+                    if (localIndex.containsKey(succTargets[s])) { remaining[e]++; }
+                }
+            }
+        }
+        int[] predOffsets = kripke.getPredOffsets();
+        int[] predSources = kripke.getPredSources();
+        while (worklistSize > 0) {
+            int i = explored.get(worklist[--worklistSize]);
+            for (int p = predOffsets[i]; p < predOffsets[i + 1]; p++) {
+                Integer pred = localIndex.get(predSources[p]);
+                if (pred != null && !holds[pred] && --remaining[pred] == 0) {
+                    holds[pred] = true;
+                    worklist[worklistSize++] = pred;
+                }
+            }
+        }
+        for (int e = 0; e < numExplored; e++) {
+            known.put(explored.get(e), holds[e]);
+        }
+        return holds[0];
+    }
+
+    private Boolean lookup(Formula formula, int state) {
+        Map<Integer, Boolean> answers = memo.get(formula);
+        return answers == null ? null : answers.get(state);
+    }
+
+    private void remember(Formula formula, int state, boolean holds) {
+        answers(formula).put(state, holds);
+    }
+
+    /**
+     * @return the memoized answers of a formula, creating the map the first time
+     */
+    private Map<Integer, Boolean> answers(Formula formula) {
+        Map<Integer, Boolean> answers = memo.get(formula);
+        if (answers == null) {
+            answers = new HashMap<Integer, Boolean>();
+            memo.put(formula, answers);
+        }
+        return answers;
+    }
+
+    private static Formula left(Formula formula) {
+        return ((BinaryFormula) formula).getLeft();
+    }
+
+    private static Formula right(Formula formula) {
+        return ((BinaryFormula) formula).getRight();
+    }
+
+}
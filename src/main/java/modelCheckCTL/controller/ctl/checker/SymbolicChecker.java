@@ -0,0 +1,478 @@
+package modelCheckCTL.controller.ctl.checker;
+
+import modelCheckCTL.controller.ctl.bdd.BddManager;
+import modelCheckCTL.controller.ctl.formula.Atom;
+import modelCheckCTL.controller.ctl.formula.BinaryFormula;
+import modelCheckCTL.controller.ctl.formula.Formula;
+import modelCheckCTL.controller.ctl.formula.UnaryFormula;
+import modelCheckCTL.controller.types.kripke.Kripke;
+import modelCheckCTL.controller.types.kripke.StateSet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Symbolic model checker (the -x symbolic engine): computes the same sets as the {@link Evaluator}, but with binary decision diagrams (see {@link BddManager}) instead of one bit per state.
+ * Each state is encoded by a code of k bits: one bit per atom of the Kripke, which is set if the state has the label, followed by the fewest extra bits which number the states with the same labels apart. So an atom is a single variable, and states with the same labels share most of their BDD paths. When the atoms and the extra bits don't fit in MAX_CODE_BITS, the code is the state's index instead.
+ * Current state bit b is BDD variable 2b and next state bit b is variable 2b + 1 (most significant bit first, interleaved so the transition relation stays small). A set of states is the BDD of the codes in it, and the transitions are one BDD over the current and next state variables.
+ * EX is the preimage of the relation (one relational product), EU and AU are least fixpoints of it and EG is a greatest fixpoint, so each step works on whole sets of states at once - on models with a lot of regular structure the BDDs are much smaller than the state count.
+ *
+ * The transition relation of a model with little regular structure (ie, random transitions) doesn't get much smaller than the transitions themselves, so on those models this is much slower than the Evaluator.
+ * The results are exactly the same as the Evaluator's, including for states with no transitions (AX and AG hold vacuously on them, EG holds on a phi state with no transitions, AU and AF don't hold on one unless psi does).
+ * The BDD of every subformula is memoized like the Evaluator's sets. Safe to use from several threads: evaluations on one SymbolicChecker are done one at a time.
+ */
+public class SymbolicChecker {
+
+    /**
+     * The {@link Kripke} the formulas are checked against
+     */
+    private final Kripke kripke;
+
+    /**
+     * Maximum number of subformulas kept in memo
+     */
+    private static final int MEMO_SIZE = 1024;
+
+    /**
+     * Maximum number of bits in a state's code, so that the code of a transition (the bits of both states) fits in a long
+     */
+    private static final int MAX_CODE_BITS = 31;
+
+    /**
+     * The BDD of each evaluated (non-atom) subformula. Each BDD in it is referenced, and dereferenced when it's dropped. Least recently used subformulas are dropped once there are more than MEMO_SIZE of them. Only used while holding its own lock.
+     */
+    private final Map<Formula, Integer> memo = new LinkedHashMap<Formula, Integer>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Formula, Integer> eldest) {
+            if (size() <= MEMO_SIZE) { return false; }
+            bdd.deref(eldest.getValue());
+            return true;
+        }
+    };
+
+    /**
+     * The referenced BDD of each atom, made the first time the atom is used. Guarded by memo's lock.
+     */
+    private final Map<String, Integer> atoms = new HashMap<String, Integer>();
+
+    /**
+     * The {@link Kripke#getVersion()} the BDDs below were built for. Guarded by memo's lock.
+     */
+    private int version;
+
+    /**
+     * Everything below is built from the Kripke by build() and guarded by memo's lock
+     */
+    private BddManager bdd;
+
+    /**
+     * Number of bits per state
+     */
+    private int numBits;
+
+    /**
+     * The code of each state, by index (see the class comment)
+     */
+    private int[] codes;
+
+    /**
+     * The codes in increasing order, and the index of the state with each of them, for decoding
+     */
+    private int[] sortedCodes;
+    private int[] statesBySortedCode;
+
+    /**
+     * The codes of the states of the Kripke
+     */
+    private int validStates;
+
+    /**
+     * The transition relation, over the current and next state variables
+     */
+    private int transitions;
+
+    /**
+     * The states with at least one transition, and the ones with none
+     */
+    private int hasSuccessor;
+    private int deadlocks;
+
+    /**
+     * Cube of the next state variables, quantified by the preimage
+     */
+    private int nextCube;
+
+    /**
+     * Replacement (see {@link BddManager#newReplacement(int[])}) renaming the current state variables to the next state variables
+     */
+    private int toNext;
+
+    /**
+     * If true the BDDs are garbage collected and reordered in every operation (see {@link BddManager#setStressTest(boolean)})
+     */
+    private final boolean stressTest;
+
+    /**
+     * @param kripke {@link Kripke} to check formulas against. The Kripke must be fully populated (see {@link Kripke#checkKripkeForNulls()}).
+     */
+    public SymbolicChecker(Kripke kripke) {
+        this(kripke, false);
+    }
+
+    /**
+     * @param kripke {@link Kripke} to check formulas against. The Kripke must be fully populated (see {@link Kripke#checkKripkeForNulls()}).
+     * @param stressTest true to garbage collect and reorder the BDDs in every operation, which is very slow and only meant for checking the results against the other engines (-x cross)
+     */
+    public SymbolicChecker(Kripke kripke, boolean stressTest) {
+        if (kripke == null) { throw new NullPointerException("kripke is null in SymbolicChecker call"); }
+        this.kripke = kripke;
+        this.stressTest = stressTest;
+        synchronized (memo) {
+            build();
+        }
+    }
+
+    public Kripke getKripke() {
+        return kripke;
+    }
+
+    /**
+     * Evaluates a formula against the Kripke
+     * @param formula {@link Formula} to check
+     * @return The read-only {@link StateSet} of the states in the Kripke which hold for the formula
+     */
+    public StateSet evaluate(Formula formula) {
+        synchronized (memo) {
+            if (version != kripke.getVersion()) { build(); }
+            return toStateSet(evaluateNode(formula)).readOnly();
+        }
+    }
+
+    /**
+     * @return number of BDD nodes in use (for comparing with the number of states)
+     */
+    public int getNumNodes() {
+        synchronized (memo) {
+            return bdd.getNumNodes();
+        }
+    }
+
+    /**
+     * Encodes the Kripke: the valid states, the transition relation and the states with and without transitions. Drops the memoized BDDs of an earlier version.
+     */
+    private void build() {
+        memo.clear();
+        atoms.clear();
+        version = kripke.getVersion();
+        int n = kripke.getNumStates();
+        buildCodes();
+        bdd = new BddManager(2 * numBits);
+        int[] currentVars = new int[numBits];
+        int[] nextVars = new int[numBits];
+        int[] bothVars = new int[2 * numBits];
+        int[] toNextMap = new int[2 * numBits];
+        Arrays.fill(toNextMap, -1);
+        for (int b = 0; b < numBits; b++) {
+            currentVars[b] = 2 * b;
+            nextVars[b] = 2 * b + 1;
+            toNextMap[2 * b] = 2 * b + 1;
+        }
+        for (int v = 0; v < 2 * numBits; v++) {
+            bothVars[v] = v;
+        }
+        toNext = bdd.newReplacement(toNextMap);
+        nextCube = bdd.ref(bdd.cube(nextVars));
+
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = codes[i];
+        }
+        validStates = bdd.ref(bdd.fromKeys(keys, n, currentVars));
+
+        // the relation's keys interleave the bits of the state and its successor, current bit first
+        int[] succOffsets = kripke.getSuccOffsets();
+        int[] succTargets = kripke.getSuccTargets();
+        long[] edgeKeys = new long[succOffsets[n]];
+        for (int i = 0; i < n; i++) {
+            for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+                edgeKeys[s] = interleave(codes[i], codes[succTargets[s]]);
+            }
+        }
+        transitions = bdd.ref(bdd.fromKeys(edgeKeys, edgeKeys.length, bothVars));
+        hasSuccessor = image(validStates);
+        deadlocks = bdd.ref(bdd.diff(validStates, hasSuccessor));
+        bdd.setAutoReorder(true);
+        bdd.setStressTest(stressTest);
+    }
+
+    /**
+     * Works out numBits and the code of each state (see the class comment). The states are sorted by their labels, and the states with the same labels are numbered in index order.
+     */
+    private void buildCodes() {
+        int n = kripke.getNumStates();
+        int numAtoms = kripke.getNumAtoms();
+        codes = new int[n];
+        sortedCodes = new int[n];
+        statesBySortedCode = new int[n];
+        if (numAtoms < MAX_CODE_BITS) {
+            // the labels of each state as a bit mask, above its index
+            long[] byLabels = new long[n];
+            for (int i = 0; i < n; i++) {
+                byLabels[i] = i;
+            }
+            for (int a = 0; a < numAtoms; a++) {
+                StateSet labelled = kripke.getAtomStates(a);
+                for (int i = labelled.nextSetBit(0); i >= 0; i = labelled.nextSetBit(i + 1)) {
+                    byLabels[i] |= 1L << (32 + numAtoms - 1 - a);
+                }
+            }
+            Arrays.sort(byLabels);
+            int[] ranks = new int[n];
+            int maxRank = 0;
+            for (int j = 1; j < n; j++) {
+                ranks[j] = (byLabels[j] >>> 32) == (byLabels[j - 1] >>> 32) ? ranks[j - 1] + 1 : 0;
+                maxRank = Math.max(maxRank, ranks[j]);
+            }
+            int rankBits = 32 - Integer.numberOfLeadingZeros(maxRank);
+            if (numAtoms + rankBits <= MAX_CODE_BITS) {
+                numBits = Math.max(1, numAtoms + rankBits);
+                for (int j = 0; j < n; j++) {
+                    int state = (int) byLabels[j];
+                    sortedCodes[j] = (int) (byLabels[j] >>> 32) << rankBits | ranks[j];
+                    statesBySortedCode[j] = state;
+                    codes[state] = sortedCodes[j];
+                }
+                return;
+            }
+        }
+        numBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(0, n - 1)));
+        for (int i = 0; i < n; i++) {
+            codes[i] = i;
+            sortedCodes[i] = i;
+            statesBySortedCode[i] = i;
+        }
+    }
+
+    /**
+     * @param state code of the from state
+     * @param target code of the to state
+     * @return the key of the transition from state to target: bit b of state and bit b of target next to each other, from the most significant bit down
+     */
+    private long interleave(int state, int target) {
+        long key = 0;
+        for (int b = numBits - 1; b >= 0; b--) {
+            key = (key << 2) | (((state >>> b) & 1L) << 1) | ((target >>> b) & 1L);
+        }
+        return key;
+    }
+
+    /**
+     * @return the referenced BDD of the formula
+     */
+    private int evaluateNode(Formula formula) {
+        if (formula instanceof Atom) { return atom(((Atom) formula).getName()); }
+        Integer known = memo.get(formula);
+        if (known != null) { return known; }
+        int result;
+        if (formula instanceof UnaryFormula) {
+            int phi = bdd.ref(evaluateNode(((UnaryFormula) formula).getOperand()));
+            try {
+                result = evaluateUnary(formula, phi);
+            } finally {
+                bdd.deref(phi);
+            }
+        } else {
+            int a = bdd.ref(evaluateNode(((BinaryFormula) formula).getLeft()));
+            int b = bdd.ref(evaluateNode(((BinaryFormula) formula).getRight()));
+            try {
+                result = evaluateBinary(formula, a, b);
+            } finally {
+                bdd.deref(a);
+                bdd.deref(b);
+            }
+        }
+        memo.put(formula, result);
+        return result;
+    }
+
+    /**
+     * The helpers below take BDDs which are referenced by the caller and return a referenced BDD
+     */
+    private int evaluateUnary(Formula formula, int phi) {
+        switch (formula.getOperator()) {
+            case NOT: return not(phi);
+            case EX: return image(phi);
+            case AX: return AX(phi);
+            case EF: return EU(validStates, phi);
+            case AF: return AU(validStates, phi);
+            case EG: return EG(phi);
+            case AG: return AG(phi);
+            default: throw new IllegalArgumentException(formula.getOperator() + " is not a unary operator");
+        }
+    }
+
+    private int evaluateBinary(Formula formula, int a, int b) {
+        switch (formula.getOperator()) {
+            case AND: return bdd.ref(bdd.and(a, b));
+            case OR: return bdd.ref(bdd.or(a, b));
+            case IMPLIES: return bdd.ref(bdd.or(bdd.diff(validStates, a), b));
+            case EU: return EU(a, b);
+            case AU: return AU(a, b);
+            default: throw new IllegalArgumentException(formula.getOperator() + " is not a binary operator");
+        }
+    }
+
+    private int atom(String name) {
+        Integer known = atoms.get(name);
+        if (known != null) { return known; }
+        StateSet states = kripke.getStatesWithLabel(name);
+        long[] keys = new long[states.cardinality()];
+        int numKeys = 0;
+        for (int i = states.nextSetBit(0); i >= 0; i = states.nextSetBit(i + 1)) {
+            keys[numKeys++] = codes[i];
+        }
+        int[] currentVars = new int[numBits];
+        for (int b = 0; b < numBits; b++) {
+            currentVars[b] = 2 * b;
+        }
+        int result = bdd.ref(bdd.fromKeys(keys, numKeys, currentVars));
+        atoms.put(name, result);
+        return result;
+    }
+
+    private int not(int phi) {
+        return bdd.ref(bdd.diff(validStates, phi));
+    }
+
+    /**
+     * Preimage: the states with a transition into phi (EX phi)
+     */
+    private int image(int phi) {
+        return bdd.ref(bdd.relProd(transitions, bdd.replace(phi, toNext), nextCube));
+    }
+
+    /**
+     * AX phi is not EX not phi, so it holds on the states with no transitions
+     */
+    private int AX(int phi) {
+        int notPhi = not(phi);
+        int EXNotPhi = image(notPhi);
+        bdd.deref(notPhi);
+        int result = not(EXNotPhi);
+        bdd.deref(EXNotPhi);
+        return result;
+    }
+
+    /**
+     * AG phi is not EF not phi
+     */
+    private int AG(int phi) {
+        int notPhi = not(phi);
+        int EFNotPhi = EU(validStates, notPhi);
+        bdd.deref(notPhi);
+        int result = not(EFNotPhi);
+        bdd.deref(EFNotPhi);
+        return result;
+    }
+
+    /**
+     * Least fixpoint Z = psi or (phi and EX Z)
+     */
+    private int EU(int phi, int psi) {
+        int Z = bdd.ref(psi);
+        while (true) {
+            int EXZ = image(Z);
+            int next = bdd.ref(bdd.or(psi, bdd.and(phi, EXZ)));
+            bdd.deref(EXZ);
+            if (next == Z) {
+                bdd.deref(next);
+                return Z;
+            }
+            bdd.deref(Z);
+            Z = next;
+        }
+    }
+
+    /**
+     * Least fixpoint Z = psi or (phi and has a transition and AX Z). The states with no transitions aren't added unless they're in psi, same as the Evaluator's counters.
+     */
+    private int AU(int phi, int psi) {
+        int guard = bdd.ref(bdd.and(phi, hasSuccessor));
+        int Z = bdd.ref(psi);
+        while (true) {
+            int notZ = not(Z);
+            int EXNotZ = image(notZ);
+            bdd.deref(notZ);
+            int next = bdd.ref(bdd.or(psi, bdd.diff(guard, EXNotZ)));
+            bdd.deref(EXNotZ);
+            if (next == Z) {
+                bdd.deref(next);
+                bdd.deref(guard);
+                return Z;
+            }
+            bdd.deref(Z);
+            Z = next;
+        }
+    }
+
+    /**
+     * Greatest fixpoint Z = phi and (EX Z or no transitions), so a path can stay in phi forever or stop in a phi state with no transitions
+     */
+    private int EG(int phi) {
+        int Z = bdd.ref(phi);
+        while (true) {
+            int EXZ = image(Z);
+            int next = bdd.ref(bdd.and(phi, bdd.or(deadlocks, EXZ)));
+            bdd.deref(EXZ);
+            if (next == Z) {
+                bdd.deref(next);
+                return Z;
+            }
+            bdd.deref(Z);
+            Z = next;
+        }
+    }
+
+    /**
+     * Decodes a BDD over the current state variables into the {@link StateSet} of the state indices it's true for
+     */
+    private StateSet toStateSet(int f) {
+        StateSet states = kripke.emptySet();
+        int[] levelBits = new int[2 * numBits];
+        for (int b = 0; b < numBits; b++) {
+            levelBits[bdd.getLevel(2 * b)] = numBits - 1 - b;  // variable 0 is the most significant bit
+        }
+        int[] currentLevels = new int[numBits];
+        for (int b = 0; b < numBits; b++) {
+            currentLevels[b] = bdd.getLevel(2 * b);
+        }
+        Arrays.sort(currentLevels);
+        addStates(f, currentLevels, 0, 0, levelBits, states);
+        return states;
+    }
+
+    /**
+     * Adds the states f is true for, given the bits of the current state variables above currentLevels[depth] set in code
+     */
+    private void addStates(int f, int[] currentLevels, int depth, int code, int[] levelBits, StateSet states) {
+        if (f == BddManager.FALSE) { return; }
+        if (depth == currentLevels.length) {
+            int j = Arrays.binarySearch(sortedCodes, code);
+            if (j >= 0) { states.add(statesBySortedCode[j]); }
+            return;
+        }
+        int level = currentLevels[depth];
+        int bit = 1 << levelBits[level];
+        if (f != BddManager.TRUE && bdd.getLevel(bdd.getVar(f)) == level) {
+            addStates(bdd.getLow(f), currentLevels, depth + 1, code, levelBits, states);
+            addStates(bdd.getHigh(f), currentLevels, depth + 1, code | bit, levelBits, states);
+        } else {
+            // f doesn't depend on this bit (the BDDs of state sets don't have next state variables)
+            addStates(f, currentLevels, depth + 1, code, levelBits, states);
+            addStates(f, currentLevels, depth + 1, code | bit, levelBits, states);
+        }
+    }
+
+}
@@ -0,0 +1,4 @@
+/**
+ * The model checking algorithms - the Evaluator walks a parsed CTL formula (see /formula) and computes the states of a Kripke which hold for it, the LocalChecker checks one state on the fly and the SymbolicChecker computes the same states as the Evaluator with BDDs (see /bdd)
+ */
+package modelCheckCTL.controller.ctl.checker;
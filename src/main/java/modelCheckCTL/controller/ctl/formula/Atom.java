@@ -0,0 +1,36 @@
+package modelCheckCTL.controller.ctl.formula;
+
+/**
+ * Leaf of a {@link Formula}: an atomic proposition (ie, "p" or "q1"), which holds in the states labeled with it
+ */
+public final class Atom extends Formula {
+
+    /**
+     * The atom as written in the formula and in the Kripke labels
+     */
+    private final String name;
+
+    Atom(String name) {
+        super(Operator.ATOM, name.hashCode());
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int size() {
+        return 1;
+    }
+
+    @Override
+    boolean sameOperands(Formula other) {
+        return name.equals(((Atom) other).name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,51 @@
+package modelCheckCTL.controller.ctl.formula;
+
+/**
+ * {@link Formula} node with two operands: "and", "or", "->", E[left U right] or A[left U right]
+ */
+public final class BinaryFormula extends Formula {
+
+    private final Formula left;
+
+    private final Formula right;
+
+    /**
+     * Number of nodes in this formula
+     */
+    private final int size;
+
+    BinaryFormula(Operator operator, Formula left, Formula right) {
+        super(operator, (31 * operator.ordinal() + checkNotNull(left).hashCode()) * 31 + checkNotNull(right).hashCode());
+        this.left = left;
+        this.right = right;
+        this.size = 1 + left.size() + right.size();
+    }
+
+    public Formula getLeft() {
+        return left;
+    }
+
+    public Formula getRight() {
+        return right;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    boolean sameOperands(Formula other) {
+        BinaryFormula otherBinary = (BinaryFormula) other;
+        return left == otherBinary.left && right == otherBinary.right;
+    }
+
+    /**
+     * @return the formula like "(p and q)" or "E(p U q)"
+     */
+    @Override
+    public String toString() {
+        if (getOperator().isUntil()) { return getOperator().getSymbol() + "(" + left + " U " + right + ")"; }
+        return "(" + left + " " + getOperator().getSymbol() + " " + right + ")";
+    }
+}
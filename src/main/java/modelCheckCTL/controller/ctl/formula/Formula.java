@@ -0,0 +1,206 @@
+package modelCheckCTL.controller.ctl.formula;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+/**
+ * Immutable abstract syntax tree (AST) of a CTL formula, built by the {@link modelCheckCTL.controller.ctl.Parser.Parser} and evaluated against a Kripke by the {@link modelCheckCTL.controller.ctl.checker.Evaluator}.
+ * Parsing and evaluating are separate steps, so one parsed formula can be inspected, cached and evaluated against any number of Kripkes.
+ *
+ * There are exactly three kinds of nodes: {@link Atom} (leaves), {@link UnaryFormula} (not and the six unary temporal operators) and {@link BinaryFormula} (and, or, ->, EU and AU). The node classes are final and their constructors are package-private, so nodes can only be made with the static factory methods below.
+ * toString gives back a fully parenthesized formula which the Parser parses to an equal formula.
+ *
+ * Formulas are hash-consed: the factory methods look every new node up in a table of the existing nodes and give back the existing one if there's a node with the same operator and the same operands. So structurally identical subformulas (ie, the two EG(r -> t) in "AG(EG(r -> t)) or EX(EG(r -> t))", or the same subformula in two different formulas) are one shared node, a formula is really a DAG, and two formulas are equal exactly when they are the same object.
+ * That lets the {@link modelCheckCTL.controller.ctl.checker.Evaluator} memoize the states of each node and evaluate a repeated subformula only once. The table only holds weak references, so nodes nobody uses anymore are still garbage collected.
+ */
+public abstract class Formula {
+
+    /**
+     * The operator of this node
+     */
+    private final Operator operator;
+
+    /**
+     * Structural hash, computed once in the constructor since the node never changes
+     */
+    private final int hash;
+
+    /**
+     * Table of all the live nodes, used for the hash-consing. The value is a weak reference to the key itself (WeakHashMap only has weak keys) so a node can be looked up by an equal, new node.
+     */
+    private static final Map<Formula, WeakReference<Formula>> interned = new WeakHashMap<Formula, WeakReference<Formula>>();
+
+    Formula(Operator operator, int hash) {
+        this.operator = operator;
+        this.hash = hash;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * @return the number of nodes in this formula
+     */
+    public abstract int size();
+
+    /**
+     * Gets the names of the atoms in this formula, ie {p, q} for "EX p and AG(q -> p)". Walks the formula once, visiting each shared node only once.
+     * @return unmodifiable sorted {@link Set} of the atom names
+     */
+    public Set<String> getAtoms() {
+        Set<String> atoms = new TreeSet<String>();
+        addAtoms(this, atoms, Collections.newSetFromMap(new IdentityHashMap<Formula, Boolean>()));
+        return Collections.unmodifiableSet(atoms);
+    }
+
+    private static void addAtoms(Formula formula, Set<String> atoms, Set<Formula> visited) {
+        if (!visited.add(formula)) { return; }
+        if (formula instanceof Atom) {
+            atoms.add(((Atom) formula).getName());
+        } else if (formula instanceof UnaryFormula) {
+            addAtoms(((UnaryFormula) formula).getOperand(), atoms, visited);
+        } else {
+            addAtoms(((BinaryFormula) formula).getLeft(), atoms, visited);
+            addAtoms(((BinaryFormula) formula).getRight(), atoms, visited);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Two nodes are equal if they have the same operator (or atom name) and the same operands. Operands are always interned already, so they're compared with == and this doesn't walk the whole formula. Since every node is interned too, equal formulas are the same object.
+     * @param o object to compare to
+     * @return true if equal
+     */
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) { return true; }
+        if (!(o instanceof Formula)) { return false; }
+        Formula other = (Formula) o;
+        return hash == other.hash && operator == other.operator && sameOperands(other);
+    }
+
+    /**
+     * @param other node with the same operator as this one
+     * @return true if other has the same atom name or the same operands (compared with ==) as this node
+     */
+    abstract boolean sameOperands(Formula other);
+
+    // Factory methods
+
+    public static Formula atom(String name) {
+        return intern(new Atom(name));
+    }
+
+    public static Formula not(Formula operand) {
+        return intern(new UnaryFormula(Operator.NOT, operand));
+    }
+
+    public static Formula and(Formula left, Formula right) {
+        return intern(new BinaryFormula(Operator.AND, left, right));
+    }
+
+    public static Formula or(Formula left, Formula right) {
+        return intern(new BinaryFormula(Operator.OR, left, right));
+    }
+
+    public static Formula implies(Formula left, Formula right) {
+        return intern(new BinaryFormula(Operator.IMPLIES, left, right));
+    }
+
+    public static Formula AX(Formula operand) {
+        return intern(new UnaryFormula(Operator.AX, operand));
+    }
+
+    public static Formula AF(Formula operand) {
+        return intern(new UnaryFormula(Operator.AF, operand));
+    }
+
+    public static Formula AG(Formula operand) {
+        return intern(new UnaryFormula(Operator.AG, operand));
+    }
+
+    public static Formula EX(Formula operand) {
+        return intern(new UnaryFormula(Operator.EX, operand));
+    }
+
+    public static Formula EF(Formula operand) {
+        return intern(new UnaryFormula(Operator.EF, operand));
+    }
+
+    public static Formula EG(Formula operand) {
+        return intern(new UnaryFormula(Operator.EG, operand));
+    }
+
+    /**
+     * @return E[left U right]
+     */
+    public static Formula EU(Formula left, Formula right) {
+        return intern(new BinaryFormula(Operator.EU, left, right));
+    }
+
+    /**
+     * @return A[left U right]
+     */
+    public static Formula AU(Formula left, Formula right) {
+        return intern(new BinaryFormula(Operator.AU, left, right));
+    }
+
+    /**
+     * Makes a unary node from its operator
+     * @param operator NOT or one of the six unary temporal operators
+     * @param operand the operand
+     * @return the new {@link Formula}
+     */
+    public static Formula unary(Operator operator, Formula operand) {
+        if (operator.getArity() != 1) { throw new IllegalArgumentException(operator + " is not a unary operator"); }
+        return intern(new UnaryFormula(operator, operand));
+    }
+
+    /**
+     * Makes a binary node from its operator
+     * @param operator AND, OR, IMPLIES, EU or AU
+     * @param left the left operand
+     * @param right the right operand
+     * @return the new {@link Formula}
+     */
+    public static Formula binary(Operator operator, Formula left, Formula right) {
+        if (operator.getArity() != 2) { throw new IllegalArgumentException(operator + " is not a binary operator"); }
+        return intern(new BinaryFormula(operator, left, right));
+    }
+
+    /**
+     * Used by toString: atoms and temporal operators can be written as they are in an operand position, "not" and binary operators already come with their own parentheses
+     */
+    static String inParens(Formula formula) {
+        String s = formula.toString();
+        return formula.getOperator() == Operator.NOT || formula instanceof BinaryFormula && !formula.getOperator().isUntil() ? s : "(" + s + ")";
+    }
+
+    /**
+     * Gets the existing node equal to the new one, or adds the new one to the table if there is none
+     */
+    private static Formula intern(Formula formula) {
+        synchronized (interned) {
+            WeakReference<Formula> existingRef = interned.get(formula);
+            Formula existing = existingRef == null ? null : existingRef.get();
+            if (existing != null) { return existing; }
+            interned.put(formula, new WeakReference<Formula>(formula));
+            return formula;
+        }
+    }
+
+    static Formula checkNotNull(Formula formula) {
+        if (formula == null) { throw new NullPointerException("operand in Formula is null"); }
+        return formula;
+    }
+}
@@ -0,0 +1,58 @@
+package modelCheckCTL.controller.ctl.formula;
+
+/**
+ * The operators a {@link Formula} node can have. ATOM is the leaf, NOT and the six temporal operators (AX, AF, AG, EX, EF, EG) have one operand and the rest have two.
+ */
+public enum Operator {
+
+    ATOM(0, null),
+    NOT(1, "not"),
+    AND(2, "and"),
+    OR(2, "or"),
+    IMPLIES(2, "->"),
+    AX(1, "AX"),
+    AF(1, "AF"),
+    AG(1, "AG"),
+    EX(1, "EX"),
+    EF(1, "EF"),
+    EG(1, "EG"),
+    EU(2, "E"),
+    AU(2, "A");
+
+    /**
+     * Number of operands (0 for atoms)
+     */
+    private final int arity;
+
+    /**
+     * The operator as it's written in a CTL formula (ie, "and", "EX", or "E" for E[phi U psi])
+     */
+    private final String symbol;
+
+    Operator(int arity, String symbol) {
+        this.arity = arity;
+        this.symbol = symbol;
+    }
+
+    public int getArity() {
+        return arity;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return true for the six unary temporal operators (AX, AF, AG, EX, EF and EG)
+     */
+    public boolean isUnaryTemporal() {
+        return arity == 1 && this != NOT;
+    }
+
+    /**
+     * @return true for AU and EU
+     */
+    public boolean isUntil() {
+        return this == EU || this == AU;
+    }
+}
@@ -0,0 +1,43 @@
+package modelCheckCTL.controller.ctl.formula;
+
+/**
+ * {@link Formula} node with one operand: "not" or one of the unary temporal operators AX, AF, AG, EX, EF and EG
+ */
+public final class UnaryFormula extends Formula {
+
+    private final Formula operand;
+
+    /**
+     * Number of nodes in this formula
+     */
+    private final int size;
+
+    UnaryFormula(Operator operator, Formula operand) {
+        super(operator, 31 * operator.ordinal() + checkNotNull(operand).hashCode());
+        this.operand = operand;
+        this.size = 1 + operand.size();
+    }
+
+    public Formula getOperand() {
+        return operand;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    boolean sameOperands(Formula other) {
+        return operand == ((UnaryFormula) other).operand;
+    }
+
+    /**
+     * @return the formula like "(not p)" or "EX(p and q)"
+     */
+    @Override
+    public String toString() {
+        if (getOperator() == Operator.NOT) { return "(not " + operand + ")"; }
+        return getOperator().getSymbol() + inParens(operand);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * The immutable CTL formula AST the Parser builds (see Formula.java) - the Evaluator in /checker walks it to model check a Kripke
+ */
+package modelCheckCTL.controller.ctl.formula;
@@ -0,0 +1,473 @@
+package modelCheckCTL.controller.types.kripke;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * The bisimulation quotient of a {@link Kripke}: the Kripke with every group of bisimilar states merged into one state (a block). Two states are bisimilar when they have the same labels and every transition of one can be matched by a transition of the other to a bisimilar state, so no CTL formula can tell them apart - a formula holds for a state exactly when it holds for the state's block in the quotient.
+ * On models with a lot of repeated structure the quotient is much smaller, so formulas are checked on it and the results mapped back to the original states (see {@link #lift(StateSet)}).
+ *
+ * The coarsest bisimulation is computed with Paige and Tarjan's partition refinement algorithm in O(|T| log |S|): starting from the states grouped by their labels (and by whether they have any transitions), the blocks are split until no block has states with transitions into a block and states without. Each round takes a block B out of a compound splitter S (a union of blocks the partition is already stable with), and splits every block by "has a transition into B" and "has a transition into S - B" at once. The counts of each state's transitions into each splitter make the second split cost no more than the first, and taking B as the smaller of two blocks of S means each state is in a B at most log |S| times.
+ * Each block of the quotient is a state named after its lowest numbered state (ie, the block of s3 and s7 is s3), with that state's labels and a transition to the block of each of its successors. Quotients are immutable and are cached on the Kripke (see {@link Kripke#getBisimulationQuotient(Set)}).
+ *
+ * A quotient can also be computed for only some of the atoms (the cone of influence of a formula: the atoms it mentions). The labels are projected onto those atoms first, so states which only differ in labels the formula never looks at start out in the same block, and the quotient only has those atoms. On models with many atoms this merges far more states than the full bisimulation, and the formula still holds for exactly the same states.
+ */
+public class BisimulationQuotient {
+
+    /**
+     * The {@link Kripke} the quotient was computed from
+     */
+    private final Kripke kripke;
+
+    /**
+     * The quotient {@link Kripke}, with one state per block
+     */
+    private final Kripke quotient;
+
+    /**
+     * blockOf[i] is the block (the dense index of the quotient state) of the state with dense index i
+     */
+    private final int[] blockOf;
+
+    /**
+     * representatives[k] is the lowest dense index of the states in block k
+     */
+    private final int[] representatives;
+
+    private BisimulationQuotient(Kripke kripke, Kripke quotient, int[] blockOf, int[] representatives) {
+        this.kripke = kripke;
+        this.quotient = quotient;
+        this.blockOf = blockOf;
+        this.representatives = representatives;
+    }
+
+    /**
+     * Computes the bisimulation quotient of a Kripke
+     * @param kripke {@link Kripke} to minimize
+     * @return the {@link BisimulationQuotient} of the Kripke
+     */
+    public static BisimulationQuotient compute(Kripke kripke) {
+        return compute(kripke, null);
+    }
+
+    /**
+     * Computes the bisimulation quotient of a Kripke with its labels projected onto some atoms
+     * @param kripke {@link Kripke} to minimize
+     * @param atoms names of the atoms to keep (ie, the atoms of a formula), or null for all of them. Atoms which aren't in the Kripke are ignored.
+     * @return the {@link BisimulationQuotient} of the Kripke, whose quotient only has the kept atoms
+     */
+    public static BisimulationQuotient compute(Kripke kripke, Set<String> atoms) {
+        int n = kripke.getNumStates();
+        int[] atomIds = keptAtomIds(kripke, atoms);
+        Partition partition = new Partition(kripke, atomIds);
+        partition.refine();
+
+        // number the blocks in order of their lowest state, so the quotient's state numbers come out sorted
+        int[] blockNumbers = new int[n];
+        Arrays.fill(blockNumbers, -1);
+        int[] blockOf = new int[n];
+        int[] representatives = new int[n];
+        int numBlocks = 0;
+        for (int i = 0; i < n; i++) {
+            int block = partition.blockOf[i];
+            if (blockNumbers[block] == -1) {
+                representatives[numBlocks] = i;
+                blockNumbers[block] = numBlocks++;
+            }
+            blockOf[i] = blockNumbers[block];
+        }
+        representatives = Arrays.copyOf(representatives, numBlocks);
+        return new BisimulationQuotient(kripke, buildQuotient(kripke, atomIds, blockOf, representatives), blockOf, representatives);
+    }
+
+    /**
+     * @return the ids of the Kripke's atoms which are kept, in order
+     */
+    private static int[] keptAtomIds(Kripke kripke, Set<String> atoms) {
+        int[] atomIds = new int[kripke.getNumAtoms()];
+        int numKept = 0;
+        for (int atomId = 0; atomId < kripke.getNumAtoms(); atomId++) {
+            if (atoms == null || atoms.contains(kripke.getAtomName(atomId))) { atomIds[numKept++] = atomId; }
+        }
+        return Arrays.copyOf(atomIds, numKept);
+    }
+
+    /**
+     * Builds the quotient Kripke. Bisimilar states have transitions into the same blocks and the same labels, so each block's transitions and labels are just its representative's.
+     */
+    private static Kripke buildQuotient(Kripke kripke, int[] atomIds, int[] blockOf, int[] representatives) {
+        int numBlocks = representatives.length;
+        int[] succOffsets = kripke.getSuccOffsets();
+        int[] succTargets = kripke.getSuccTargets();
+        int[] stateNumbers = new int[numBlocks];
+        int[] quotientSuccOffsets = new int[numBlocks + 1];
+        int[] quotientSuccTargets = new int[kripke.getNumTransitions()];
+        int numTransitions = 0;
+        for (int k = 0; k < numBlocks; k++) {
+            int rep = representatives[k];
+            stateNumbers[k] = kripke.getStateNumber(rep);
+            int start = numTransitions;
+            for (int s = succOffsets[rep]; s < succOffsets[rep + 1]; s++) {
+                quotientSuccTargets[numTransitions++] = blockOf[succTargets[s]];
+            }
+            Arrays.sort(quotientSuccTargets, start, numTransitions);
+            int distinct = start;
+            for (int s = start; s < numTransitions; s++) {
+                if (distinct == start || quotientSuccTargets[s] != quotientSuccTargets[distinct - 1]) { quotientSuccTargets[distinct++] = quotientSuccTargets[s]; }
+            }
+            numTransitions = distinct;
+            quotientSuccOffsets[k + 1] = numTransitions;
+        }
+        quotientSuccTargets = Arrays.copyOf(quotientSuccTargets, numTransitions);
+
+        int[] predOffsets = new int[numBlocks + 1];
+        for (int s = 0; s < numTransitions; s++) {
+            predOffsets[quotientSuccTargets[s] + 1]++;
+        }
+        for (int k = 0; k < numBlocks; k++) {
+            predOffsets[k + 1] += predOffsets[k];
+        }
+        int[] predSources = new int[numTransitions];
+        int[] predFill = Arrays.copyOf(predOffsets, numBlocks);
+        for (int k = 0; k < numBlocks; k++) {
+            for (int s = quotientSuccOffsets[k]; s < quotientSuccOffsets[k + 1]; s++) {
+                predSources[predFill[quotientSuccTargets[s]]++] = k;
+            }
+        }
+
+        String[] atomNames = new String[atomIds.length];
+        long[][] atomWords = new long[atomIds.length][];
+        for (int a = 0; a < atomIds.length; a++) {
+            atomNames[a] = kripke.getAtomName(atomIds[a]);
+            StateSet atomStates = kripke.getAtomStates(atomIds[a]);
+            atomWords[a] = new long[(numBlocks + 63) >>> 6];
+            for (int k = 0; k < numBlocks; k++) {
+                if (atomStates.contains(representatives[k])) { atomWords[a][k >>> 6] |= 1L << k; }
+            }
+        }
+        return new Kripke(stateNumbers, quotientSuccOffsets, quotientSuccTargets, predOffsets, predSources, atomNames, atomWords).freeze();
+    }
+
+    /**
+     * @return the {@link Kripke} the quotient was computed from
+     */
+    public Kripke getKripke() {
+        return kripke;
+    }
+
+    /**
+     * @return the quotient {@link Kripke}, with one state per block. Frozen, so it can be shared.
+     */
+    public Kripke getQuotient() {
+        return quotient;
+    }
+
+    /**
+     * @return the number of blocks, which is the number of states of the quotient
+     */
+    public int getNumBlocks() {
+        return representatives.length;
+    }
+
+    /**
+     * @param index dense index of a state of the original Kripke
+     * @return the block of the state (the dense index of its state in the quotient)
+     */
+    public int getBlock(int index) {
+        return blockOf[index];
+    }
+
+    /**
+     * @param block a block (dense index of a quotient state)
+     * @return the lowest dense index of the original states in the block
+     */
+    public int getRepresentative(int block) {
+        return representatives[block];
+    }
+
+    /**
+     * Maps a set of quotient states back to the original Kripke
+     * @param quotientStates {@link StateSet} over the quotient's states (ie, the states of the quotient which hold for a formula)
+     * @return {@link StateSet} over the original Kripke's states of every state whose block is in quotientStates
+     */
+    public StateSet lift(StateSet quotientStates) {
+        StateSet states = kripke.emptySet();
+        for (int i = 0; i < blockOf.length; i++) {
+            if (quotientStates.contains(blockOf[i])) { states.add(i); }
+        }
+        return states;
+    }
+
+    /**
+     * The partition being refined, with the states of each block kept next to each other in elems (so a block is a range of positions) and the marked states of a block at the front of its range.
+     * Blocks are grouped into splitters (the compound blocks of Paige and Tarjan): the partition is stable with each splitter, and the splitters made of more than one block are on the compound stack waiting to be split up.
+     */
+    private static class Partition {
+
+        private final int n;
+        private final int[] predOffsets;
+        private final int[] predSources;
+
+        /**
+         * The states in block order, each state's position in elems and each state's block
+         */
+        private final int[] elems;
+        private final int[] positions;
+        private final int[] blockOf;
+
+        /**
+         * Block b is elems[first[b]] to elems[end[b] - 1], and its marked states are the ones before mid[b]
+         */
+        private final int[] first;
+        private final int[] end;
+        private final int[] mid;
+        private int numBlocks;
+
+        /**
+         * The blocks with marked states
+         */
+        private final int[] touchedBlocks;
+        private int numTouchedBlocks;
+
+        /**
+         * The splitter of each block, and the blocks of each splitter as a doubly linked list (splitterHead, nextBlock, previousBlock) with its length (splitterSize)
+         */
+        private final int[] splitterOf;
+        private final int[] nextBlock;
+        private final int[] previousBlock;
+        private final int[] splitterHead;
+        private final int[] splitterSize;
+        private int numSplitters;
+
+        /**
+         * Splitters with more than one block (some may have been split up since they were pushed)
+         */
+        private final int[] compound;
+        private final boolean[] onCompound;
+        private int numCompound;
+
+        /**
+         * Counts of transitions: countOf[p] is the record counting the transitions from predSources[p] into the splitter containing the state p is a predecessor position of. All the transitions from a state into one splitter share a record.
+         * Records whose count drops to zero are reused (freeRecords).
+         */
+        private final int[] countOf;
+        private int[] counts;
+        private int numRecords;
+        private int[] freeRecords;
+        private int numFreeRecords;
+
+        /**
+         * @param kripke {@link Kripke} to partition
+         * @param atomIds ids of the atoms the starting partition splits by
+         */
+        Partition(Kripke kripke, int[] atomIds) {
+            n = kripke.getNumStates();
+            predOffsets = kripke.getPredOffsets();
+            predSources = kripke.getPredSources();
+            elems = new int[n];
+            positions = new int[n];
+            blockOf = new int[n];
+            first = new int[n];
+            end = new int[n];
+            mid = new int[n];
+            touchedBlocks = new int[n];
+            splitterOf = new int[n];
+            nextBlock = new int[n];
+            previousBlock = new int[n];
+            splitterHead = new int[n];
+            splitterSize = new int[n];
+            compound = new int[n];
+            onCompound = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                elems[i] = i;
+                positions[i] = i;
+            }
+            if (n == 0) {
+                countOf = new int[0];
+                counts = new int[0];
+                freeRecords = new int[0];
+                return;
+            }
+            // one block with all the states, in one splitter
+            numBlocks = 1;
+            end[0] = n;
+            nextBlock[0] = -1;
+            previousBlock[0] = -1;
+            numSplitters = 1;
+            splitterSize[0] = 1;
+
+            // at first there's one splitter (all the states), so a state's record counts all its transitions
+            int[] succOffsets = kripke.getSuccOffsets();
+            countOf = new int[predSources.length];
+            counts = new int[Math.max(16, n)];
+            for (int i = 0; i < n; i++) {
+                counts[i] = succOffsets[i + 1] - succOffsets[i];
+            }
+            numRecords = n;
+            freeRecords = new int[16];
+            for (int p = 0; p < predSources.length; p++) {
+                countOf[p] = predSources[p];
+            }
+
+            // the starting partition: split by each kept label, then by having transitions or not
+            for (int atomId : atomIds) {
+                StateSet atomStates = kripke.getAtomStates(atomId);
+                for (int i = atomStates.nextSetBit(0); i >= 0; i = atomStates.nextSetBit(i + 1)) {
+                    mark(i);
+                }
+                splitMarked();
+            }
+            for (int i = 0; i < n; i++) {
+                if (counts[i] > 0) { mark(i); }
+            }
+            splitMarked();
+        }
+
+        void refine() {
+            int[] splitterStates = new int[n];
+            int[] touchedStates = new int[n];
+            int[] recordB = new int[n];
+            int[] recordS = new int[n];
+            Arrays.fill(recordB, -1);
+            while (numCompound > 0) {
+                int S = compound[--numCompound];
+                onCompound[S] = false;
+                if (splitterSize[S] < 2) { continue; }
+
+                // take the smaller of S's first two blocks out of S, into a splitter of its own
+                int b1 = splitterHead[S];
+                int b2 = nextBlock[b1];
+                int B = end[b1] - first[b1] <= end[b2] - first[b2] ? b1 : b2;
+                unlink(B);
+                int newSplitter = numSplitters++;
+                splitterOf[B] = newSplitter;
+                splitterHead[newSplitter] = B;
+                splitterSize[newSplitter] = 1;
+                nextBlock[B] = -1;
+                previousBlock[B] = -1;
+                if (splitterSize[S] > 1) { pushCompound(S); }
+
+                // count the transitions of each predecessor of B into B (B's states are copied, since B itself may be split below)
+                int numSplitterStates = end[B] - first[B];
+                System.arraycopy(elems, first[B], splitterStates, 0, numSplitterStates);
+                int numTouchedStates = 0;
+                for (int k = 0; k < numSplitterStates; k++) {
+                    int y = splitterStates[k];
+                    for (int p = predOffsets[y]; p < predOffsets[y + 1]; p++) {
+                        int x = predSources[p];
+                        if (recordB[x] < 0) {
+                            recordB[x] = newRecord();
+                            recordS[x] = countOf[p];
+                            touchedStates[numTouchedStates++] = x;
+                        }
+                        counts[recordB[x]]++;
+                    }
+                }
+
+                // split by "has a transition into B"
+                for (int k = 0; k < numTouchedStates; k++) {
+                    mark(touchedStates[k]);
+                }
+                splitMarked();
+
+                // split those by "has no transition into S - B" (all its transitions into S go into B)
+                for (int k = 0; k < numTouchedStates; k++) {
+                    int x = touchedStates[k];
+                    if (counts[recordB[x]] == counts[recordS[x]]) { mark(x); }
+                }
+                splitMarked();
+
+                // the transitions into B now count towards B's splitter instead of S
+                for (int k = 0; k < numSplitterStates; k++) {
+                    int y = splitterStates[k];
+                    for (int p = predOffsets[y]; p < predOffsets[y + 1]; p++) {
+                        int record = countOf[p];
+                        if (--counts[record] == 0) { freeRecord(record); }
+                        countOf[p] = recordB[predSources[p]];
+                    }
+                }
+                for (int k = 0; k < numTouchedStates; k++) {
+                    recordB[touchedStates[k]] = -1;
+                }
+            }
+        }
+
+        private void mark(int state) {
+            int block = blockOf[state];
+            int position = positions[state];
+            if (position < mid[block]) { return; }
+            if (mid[block] == first[block]) { touchedBlocks[numTouchedBlocks++] = block; }
+            int other = elems[mid[block]];
+            elems[position] = other;
+            positions[other] = position;
+            elems[mid[block]] = state;
+            positions[state] = mid[block];
+            mid[block]++;
+        }
+
+        /**
+         * Splits the marked states of each touched block off into a new block in the same splitter (unless all its states are marked), and unmarks them
+         */
+        private void splitMarked() {
+            for (int t = 0; t < numTouchedBlocks; t++) {
+                int block = touchedBlocks[t];
+                if (mid[block] == end[block]) {
+                    mid[block] = first[block];
+                    continue;
+                }
+                int newBlock = numBlocks++;
+                first[newBlock] = first[block];
+                end[newBlock] = mid[block];
+                mid[newBlock] = first[newBlock];
+                first[block] = mid[block];
+                for (int p = first[newBlock]; p < end[newBlock]; p++) {
+                    blockOf[elems[p]] = newBlock;
+                }
+                int splitter = splitterOf[block];
+                splitterOf[newBlock] = splitter;
+                nextBlock[newBlock] = splitterHead[splitter];
+                previousBlock[newBlock] = -1;
+                previousBlock[splitterHead[splitter]] = newBlock;
+                splitterHead[splitter] = newBlock;
+                splitterSize[splitter]++;
+                if (splitterSize[splitter] == 2) { pushCompound(splitter); }
+            }
+            numTouchedBlocks = 0;
+        }
+
+        private void unlink(int block) {
+            int splitter = splitterOf[block];
+            if (previousBlock[block] >= 0) {
+                nextBlock[previousBlock[block]] = nextBlock[block];
+            } else {
+                splitterHead[splitter] = nextBlock[block];
+            }
+            if (nextBlock[block] >= 0) { previousBlock[nextBlock[block]] = previousBlock[block]; }
+            splitterSize[splitter]--;
+        }
+
+        private void pushCompound(int splitter) {
+            if (onCompound[splitter]) { return; }
+            onCompound[splitter] = true;
+            compound[numCompound++] = splitter;
+        }
+
+        private int newRecord() {
+            int record;
+            if (numFreeRecords > 0) {
+                record = freeRecords[--numFreeRecords];
+            } else {
+                if (numRecords == counts.length) { counts = Arrays.copyOf(counts, counts.length * 2); }
+                record = numRecords++;
+            }
+            counts[record] = 0;
+            return record;
+        }
+
+        private void freeRecord(int record) {
+            if (numFreeRecords == freeRecords.length) { freeRecords = Arrays.copyOf(freeRecords, freeRecords.length * 2); }
+            freeRecords[numFreeRecords++] = record;
+        }
+    }
+
+}
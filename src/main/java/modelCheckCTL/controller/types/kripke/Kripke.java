@@ -1,36 +1,1062 @@
 package modelCheckCTL.controller.types.kripke;
 
 import java.io.IOException;
-import java.util.Set;
+import java.util.*;
 
 import static modelCheckCTL.utils.Utils.*;
 
 /**
- * A data structure representing a Kripke structure. Has a states property and a transitions property. It also contains labels (as a Kripke structure must), but they are properties on the {@link State} objects
+ * A data structure representing a Kripke structure. Has a states property and a transitions property. It also contains labels (as a Kripke structure must), but they are properties on the {@link State} objects.
+ * When a Kripke is built it indexes the states (see {@link StateSet}), turns the transitions into adjacency arrays and indexes the labels by atom, so the model checker never has to walk the {@link State} and {@link Transition} objects.
+ * Once built, a Kripke can be model checked from any number of threads at the same time: the indexes are only read, the label sets are read-only and the SCC cache is synchronized. Replacing the states or transitions (setStates, setTransitions) while it's being checked is not supported.
+ * A Kripke that isn't frozen can also be edited a transition or label at a time (addTransition, removeTransition, addLabel, removeLabel, ie on a {@link #copy()} of a model from the {@link KripkeRepository}), or a batch of transitions at a time (addTransitions, removeTransitions), which rebuilds the adjacency arrays once for the whole batch. The edits are recorded, so the caches worked out for the model before (see {@link #getDeltaSince(int)}) are brought up to date instead of starting over. Editing while it's being checked isn't supported either.
  */
 public class Kripke {
     private Set states;
     private Set transitions;
 
+    /**
+     * The states sorted ascending by state number. A state's position in this array is its dense index, which is what the bits of a {@link StateSet} refer to.
+     * Null until first used in a Kripke loaded from a {@link KripkeSnapshot}, which only has the index arrays (see stateObjects).
+     */
+    private volatile State[] indexedStates;
+
+    /**
+     * The index to name table: stateNumbers[i] is the number of the state with dense index i (ie, 3 for s3). Sorted ascending, so the name to index direction is a binary search (or just a subtraction when the state numbers are contiguous).
+     */
+    private int[] stateNumbers;
+
+    /**
+     * True when the state numbers are contiguous (ie, s0, s1, s2... or s1, s2, s3...), in which case a state's index is its number minus the first state number
+     */
+    private boolean contiguousNumbers;
+
+    /**
+     * Forward adjacency of the transition relation in compressed sparse row form. The successors of the state with index i are succTargets[succOffsets[i]] to succTargets[succOffsets[i + 1] - 1] (as dense indices), sorted ascending.
+     * succOffsets has getNumStates() + 1 entries and succTargets has one entry per transition.
+     */
+    private int[] succOffsets;
+    private int[] succTargets;
+
+    /**
+     * Reverse adjacency of the transition relation in compressed sparse row form. The predecessors of the state with index i are predSources[predOffsets[i]] to predSources[predOffsets[i + 1] - 1] (as dense indices).
+     */
+    private int[] predOffsets;
+    private int[] predSources;
+
+    /**
+     * The number of each transition, in the same order as succTargets (ie, 4 for the transition t4 : s4 - s2), for a Kripke built from the index arrays by the {@link KripkeLoader}, so the {@link Transition} objects made later (see stateObjects) keep the numbers from the kripke file. Null if the transitions are numbered 1, 2... in order of succTargets (a {@link KripkeSnapshot}) or the Transition objects were there from the start.
+     */
+    private int[] transitionNumbers;
+
+    /**
+     * The highest transition number given out so far, so a new transition can be numbered without looking at all the others (see nextTransitionNumber). -1 until the first transition is added.
+     */
+    private int maxTransitionNumber = -1;
+
+    /**
+     * Label index. Every atom (label) name found on the states is interned to an integer id 0..numAtoms-1: atomIds maps the name to its id, atomNames maps the id back to the name and atomStates[id] is the shared, read-only {@link StateSet} of the states labelled with that atom.
+     */
+    private Map<String, Integer> atomIds;
+    private String[] atomNames;
+    private StateSet[] atomStates;
+
+    /**
+     * Shared, read-only empty set returned for atoms that no state is labelled with
+     */
+    private StateSet noStates;
+
+    /**
+     * Maximum number of {@link SccDecomposition}s kept in sccCache
+     */
+    private static final int SCC_CACHE_SIZE = 16;
+
+    /**
+     * Cache of the SCC decompositions of restricted subgraphs, keyed by the (read-only copy of the) restriction. Least recently used decompositions are dropped once there are more than SCC_CACHE_SIZE of them.
+     */
+    private final Map<StateSet, SccDecomposition> sccCache = new LinkedHashMap<StateSet, SccDecomposition>(SCC_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<StateSet, SccDecomposition> eldest) {
+            return size() > SCC_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Maximum number of {@link BisimulationQuotient}s kept in quotientCache
+     */
+    private static final int QUOTIENT_CACHE_SIZE = 16;
+
+    /**
+     * Cache of the bisimulation quotients, keyed by the atoms they were projected onto (null for all the atoms). Least recently used quotients are dropped once there are more than QUOTIENT_CACHE_SIZE of them.
+     */
+    private final Map<Set<String>, BisimulationQuotient> quotientCache = new LinkedHashMap<Set<String>, BisimulationQuotient>(QUOTIENT_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Set<String>, BisimulationQuotient> eldest) {
+            return size() > QUOTIENT_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Incremented every time the states or transitions are replaced or edited (see {@link #getVersion()})
+     */
+    private volatile int version;
+
+    /**
+     * Maximum number of edits kept in editLog. Once there are more, the log is dropped, and caches made for an older version have to start over.
+     */
+    private static final int EDIT_LOG_SIZE = 1 << 16;
+
+    /**
+     * The edits made since version editLogStart, oldest first: editLog.get(k) took the Kripke from version editLogStart + k to editLogStart + k + 1 (see {@link #getDeltaSince(int)}). Replacing the states or transitions empties it. Only read and written while holding its own lock.
+     */
+    private final List<Edit> editLog = new ArrayList<Edit>();
+    private int editLogStart;
+
+    /**
+     * True once the Kripke is shared (see {@link #freeze()}), after which the states and transitions can't be replaced anymore
+     */
+    private volatile boolean frozen;
+
     public Kripke(Set states, Set transitions) {
         this.states = states;
         this.transitions = transitions;
+        indexStates();
+        buildAdjacency();
+        buildLabelIndex();
+    }
+
+    /**
+     * Builds a Kripke straight from its index arrays, as saved in a {@link KripkeSnapshot}. The arrays are used as they are (not copied). The {@link State} and {@link Transition} objects aren't made until something asks for them (see stateObjects), so model checking a snapshot never makes them.
+     * @param stateNumbers the state numbers, sorted ascending (see stateNumbers)
+     * @param succOffsets forward CSR offsets
+     * @param succTargets forward CSR targets
+     * @param predOffsets reverse CSR offsets
+     * @param predSources reverse CSR sources
+     * @param atomNames names of the atoms, by atom id
+     * @param atomWords bits of the {@link StateSet} of each atom, by atom id
+     */
+    Kripke(int[] stateNumbers, int[] succOffsets, int[] succTargets, int[] predOffsets, int[] predSources, String[] atomNames, long[][] atomWords) {
+        this(stateNumbers, succOffsets, succTargets, predOffsets, predSources, atomNames, atomWords, null);
+    }
+
+    /**
+     * Same as the snapshot constructor, but with the number of each transition too (see transitionNumbers), as parsed by the {@link KripkeLoader}
+     * @param transitionNumbers the transition numbers, in the same order as succTargets, or null to number them 1, 2...
+     */
+    Kripke(int[] stateNumbers, int[] succOffsets, int[] succTargets, int[] predOffsets, int[] predSources, String[] atomNames, long[][] atomWords, int[] transitionNumbers) {
+        int n = stateNumbers.length;
+        this.stateNumbers = stateNumbers;
+        this.contiguousNumbers = n == 0 || stateNumbers[n - 1] - stateNumbers[0] == n - 1;
+        this.succOffsets = succOffsets;
+        this.succTargets = succTargets;
+        this.predOffsets = predOffsets;
+        this.predSources = predSources;
+        this.transitionNumbers = transitionNumbers;
+        this.atomNames = atomNames;
+        this.atomIds = new HashMap<String, Integer>();
+        this.atomStates = new StateSet[atomNames.length];
+        for (int atomId = 0; atomId < atomNames.length; atomId++) {
+            atomIds.put(atomNames[atomId], atomId);
+            atomStates[atomId] = StateSet.readOnlyOf(n, atomWords[atomId]);
+        }
+        this.noStates = StateSet.empty(n).readOnly();
     }
 
     public Set getStates() {
+        stateObjects();
         return states;
     }
 
     public void setStates(Set states) {
+        checkNotFrozen();
         this.states = states;
+        indexStates();
+        buildAdjacency();
+        buildLabelIndex();
+        structureChanged();
     }
 
     public Set getTransitions() {
+        stateObjects();
         return transitions;
     }
 
     public void setTransitions(Set transitions) {
+        checkNotFrozen();
         this.transitions = transitions;
+        buildAdjacency();
+        structureChanged();
+    }
+
+    /**
+     * Assigns every state a dense index 0..n-1, in ascending order of state number, so {@link StateSet}s built from this Kripke are the same no matter how many times the kripke file is parsed.
+     * Each state's index is also stored on the {@link State} itself so the model checker can go from a state to its index without a lookup.
+     */
+    private void indexStates() {
+        if (states == null) {
+            indexedStates = new State[0];
+            stateNumbers = new int[0];
+            contiguousNumbers = true;
+            return;
+        }
+        List statesList = new ArrayList<State>(states);
+        Collections.sort(statesList);
+        indexedStates = new State[statesList.size()];
+        stateNumbers = new int[indexedStates.length];
+        for (int i = 0; i < indexedStates.length; i++) {
+            indexedStates[i] = (State) statesList.get(i);
+            indexedStates[i].setIndex(i);
+            stateNumbers[i] = indexedStates[i].getNumber();
+        }
+        contiguousNumbers = stateNumbers.length == 0 || stateNumbers[stateNumbers.length - 1] - stateNumbers[0] == stateNumbers.length - 1;
+    }
+
+    /**
+     * Gets the states by dense index, making the {@link State} and {@link Transition} objects from the index arrays the first time if this Kripke was built from them (loaded by the {@link KripkeLoader} or from a {@link KripkeSnapshot}). The transitions get their numbers from transitionNumbers, or are numbered t1, t2... in order of their from state if there are none.
+     * @return indexedStates
+     */
+    private State[] stateObjects() {
+        State[] result = indexedStates;
+        if (result != null) { return result; }
+        synchronized (this) {
+            if (indexedStates == null) {
+                int n = stateNumbers.length;
+                State[] newIndexedStates = new State[n];
+                Set newStates = new HashSet<State>();
+                Set newTransitions = new HashSet<Transition>();
+                for (int i = 0; i < n; i++) {
+                    newIndexedStates[i] = new State(stateNumbers[i]);
+                    newIndexedStates[i].setIndex(i);
+                    newStates.add(newIndexedStates[i]);
+                }
+                int transitionNum = 1;
+                try {
+                    for (int i = 0; i < n; i++) {
+                        for (int k = succOffsets[i]; k < succOffsets[i + 1]; k++) {
+                            int number = transitionNumbers != null ? transitionNumbers[k] : transitionNum++;
+                            Transition transition = new Transition(number, newIndexedStates[i], newIndexedStates[succTargets[k]]);
+                            newIndexedStates[i].addTransition(transition);
+                            newTransitions.add(transition);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e); // can't happen, every transition is added to its from state
+                }
+                for (int atomId = 0; atomId < atomNames.length; atomId++) {
+                    for (int i = atomStates[atomId].nextSetBit(0); i >= 0; i = atomStates[atomId].nextSetBit(i + 1)) {
+                        newIndexedStates[i].getLabels().add(atomNames[atomId]);
+                    }
+                }
+                states = newStates;
+                transitions = newTransitions;
+                indexedStates = newIndexedStates;
+            }
+            return indexedStates;
+        }
+    }
+
+    /**
+     * Builds the forward (succOffsets/succTargets) and reverse (predOffsets/predSources) compressed sparse row arrays from each state's {@link Transition}s.
+     * This runs once when the Kripke is built, so the SAT algorithms never have to walk {@link Transition} objects. Transitions to states which aren't in the Kripke (only possible in a model that failed validation) are skipped, and several Transition objects between the same pair of states are one transition in the arrays (the {@link KripkeLoader} rejects those, but the objects can be put together by hand).
+     */
+    private void buildAdjacency() {
+        int n = indexedStates.length;
+        transitionNumbers = null;
+        maxTransitionNumber = -1;
+        int[] allOffsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            for (Object transitionObj : indexedStates[i].getTransitions()) {
+                if (getIndex(((Transition) transitionObj).getTo()) >= 0) { allOffsets[i + 1]++; }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            allOffsets[i + 1] += allOffsets[i];
+        }
+        int[] targets = new int[allOffsets[n]];
+        for (int i = 0; i < n; i++) {
+            int succFill = allOffsets[i];
+            for (Object transitionObj : indexedStates[i].getTransitions()) {
+                int to = getIndex(((Transition) transitionObj).getTo());
+                if (to >= 0) { targets[succFill++] = to; }
+            }
+        }
+        // sort every state's successors and leave out the repeats
+        succOffsets = new int[n + 1];
+        int numTransitions = 0;
+        for (int i = 0; i < n; i++) {
+            Arrays.sort(targets, allOffsets[i], allOffsets[i + 1]);
+            succOffsets[i] = numTransitions;
+            for (int s = allOffsets[i]; s < allOffsets[i + 1]; s++) {
+                if (s == allOffsets[i] || targets[s] != targets[s - 1]) { targets[numTransitions++] = targets[s]; }
+            }
+        }
+        succOffsets[n] = numTransitions;
+        succTargets = Arrays.copyOf(targets, numTransitions);
+        predOffsets = new int[n + 1];
+        for (int to : succTargets) {
+            predOffsets[to + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            predOffsets[i + 1] += predOffsets[i];
+        }
+        predSources = new int[numTransitions];
+        int[] predFill = Arrays.copyOf(predOffsets, n);
+        for (int i = 0; i < n; i++) {
+            for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+                predSources[predFill[succTargets[s]]++] = i;
+            }
+        }
+    }
+
+    /**
+     * Builds the label index: interns every label name to an atom id and builds one {@link StateSet} per atom of the states labelled with it.
+     * This runs once when the Kripke is built, so resolving an atom in a formula is a map lookup instead of a scan over every state's labels.
+     */
+    private void buildLabelIndex() {
+        int n = indexedStates.length;
+        atomIds = new HashMap<String, Integer>();
+        List<StateSet> atomStatesList = new ArrayList<StateSet>();
+        for (int i = 0; i < n; i++) {
+            for (Object labelObj : indexedStates[i].getLabels()) {
+                String label = (String) labelObj;
+                Integer atomId = atomIds.get(label);
+                if (atomId == null) {
+                    atomId = atomStatesList.size();
+                    atomIds.put(label, atomId);
+                    atomStatesList.add(StateSet.empty(n));
+                }
+                atomStatesList.get(atomId).add(i);
+            }
+        }
+        atomNames = new String[atomStatesList.size()];
+        atomStates = new StateSet[atomStatesList.size()];
+        for (Map.Entry<String, Integer> atom : atomIds.entrySet()) {
+            atomNames[atom.getValue()] = atom.getKey();
+            atomStates[atom.getValue()] = atomStatesList.get(atom.getValue()).readOnly();
+        }
+        noStates = StateSet.empty(n).readOnly();
+    }
+
+    /**
+     * @return the number of states in the Kripke, which is also the universe size of its {@link StateSet}s
+     */
+    public int getNumStates() {
+        return stateNumbers.length;
+    }
+
+    /**
+     * @param index dense index of a state (0 to getNumStates() - 1)
+     * @return the {@link State} with that index
+     */
+    public State getState(int index) {
+        return stateObjects()[index];
+    }
+
+    /**
+     * @param index dense index of a state (0 to getNumStates() - 1)
+     * @return the number of the state with that index (ie, 3 for s3)
+     */
+    public int getStateNumber(int index) {
+        return stateNumbers[index];
+    }
+
+    /**
+     * @param index dense index of a state (0 to getNumStates() - 1)
+     * @return the name of the state with that index (ie, "s3")
+     */
+    public String getStateName(int index) {
+        return "s" + stateNumbers[index];
+    }
+
+    /**
+     * Gets a state's dense index from its state number
+     * @param stateNumber number of the state (ie, 3 for s3)
+     * @return the state's dense index, or -1 if there is no state with that number in the Kripke
+     */
+    public int indexOfNumber(int stateNumber) {
+        if (stateNumbers.length == 0) { return -1; }
+        if (contiguousNumbers) {
+            int index = stateNumber - stateNumbers[0];
+            return index >= 0 && index < stateNumbers.length ? index : -1;
+        }
+        int index = Arrays.binarySearch(stateNumbers, stateNumber);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * Gets a state's dense index. The index stored on the state is used when the state is one of this Kripke's states, otherwise (ie, a copy of a state) the state number is looked up.
+     * @param state {@link State} to find
+     * @return the state's dense index, or -1 if the state is not in the Kripke
+     */
+    public int getIndex(State state) {
+        int index = state.getIndex();
+        State[] indexedStates = this.indexedStates;
+        if (indexedStates != null && index >= 0 && index < indexedStates.length && indexedStates[index] == state) {
+            return index;
+        }
+        return indexOfNumber(state.getNumber());
+    }
+
+    /**
+     * Gets a state's dense index from its name (ie, "s3"). A byte order mark in the name is ignored.
+     * @param stateName {@link String} name of the state
+     * @return the state's dense index, or -1 if the name isn't a state name or the state is not in the Kripke
+     */
+    public int indexOf(String stateName) {
+        if (stateName == null) { throw new NullPointerException("stateName param in indexOf is null"); }
+        String stateNumStr = stateName.replaceAll("\uFEFF", "").replace("s", "");
+        try {
+            return indexOfNumber(Integer.parseInt(stateNumStr));
+        } catch (NumberFormatException nfe) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the number of transitions in the transition relation
+     */
+    public int getNumTransitions() {
+        return succTargets.length;
+    }
+
+    /**
+     * @param index dense index of a state
+     * @return the number of transitions out of the state
+     */
+    public int getOutDegree(int index) {
+        return succOffsets[index + 1] - succOffsets[index];
+    }
+
+    /**
+     * The forward CSR offsets (see succOffsets). The returned array is shared and must not be modified.
+     * @return int array with getNumStates() + 1 entries
+     */
+    public int[] getSuccOffsets() {
+        return succOffsets;
+    }
+
+    /**
+     * The forward CSR targets (see succTargets). The returned array is shared and must not be modified.
+     * @return int array with getNumTransitions() entries
+     */
+    public int[] getSuccTargets() {
+        return succTargets;
+    }
+
+    /**
+     * The reverse CSR offsets (see predOffsets). The returned array is shared and must not be modified.
+     * @return int array with getNumStates() + 1 entries
+     */
+    public int[] getPredOffsets() {
+        return predOffsets;
+    }
+
+    /**
+     * The reverse CSR sources (see predSources). The returned array is shared and must not be modified.
+     * @return int array with getNumTransitions() entries
+     */
+    public int[] getPredSources() {
+        return predSources;
+    }
+
+    /**
+     * @return the number of distinct atoms (labels) in the Kripke
+     */
+    public int getNumAtoms() {
+        return atomNames.length;
+    }
+
+    /**
+     * @param atomName name of an atom (label), ie "p"
+     * @return the atom's integer id, or -1 if no state is labelled with it (an atom whose last label was removed by removeLabel keeps its id)
+     */
+    public int getAtomId(String atomName) {
+        Integer atomId = atomIds.get(atomName);
+        return atomId == null ? -1 : atomId;
+    }
+
+    /**
+     * @param atomId integer id of an atom (0 to getNumAtoms() - 1)
+     * @return the atom's name, ie "p"
+     */
+    public String getAtomName(int atomId) {
+        return atomNames[atomId];
+    }
+
+    /**
+     * @param atomId integer id of an atom (0 to getNumAtoms() - 1)
+     * @return the shared, read-only {@link StateSet} of the states labelled with the atom
+     */
+    public StateSet getAtomStates(int atomId) {
+        return atomStates[atomId];
+    }
+
+    /**
+     * @param atomName name of an atom (label), ie "p"
+     * @return the shared, read-only {@link StateSet} of the states labelled with the atom (empty if no state has it)
+     */
+    public StateSet getStatesWithLabel(String atomName) {
+        Integer atomId = atomIds.get(atomName);
+        return atomId == null ? noStates : atomStates[atomId];
+    }
+
+    /**
+     * Gets the strongly connected components of the transition graph restricted to the specified states. Decompositions are cached, so asking for the same restriction again (ie, the same EG subformula in several formulas) doesn't recompute it.
+     * @param restriction {@link StateSet} of the states in the subgraph
+     * @return the {@link SccDecomposition} of the subgraph
+     */
+    public SccDecomposition getSccDecomposition(StateSet restriction) {
+        SccDecomposition sccDecomposition;
+        synchronized (sccCache) {
+            sccDecomposition = sccCache.get(restriction);
+        }
+        if (sccDecomposition == null) {
+            // computed outside the lock so EGs being checked on other threads don't wait for it (two threads may both compute the same decomposition, which is harmless)
+            sccDecomposition = SccDecomposition.compute(this, restriction);
+            synchronized (sccCache) {
+                sccCache.put(restriction.isReadOnly() ? restriction : restriction.copy().readOnly(), sccDecomposition);
+            }
+        }
+        return sccDecomposition;
+    }
+
+    /**
+     * Gets the bisimulation quotient of this Kripke: the Kripke with each group of states no CTL formula can tell apart merged into one state. Computed the first time it's asked for and then cached.
+     * @return the {@link BisimulationQuotient} of this Kripke
+     */
+    public BisimulationQuotient getBisimulationQuotient() {
+        return getBisimulationQuotient(null);
+    }
+
+    /**
+     * Gets the bisimulation quotient of this Kripke with the labels projected onto some atoms: the Kripke with each group of states no CTL formula over those atoms can tell apart merged into one state (see {@link BisimulationQuotient}). Quotients are cached, so formulas over the same atoms share one.
+     * @param atoms names of the atoms to keep (ie, {@link modelCheckCTL.controller.ctl.formula.Formula#getAtoms()}), or null for all of them
+     * @return the {@link BisimulationQuotient} of this Kripke for those atoms
+     */
+    public BisimulationQuotient getBisimulationQuotient(Set<String> atoms) {
+        Set<String> key = atoms == null ? null : Collections.unmodifiableSet(new TreeSet<String>(atoms));
+        BisimulationQuotient quotient;
+        synchronized (quotientCache) {
+            quotient = quotientCache.get(key);
+        }
+        if (quotient == null) {
+            // computed outside the lock, same as the SCC decompositions
+            quotient = BisimulationQuotient.compute(this, key);
+            synchronized (quotientCache) {
+                quotientCache.put(key, quotient);
+            }
+        }
+        return quotient;
+    }
+
+    /**
+     * Gets the part of this Kripke reachable from some initial states: a forward breadth first search from them finds the reachable states, and the new Kripke only has those (with their numbers and labels) and the transitions between them. It's built straight from the index arrays, the same way as a {@link KripkeSnapshot}, so no {@link State} or {@link Transition} objects are made.
+     * @param initialStates {@link StateSet} of the initial states
+     * @return a new frozen Kripke with only the reachable states, or this Kripke if every state is reachable
+     */
+    public Kripke restrictToReachable(StateSet initialStates) {
+        Kripke reachable = reachablePart(initialStates);
+        return reachable == this ? this : reachable.freeze();
+    }
+
+    /**
+     * restrictToReachable without freezing the new Kripke, for the init line of a kripke file (see {@link KripkeLoader})
+     * @param initialStates {@link StateSet} of the initial states
+     * @return a new Kripke with only the reachable states, or this Kripke if every state is reachable
+     */
+    Kripke reachablePart(StateSet initialStates) {
+        int n = getNumStates();
+        int[] newIndex = new int[n];
+        Arrays.fill(newIndex, -1);
+        int[] queue = new int[n];
+        int queueEnd = 0;
+        for (int i = initialStates.nextSetBit(0); i >= 0; i = initialStates.nextSetBit(i + 1)) {
+            newIndex[i] = 0;
+            queue[queueEnd++] = i;
+        }
+        for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+            int i = queue[queueStart];
+            for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+                if (newIndex[succTargets[s]] == -1) {
+                    newIndex[succTargets[s]] = 0;
+                    queue[queueEnd++] = succTargets[s];
+                }
+            }
+        }
+        if (queueEnd == n) { return this; }
+
+        // the reachable states keep their order, so their numbers and each state's successors stay sorted
+        int m = 0;
+        int[] newStateNumbers = new int[queueEnd];
+        for (int i = 0; i < n; i++) {
+            if (newIndex[i] == -1) { continue; }
+            newIndex[i] = m;
+            newStateNumbers[m++] = stateNumbers[i];
+        }
+        int[] newSuccOffsets = new int[m + 1];
+        int[] newPredOffsets = new int[m + 1];
+        int numTransitions = 0;
+        for (int i = 0; i < n; i++) {
+            if (newIndex[i] == -1) { continue; }
+            numTransitions += succOffsets[i + 1] - succOffsets[i];
+            newSuccOffsets[newIndex[i] + 1] = numTransitions;
+            for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+                newPredOffsets[newIndex[succTargets[s]] + 1]++;
+            }
+        }
+        for (int k = 0; k < m; k++) {
+            newPredOffsets[k + 1] += newPredOffsets[k];
+        }
+        int[] newSuccTargets = new int[numTransitions];
+        int[] newPredSources = new int[numTransitions];
+        int[] newTransitionNumbers = transitionNumbers != null ? new int[numTransitions] : null;
+        int[] predFill = Arrays.copyOf(newPredOffsets, m);
+        for (int i = 0; i < n; i++) {
+            if (newIndex[i] == -1) { continue; }
+            int succFill = newSuccOffsets[newIndex[i]];
+            for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+                int to = newIndex[succTargets[s]];
+                if (newTransitionNumbers != null) { newTransitionNumbers[succFill] = transitionNumbers[s]; }
+                newSuccTargets[succFill++] = to;
+                newPredSources[predFill[to]++] = newIndex[i];
+            }
+        }
+        long[][] newAtomWords = new long[atomNames.length][];
+        for (int atomId = 0; atomId < atomNames.length; atomId++) {
+            newAtomWords[atomId] = new long[(m + 63) >>> 6];
+            for (int i = atomStates[atomId].nextSetBit(0); i >= 0; i = atomStates[atomId].nextSetBit(i + 1)) {
+                int k = newIndex[i];
+                if (k >= 0) { newAtomWords[atomId][k >>> 6] |= 1L << k; }
+            }
+        }
+        return new Kripke(newStateNumbers, newSuccOffsets, newSuccTargets, newPredOffsets, newPredSources, atomNames.clone(), newAtomWords, newTransitionNumbers);
+    }
+
+    /**
+     * Makes a modifiable copy of this Kripke (ie, of a frozen one from the {@link KripkeRepository}), which can then be edited with addTransition, removeTransition, addLabel and removeLabel. Built straight from the index arrays, the same way as a {@link KripkeSnapshot}. The arrays are shared, which is safe because edits never change an array, they make a new one.
+     * @return a new Kripke, not frozen, with the same states, transitions and labels
+     */
+    public Kripke copy() {
+        long[][] atomWords = new long[atomNames.length][];
+        for (int atomId = 0; atomId < atomNames.length; atomId++) {
+            atomWords[atomId] = atomStates[atomId].words();
+        }
+        return new Kripke(stateNumbers, succOffsets, succTargets, predOffsets, predSources, atomNames.clone(), atomWords, transitionNumbers);
+    }
+
+    /**
+     * @param from dense index of the from state
+     * @param to dense index of the to state
+     * @return true if there is a transition from the from state to the to state
+     */
+    public boolean hasTransition(int from, int to) {
+        checkStateIndex(from);
+        checkStateIndex(to);
+        return Arrays.binarySearch(succTargets, succOffsets[from], succOffsets[from + 1], to) >= 0;
+    }
+
+    /**
+     * Adds a transition to the Kripke, same as addTransitions with one pair of states. Adding several transitions with addTransitions is cheaper, since every call rebuilds the adjacency arrays.
+     * @param from dense index of the from state
+     * @param to dense index of the to state
+     * @return true if the transition was added, false if there already was one
+     */
+    public boolean addTransition(int from, int to) {
+        return addTransitions(new int[] {from}, new int[] {to}) == 1;
+    }
+
+    /**
+     * Adds transitions to the Kripke. The adjacency arrays are rebuilt once with all the new transitions merged in (new arrays, so arrays handed out before aren't changed), so adding k transitions is O(|S| + |T| + k log k). The new transitions are numbered after the highest transition number, in order of from state and then to state (in transitionNumbers, and on new {@link Transition}s if the {@link State} objects have been made).
+     * Every added transition is recorded as an edit (see {@link #getDeltaSince(int)}), so an Evaluator for this Kripke only redoes the part of its memoized sets the new transitions can change. The cached SCC decompositions and bisimulation quotients are dropped.
+     * @param from dense indices of the from states
+     * @param to dense indices of the to states, one for each from state
+     * @return the number of transitions added: pairs which already are transitions, or are listed more than once, are only added once
+     */
+    public int addTransitions(int[] from, int[] to) {
+        checkNotFrozen();
+        long[] pairs = batchPairs(from, to, false);
+        if (pairs.length == 0) { return 0; }
+        State[] indexedStates = this.indexedStates;
+        int firstNumber = indexedStates != null || transitionNumbers != null ? nextTransitionNumber() : 0;
+        rebuildAdjacency(pairs, true, firstNumber);
+        if (firstNumber > 0) { maxTransitionNumber = firstNumber + pairs.length - 1; }
+        for (int p = 0; p < pairs.length; p++) {
+            int fromIndex = (int) (pairs[p] >>> 32);
+            if (indexedStates != null) {
+                Transition transition = new Transition(firstNumber + p, indexedStates[fromIndex], indexedStates[(int) pairs[p]]);
+                try {
+                    indexedStates[fromIndex].addTransition(transition);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e); // can't happen, the transition is added to its from state
+                }
+                if (transitions != null) { transitions.add(transition); }
+            }
+            edited(fromIndex, null, true);
+        }
+        return pairs.length;
+    }
+
+    /**
+     * Removes a transition from the Kripke, same as removeTransitions with one pair of states
+     * @param from dense index of the from state
+     * @param to dense index of the to state
+     * @return true if the transition was removed, false if there wasn't one
+     */
+    public boolean removeTransition(int from, int to) {
+        return removeTransitions(new int[] {from}, new int[] {to}) == 1;
+    }
+
+    /**
+     * Removes transitions from the Kripke. Same as addTransitions, the adjacency arrays are rebuilt once, the {@link Transition} objects are removed if they've been made and every removed transition is recorded as an edit.
+     * @param from dense indices of the from states
+     * @param to dense indices of the to states, one for each from state
+     * @return the number of transitions removed: pairs which aren't transitions are skipped, and pairs listed more than once are only removed once
+     */
+    public int removeTransitions(int[] from, int[] to) {
+        checkNotFrozen();
+        long[] pairs = batchPairs(from, to, true);
+        if (pairs.length == 0) { return 0; }
+        rebuildAdjacency(pairs, false, 0);
+        State[] indexedStates = this.indexedStates;
+        for (long pair : pairs) {
+            int fromIndex = (int) (pair >>> 32);
+            if (indexedStates != null) {
+                Iterator transitionIterator = indexedStates[fromIndex].getTransitions().iterator();
+                while (transitionIterator.hasNext()) {
+                    Transition transition = (Transition) transitionIterator.next();
+                    if (getIndex(transition.getTo()) == (int) pair) {
+                        transitionIterator.remove();
+                        if (transitions != null) { transitions.remove(transition); }
+                    }
+                }
+            }
+            edited(fromIndex, null, false);
+        }
+        return pairs.length;
+    }
+
+    /**
+     * Labels a state with an atom. The atom's label set is replaced with a new one with the state in it (a new atom gets a new atom id), and the label is added to the {@link State} object if it's been made.
+     * The edit is recorded (see {@link #getDeltaSince(int)}), so an Evaluator for this Kripke only redoes the memoized sets of the subformulas over this atom. The cached bisimulation quotients the atom is part of are dropped, the others and the SCC decompositions are kept.
+     * @param index dense index of the state
+     * @param atomName name of the atom (label), ie "p"
+     * @return true if the label was added, false if the state already had it
+     */
+    public boolean addLabel(int index, String atomName) {
+        return setLabel(index, atomName, true);
+    }
+
+    /**
+     * Takes an atom off a state's labels. Same as addLabel, the atom's label set is replaced, the {@link State} object is updated if it's been made and the edit is recorded. The atom keeps its atom id when no state has it anymore.
+     * @param index dense index of the state
+     * @param atomName name of the atom (label), ie "p"
+     * @return true if the label was removed, false if the state didn't have it
+     */
+    public boolean removeLabel(int index, String atomName) {
+        return setLabel(index, atomName, false);
+    }
+
+    private boolean setLabel(int index, String atomName, boolean labelled) {
+        checkNotFrozen();
+        checkStateIndex(index);
+        if (atomName == null) { throw new NullPointerException("atomName param in addLabel/removeLabel is null"); }
+        Integer atomId = atomIds.get(atomName);
+        if (atomId == null) {
+            if (!labelled) { return false; }
+            atomId = atomNames.length;
+            Map<String, Integer> newAtomIds = new HashMap<String, Integer>(atomIds);
+            newAtomIds.put(atomName, atomId);
+            atomNames = Arrays.copyOf(atomNames, atomId + 1);
+            atomNames[atomId] = atomName;
+            atomStates = Arrays.copyOf(atomStates, atomId + 1);
+            atomStates[atomId] = noStates;
+            atomIds = newAtomIds;
+        }
+        if (atomStates[atomId].contains(index) == labelled) { return false; }
+        StateSet newAtomStates = atomStates[atomId].copy();
+        if (labelled) {
+            newAtomStates.add(index);
+        } else {
+            newAtomStates.remove(index);
+        }
+        atomStates[atomId] = newAtomStates.readOnly();
+        State[] indexedStates = this.indexedStates;
+        if (indexedStates != null) {
+            if (labelled) {
+                indexedStates[index].getLabels().add(atomName);
+            } else {
+                indexedStates[index].getLabels().remove(atomName);
+            }
+        }
+        edited(index, atomName, labelled);
+        return true;
+    }
+
+    /**
+     * Gets what the edits made since an older version of this Kripke changed, so a cache worked out for that version can be brought up to date instead of being thrown away. The recorded edits are merged: a label that was flipped twice isn't a change.
+     * @param sinceVersion the {@link #getVersion()} the cache was made for
+     * @return the {@link KripkeDelta} from that version to the current one, or null if the states or transitions were replaced since (or the edits made since were too many to keep), in which case everything has to be redone
+     */
+    public KripkeDelta getDeltaSince(int sinceVersion) {
+        int n = getNumStates();
+        StateSet addedSources = StateSet.empty(n);
+        StateSet removedSources = StateSet.empty(n);
+        Map<String, StateSet> changedLabels = new HashMap<String, StateSet>();
+        synchronized (editLog) {
+            if (sinceVersion < editLogStart || sinceVersion > editLogStart + editLog.size()) { return null; }
+            for (int k = sinceVersion - editLogStart; k < editLog.size(); k++) {
+                Edit edit = editLog.get(k);
+                if (edit.atomName == null) {
+                    (edit.added ? addedSources : removedSources).add(edit.index);
+                    continue;
+                }
+                StateSet changedStates = changedLabels.get(edit.atomName);
+                if (changedStates == null) {
+                    changedStates = StateSet.empty(n);
+                    changedLabels.put(edit.atomName, changedStates);
+                }
+                if (!changedStates.add(edit.index)) { changedStates.remove(edit.index); }  // flipped back
+            }
+        }
+        Iterator<Map.Entry<String, StateSet>> atoms = changedLabels.entrySet().iterator();
+        while (atoms.hasNext()) {
+            Map.Entry<String, StateSet> atom = atoms.next();
+            if (atom.getValue().isEmpty()) {
+                atoms.remove();
+            } else {
+                atom.setValue(atom.getValue().readOnly());
+            }
+        }
+        return new KripkeDelta(addedSources, removedSources, changedLabels);
+    }
+
+    /**
+     * Called after every edit: drops the caches the edit makes stale, records the edit and bumps the version. A transition edit drops every SCC decomposition and bisimulation quotient, a label edit only the quotients projected onto its atom (the SCCs don't depend on the labels).
+     * @param index dense index of the edited state (the from state of a transition)
+     * @param atomName name of the atom of a label edit, or null for a transition edit
+     * @param added true if a transition or label was added, false if one was removed
+     */
+    private void edited(int index, String atomName, boolean added) {
+        if (atomName == null) {
+            synchronized (sccCache) {
+                sccCache.clear();
+            }
+            synchronized (quotientCache) {
+                quotientCache.clear();
+            }
+        } else {
+            synchronized (quotientCache) {
+                Iterator<Set<String>> atomSets = quotientCache.keySet().iterator();
+                while (atomSets.hasNext()) {
+                    Set<String> atomSet = atomSets.next();
+                    if (atomSet == null || atomSet.contains(atomName)) { atomSets.remove(); }
+                }
+            }
+        }
+        synchronized (editLog) {
+            if (editLog.size() == EDIT_LOG_SIZE) {
+                editLog.clear();
+                editLogStart = version + 1;
+            } else {
+                editLog.add(new Edit(index, atomName, added));
+            }
+            version++;
+        }
+    }
+
+    /**
+     * Called whenever the states or transitions are replaced. Drops the cached SCC decompositions and bisimulation quotients and the edit log and bumps the version, so caches kept outside the Kripke (ie, the satisfaction sets memoized by the Evaluator) can tell theirs are stale too.
+     */
+    private void structureChanged() {
+        synchronized (sccCache) {
+            sccCache.clear();
+        }
+        synchronized (quotientCache) {
+            quotientCache.clear();
+        }
+        synchronized (editLog) {
+            editLog.clear();
+            version++;
+            editLogStart = version;
+        }
+    }
+
+    /**
+     * @return a number which changes every time the states or transitions of this Kripke are replaced or edited
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Makes this Kripke unmodifiable: setStates and setTransitions throw an UnsupportedOperationException afterwards. Used by {@link KripkeRepository} before a Kripke is handed out to several users.
+     * @return this Kripke
+     */
+    public Kripke freeze() {
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) { throw new UnsupportedOperationException("Kripke is frozen (it is shared through a KripkeRepository) and can't be modified"); }
+    }
+
+    private void checkStateIndex(int index) {
+        if (index < 0 || index >= getNumStates()) { throw new IndexOutOfBoundsException("state index " + index + " is outside of Kripke with " + getNumStates() + " states"); }
+    }
+
+    /**
+     * @return one more than the highest transition number given out so far (so new transitions don't clash with the numbers from the kripke file). Only looks at the transitions the first time.
+     */
+    private int nextTransitionNumber() {
+        if (maxTransitionNumber < 0) {
+            int highest = 0;
+            if (transitionNumbers != null) {
+                for (int number : transitionNumbers) {
+                    if (number > highest) { highest = number; }
+                }
+            } else if (transitions != null) {
+                for (Object transitionObj : transitions) {
+                    Integer number = ((Transition) transitionObj).getNumber();
+                    if (number != null && number > highest) { highest = number; }
+                }
+            }
+            maxTransitionNumber = highest;
+        }
+        return maxTransitionNumber + 1;
+    }
+
+    /**
+     * @param from dense indices of the from states
+     * @param to dense indices of the to states
+     * @param present true to keep the pairs which are transitions, false to keep the ones which aren't
+     * @return the kept (from << 32 | to) pairs, sorted and without repeats
+     */
+    private long[] batchPairs(int[] from, int[] to, boolean present) {
+        if (from.length != to.length) { throw new IllegalArgumentException("from and to params in addTransitions/removeTransitions have different lengths"); }
+        long[] pairs = new long[from.length];
+        for (int k = 0; k < from.length; k++) {
+            checkStateIndex(from[k]);
+            checkStateIndex(to[k]);
+            pairs[k] = ((long) from[k] << 32) | to[k];
+        }
+        Arrays.sort(pairs);
+        int size = 0;
+        for (int k = 0; k < pairs.length; k++) {
+            if (k > 0 && pairs[k] == pairs[k - 1]) { continue; }
+            if (hasTransition((int) (pairs[k] >>> 32), (int) pairs[k]) == present) { pairs[size++] = pairs[k]; }
+        }
+        return Arrays.copyOf(pairs, size);
+    }
+
+    /**
+     * Replaces the adjacency arrays (and transitionNumbers) with new ones with a batch of transitions merged in or taken out
+     * @param pairs sorted (from << 32 | to) pairs, none of them transitions yet if added, all of them transitions if not
+     * @param added true to add the pairs, false to remove them
+     * @param firstNumber number of the first added transition, the others are numbered on from it in the order of pairs
+     */
+    private void rebuildAdjacency(long[] pairs, boolean added, int firstNumber) {
+        int n = getNumStates();
+        long[] reversedPairs = new long[pairs.length];
+        for (int p = 0; p < pairs.length; p++) {
+            reversedPairs[p] = (pairs[p] << 32) | (pairs[p] >>> 32);
+        }
+        Arrays.sort(reversedPairs);
+        int[] newSuccOffsets = new int[n + 1];
+        int[][] succ = editedRows(succOffsets, succTargets, transitionNumbers, pairs, added, firstNumber, newSuccOffsets);
+        int[] newPredOffsets = new int[n + 1];
+        int[][] pred = editedRows(predOffsets, predSources, null, reversedPairs, added, 0, newPredOffsets);
+        succOffsets = newSuccOffsets;
+        succTargets = succ[0];
+        transitionNumbers = succ[1];
+        predOffsets = newPredOffsets;
+        predSources = pred[0];
+    }
+
+    /**
+     * One direction of rebuildAdjacency: merges sorted (row << 32 | entry) pairs into the rows of compressed sparse row arrays, or takes them out, so every row stays sorted. The runs of rows without pairs are copied in blocks, so a small batch costs little more than copying the arrays.
+     * @param numbers transition number of each entry, moved along with the entries, or null for none
+     * @param newOffsets filled in with the new offsets
+     * @return the new entries and the new numbers (null if numbers is null)
+     */
+    private static int[][] editedRows(int[] offsets, int[] entries, int[] numbers, long[] pairs, boolean added, int firstNumber, int[] newOffsets) {
+        int n = newOffsets.length - 1;
+        int size = added ? entries.length + pairs.length : entries.length - pairs.length;
+        int[] newEntries = new int[size];
+        int[] newNumbers = numbers != null ? new int[size] : null;
+        int fill = 0;
+        int row = 0;
+        int p = 0;
+        while (true) {
+            // the rows up to the next pair's row are copied as they are
+            int pairRow = p < pairs.length ? (int) (pairs[p] >>> 32) : n;
+            int shift = fill - offsets[row];
+            for (int i = row; i <= pairRow; i++) {
+                newOffsets[i] = offsets[i] + shift;
+            }
+            int length = offsets[pairRow] - offsets[row];
+            System.arraycopy(entries, offsets[row], newEntries, fill, length);
+            if (newNumbers != null) { System.arraycopy(numbers, offsets[row], newNumbers, fill, length); }
+            fill += length;
+            if (pairRow == n) { break; }
+            // and the pairs' row is merged with its pairs
+            int e = offsets[pairRow];
+            while (e < offsets[pairRow + 1] || (added && p < pairs.length && (int) (pairs[p] >>> 32) == pairRow)) {
+                boolean pairInRow = p < pairs.length && (int) (pairs[p] >>> 32) == pairRow;
+                if (pairInRow && !added && (int) pairs[p] == entries[e]) {  // taken out
+                    p++;
+                    e++;
+                    continue;
+                }
+                if (pairInRow && added && (e == offsets[pairRow + 1] || (int) pairs[p] < entries[e])) {
+                    newEntries[fill] = (int) pairs[p];
+                    if (newNumbers != null) { newNumbers[fill] = firstNumber + p; }
+                    p++;
+                } else {
+                    newEntries[fill] = entries[e];
+                    if (newNumbers != null) { newNumbers[fill] = numbers[e]; }
+                    e++;
+                }
+                fill++;
+            }
+            row = pairRow + 1;
+        }
+        return new int[][] {newEntries, newNumbers};
+    }
+
+    /**
+     * Rough estimate of the heap this Kripke takes up, used by {@link KripkeRepository} to bound its cache. Counts the index arrays exactly and uses average sizes for the {@link State} and {@link Transition} objects and their sets (whether they've been made yet or not, since anything can ask for them later).
+     * @return estimated size in bytes
+     */
+    public long estimateMemorySize() {
+        long n = getNumStates();
+        long t = getNumTransitions();
+        long bytes = 0;
+        bytes += n * 200;                      // State objects, their label and transition HashSets and the states HashSet entry
+        bytes += t * 150;                      // Transition objects and their entries in the transitions HashSet and their state's set
+        bytes += n * 8 + n * 4;                // indexedStates, stateNumbers
+        bytes += (n + 1) * 8 + t * 8;          // succOffsets/predOffsets, succTargets/predSources
+        if (transitionNumbers != null) { bytes += t * 4; }
+        bytes += (long) getNumAtoms() * (((n + 63) / 64) * 8 + 64);  // atomStates bitsets and the atom tables
+        return bytes;
+    }
+
+    /**
+     * @return an empty {@link StateSet} over this Kripke's states
+     */
+    public StateSet emptySet() {
+        return StateSet.empty(getNumStates());
+    }
+
+    /**
+     * @return a {@link StateSet} containing all of this Kripke's states (the complement of the shared empty set, so nothing proportional to the number of states is allocated unless it is modified)
+     */
+    public StateSet allStatesSet() {
+        return noStates.complemented();
     }
 
     /**
@@ -48,6 +1074,8 @@ public class Kripke {
      * @return
      */
     public String toString() {
+        Set states = getStates();
+        Set transitions = getTransitions();
         if (states == null) { throw new NullPointerException("states in Kripke are null in toString"); }
         if (transitions == null) { throw new NullPointerException("transitions in Kripke are null in toString"); }
         if (getLabelsStr(states) == null) { throw new NullPointerException("labels in Kripke are null in toString"); }
@@ -106,4 +1134,19 @@ public class Kripke {
         }
     }
 
+    /**
+     * One recorded edit (see editLog): a label edit of a state, or a transition edit of its from state
+     */
+    private static class Edit {
+        private final int index;
+        private final String atomName;  // null for a transition edit
+        private final boolean added;
+
+        Edit(int index, String atomName, boolean added) {
+            this.index = index;
+            this.atomName = atomName;
+            this.added = added;
+        }
+    }
+
 }
@@ -0,0 +1,90 @@
+package modelCheckCTL.controller.types.kripke;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What changed in a {@link Kripke} between two of its versions, made from the edits (addTransition, removeTransition, addLabel, removeLabel) recorded since the older one (see {@link Kripke#getDeltaSince(int)}).
+ * For every atom it has the states whose label for that atom was flipped (a label added and then removed again isn't a change), and it has the states which had transitions added and the states which had transitions removed, which are the only states whose successors may be different.
+ * Caches of results worked out for the older version (ie, the satisfaction sets memoized by the {@link modelCheckCTL.controller.ctl.checker.Evaluator}) use it to only redo the part of the Kripke the edits can have affected. Deltas are immutable.
+ */
+public class KripkeDelta {
+
+    /**
+     * Read-only {@link StateSet}s of the from states of the added and of the removed transitions, and of both
+     */
+    private final StateSet addedSources;
+    private final StateSet removedSources;
+    private final StateSet changedSources;
+
+    /**
+     * Read-only {@link StateSet} of the states whose label changed, by atom name. Atoms that weren't touched aren't in the map.
+     */
+    private final Map<String, StateSet> changedLabels;
+
+    /**
+     * Shared, read-only empty set returned for atoms that weren't touched
+     */
+    private final StateSet noStates;
+
+    KripkeDelta(StateSet addedSources, StateSet removedSources, Map<String, StateSet> changedLabels) {
+        this.addedSources = addedSources.readOnly();
+        this.removedSources = removedSources.readOnly();
+        this.changedSources = addedSources.union(removedSources).readOnly();
+        this.changedLabels = Collections.unmodifiableMap(changedLabels);
+        this.noStates = StateSet.empty(addedSources.getSize()).readOnly();
+    }
+
+    /**
+     * @return the read-only {@link StateSet} of the states which had transitions added
+     */
+    public StateSet getAddedSources() {
+        return addedSources;
+    }
+
+    /**
+     * @return the read-only {@link StateSet} of the states which had transitions removed
+     */
+    public StateSet getRemovedSources() {
+        return removedSources;
+    }
+
+    /**
+     * @return the read-only {@link StateSet} of the states which had transitions added or removed
+     */
+    public StateSet getChangedSources() {
+        return changedSources;
+    }
+
+    /**
+     * @return true if any transition was added or removed
+     */
+    public boolean hasTransitionChanges() {
+        return !changedSources.isEmpty();
+    }
+
+    /**
+     * @return names of the atoms whose label changed on some state
+     */
+    public Set<String> getChangedAtoms() {
+        return changedLabels.keySet();
+    }
+
+    /**
+     * @param atomName name of an atom (label), ie "p"
+     * @return the read-only {@link StateSet} of the states which gained or lost the label (empty if the atom wasn't touched)
+     */
+    public StateSet getChangedStates(String atomName) {
+        StateSet changedStates = changedLabels.get(atomName);
+        return changedStates == null ? noStates : changedStates;
+    }
+
+    /**
+     * @return true if nothing changed
+     */
+    public boolean isEmpty() {
+        return changedLabels.isEmpty() && changedSources.isEmpty();
+    }
+
+}
@@ -2,6 +2,7 @@ package modelCheckCTL.controller.types.kripke;
 
 import modelCheckCTL.controller.types.kripke.Kripke;
 
+import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -29,6 +30,11 @@ public class KripkeFileObj {
      */
     Set transitions;
 
+    /**
+     * The {@link StateSet} of the initial states from the kripke file's init line (indices into kripke), or null if it has none. If there are initial states, the kripke only has the states reachable from them.
+     */
+    StateSet initialStates;
+
     /**
      * Any error message which occurred while parsing the kripke file. Will be null if no error occurred.
      */
@@ -59,14 +65,45 @@ public class KripkeFileObj {
         return kripke;
     }
 
+    /**
+     * @return the transitions, or the Kripke's transitions if they weren't set (ie, for a {@link KripkeSnapshot}, which only makes them when they're asked for)
+     */
     public Set getTransitions() {
+        if (transitions == null && kripke != null) { return kripke.getTransitions(); }
         return transitions;
     }
 
+    /**
+     * @return the states, or the Kripke's states if they weren't set (ie, for a {@link KripkeSnapshot}, which only makes them when they're asked for)
+     */
     public Set getStates() {
+        if (states == null && kripke != null) { return kripke.getStates(); }
         return states;
     }
 
+    /**
+     * @return the {@link Set} of initial {@link State}s from the kripke file's init line, or null if it has none. Made from the Kripke's states when asked for, same as getStates.
+     */
+    public Set getInitialStates() {
+        if (initialStates == null) { return null; }
+        Set initialStatesSet = new HashSet<State>();
+        for (int i = initialStates.nextSetBit(0); i >= 0; i = initialStates.nextSetBit(i + 1)) {
+            initialStatesSet.add(kripke.getState(i));
+        }
+        return initialStatesSet;
+    }
+
+    /**
+     * @return the read-only {@link StateSet} of the initial states from the kripke file's init line, or null if it has none
+     */
+    public StateSet getInitialStateSet() {
+        return initialStates;
+    }
+
+    public void setInitialStates(StateSet initialStates) {
+        this.initialStates = initialStates == null ? null : initialStates.readOnly();
+    }
+
     public String getErrorMessage() {
         return errorMessage;
     }
@@ -0,0 +1,637 @@
+package modelCheckCTL.controller.types.kripke;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.Integer.parseInt;
+
+/**
+ * Parses a kripke text file into a {@link KripkeFileObj} in a single pass. Each line is parsed as soon as it's complete, straight from the bytes of the file: state and transition numbers are read from the bytes without making a String for each token (Strings are only made for labels and error messages), so the file is never held in memory as a whole or copied into Strings.
+ * A {@link KripkeSnapshot} is loaded instead if the file starts with the snapshot magic.
+ * Files on disk are memory mapped with {@link FileChannel#map}, one window of at most mapWindowSize bytes at a time, so files of several GB (bigger than the 2 GB a single mapping can hold) can be loaded too. Anything else (ie, a file inside a jar) is read through a buffered NIO channel.
+ * Kripke text file must be in a format like this:
+ * s1, s2, s3, s4;
+ * t1 : s1 - s2, (transition t1 is from state s1 to state s2)
+ * t2 : s1 - s3,
+ * t3 : s3 – s4,
+ * t4 : s4 – s2,
+ * t5 : s2 – s3;
+ * s1 : p q, (propositional atom names are separated by a space; a name consists of letters, it is casesensitive)
+ * s2 : q t r,
+ * s3 : , (i.e. set of propositional atoms for state s3 is empty)
+ * s4 : t;
+ * init : s1, s3; (optional: the initial states)
+ *
+ * The states, transitions and labels are only kept in primitive arrays while parsing, and once the whole file is parsed the {@link Kripke}'s index arrays are built straight from them with counting sorts, the same way as a {@link KripkeSnapshot}: no {@link State} or {@link Transition} objects are made until something asks for them (see {@link KripkeFileObj#getStates()}), and they keep the transition numbers from the file.
+ * If the file has an init line (anywhere after the states line), only the states reachable from the initial states are kept: a forward breadth first search over the index arrays finds them (see {@link Kripke#restrictToReachable(StateSet)}), so the Kripke and every fixpoint computed on it only have the reachable part.
+ * States are looked up by number and duplicate transitions are found by their (from, to) pair in primitive open addressing hash tables, so loading a file with T transitions is O(T) instead of the O(T^3) of scanning the transition set for every transition number. A duplicate transition is reported and left out, so a Kripke never has the same pair of states twice.
+ * Syntax errors are reported through {@link KripkeFileObj#getErrorMessage()} with the same messages and line numbers as before: the first error in the transitions stops the parsing of transitions, the states and labels lines are always parsed, and a later error replaces an earlier one.
+ */
+public class KripkeLoader implements KripkeRepository.Loader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Size of the read buffer in bytes, when the file isn't memory mapped
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Default size of the memory mapped windows in bytes (1 GB)
+     */
+    public static final long DEFAULT_MAP_WINDOW_SIZE = 1L << 30;
+
+    /**
+     * Maximum number of bytes mapped at a time. A line can't be longer than this.
+     */
+    private final long mapWindowSize;
+
+    public KripkeLoader() {
+        this(DEFAULT_MAP_WINDOW_SIZE);
+    }
+
+    /**
+     * @param mapWindowSize maximum number of bytes of a file to memory map at a time (1 to Integer.MAX_VALUE)
+     */
+    public KripkeLoader(long mapWindowSize) {
+        if (mapWindowSize < 1 || mapWindowSize > Integer.MAX_VALUE) { throw new IllegalArgumentException("mapWindowSize in KripkeLoader constructor is out of range: " + mapWindowSize); }
+        this.mapWindowSize = mapWindowSize;
+    }
+
+    /**
+     * Loads a kripke text file or a {@link KripkeSnapshot} (recognized by its magic) from a stream
+     */
+    @Override
+    public KripkeFileObj load(String kripkeFilepath, InputStream inputStream) throws IOException {
+        BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream);
+        bufferedInputStream.mark(4);
+        byte[] magic = new byte[4];
+        int magicLength = 0;
+        int read;
+        while (magicLength < 4 && (read = bufferedInputStream.read(magic, magicLength, 4 - magicLength)) != -1) {
+            magicLength += read;
+        }
+        bufferedInputStream.reset();
+        if (KripkeSnapshot.isSnapshot(ByteBuffer.wrap(magic, 0, magicLength))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] bytes = new byte[BUFFER_SIZE];
+            while ((read = bufferedInputStream.read(bytes)) != -1) {
+                out.write(bytes, 0, read);
+            }
+            return snapshotFileObj(kripkeFilepath, KripkeSnapshot.load(kripkeFilepath, ByteBuffer.wrap(out.toByteArray())));
+        }
+        return load(kripkeFilepath, Channels.newChannel(bufferedInputStream));
+    }
+
+    /**
+     * Loads a kripke text file or a {@link KripkeSnapshot} (recognized by its magic) by memory mapping it
+     */
+    @Override
+    public KripkeFileObj load(String kripkeFilepath, File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            channel.read(magic, 0);
+            magic.flip();
+            if (KripkeSnapshot.isSnapshot(magic)) {
+                return snapshotFileObj(kripkeFilepath, KripkeSnapshot.load(kripkeFilepath, channel));
+            }
+            return load(kripkeFilepath, channel);
+        }
+    }
+
+    /**
+     * A snapshot was saved from a model which passed parsing, so there's never an error message. The states and transitions come from the Kripke (see {@link KripkeFileObj#getStates()}) so they aren't made until they're needed.
+     */
+    private static KripkeFileObj snapshotFileObj(String kripkeFilepath, Kripke kripke) {
+        KripkeFileObj kripkeFileObj = new KripkeFileObj();
+        kripkeFileObj.setKripkeFilepath(kripkeFilepath);
+        kripkeFileObj.setKripke(kripke);
+        return kripkeFileObj;
+    }
+
+    /**
+     * Parses a kripke text file (see the class comment for the format) by memory mapping it
+     * @param kripkeFilepath {@link String} filename of the kripke text file (used in error messages)
+     * @param channel {@link FileChannel} of the kripke text file, read from the start to the end but not closed
+     * @return A {@link KripkeFileObj} object with the {@link Kripke} in it
+     * @throws IOException
+     */
+    public KripkeFileObj load(String kripkeFilepath, FileChannel channel) throws IOException {
+        Parse parse = new Parse(kripkeFilepath);
+        long size = channel.size();
+        long position = 0;
+        while (position < size) {
+            int windowLength = (int) Math.min(mapWindowSize, size - position);
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowLength);
+            int lineStart = parse.lines(window, 0, windowLength);
+            if (position + windowLength == size) {
+                parse.lastLine(window, lineStart, windowLength);
+                break;
+            }
+            // the next window starts at the line which didn't fit in this one
+            if (lineStart == 0) { throw new IOException(kripkeFilepath + ": line " + parse.getLineNum() + " is longer than " + mapWindowSize + " bytes"); }
+            position += lineStart;
+        }
+        return parse.finish();
+    }
+
+    /**
+     * Parses a kripke text file (see the class comment for the format) through a buffered channel
+     * @param kripkeFilepath {@link String} filename of the kripke text file (used in error messages)
+     * @param channel {@link ReadableByteChannel} of the kripke text file, read to the end but not closed
+     * @return A {@link KripkeFileObj} object with the {@link Kripke} in it
+     * @throws IOException
+     */
+    public KripkeFileObj load(String kripkeFilepath, ReadableByteChannel channel) throws IOException {
+        Parse parse = new Parse(kripkeFilepath);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        while (channel.read(buffer) != -1) {
+            buffer.flip();
+            int lineStart = parse.lines(buffer, 0, buffer.limit());
+            // keep the unfinished line at the start of the buffer, and make the buffer bigger if the line fills all of it
+            buffer.position(lineStart);
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                ByteBuffer biggerBuffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                biggerBuffer.put(buffer);
+                buffer = biggerBuffer;
+            }
+        }
+        buffer.flip();
+        parse.lastLine(buffer, 0, buffer.limit());
+        return parse.finish();
+    }
+
+    /**
+     * The state of one load: the {@link KripkeFileObj} being filled in plus primitive tables of the states, transitions and labels seen so far. The states are referred to by their position on the states line until finish turns the tables into the {@link Kripke}'s index arrays.
+     */
+    private static class Parse {
+        private final KripkeFileObj kripkeFileObj = new KripkeFileObj();
+
+        /**
+         * Numbers of the states on the states line, by position (a state listed twice is only kept once)
+         */
+        private int[] stateNumbers = new int[16];
+        private int numStates = 0;
+
+        /**
+         * State number to the position of the (first) state with that number
+         */
+        private final LongIntHashMap statesByNumber = new LongIntHashMap();
+
+        /**
+         * Number, from state position and to state position of each transition, in the order they're listed
+         */
+        private int[] transitionNumbers = new int[16];
+        private int[] transitionFroms = new int[16];
+        private int[] transitionTos = new int[16];
+        private int numTransitions = 0;
+
+        /**
+         * (from state number, to state number) pair to the position of the transition between them
+         */
+        private final LongIntHashMap transitionsByStates = new LongIntHashMap();
+
+        /**
+         * Label name to atom id, and the names by atom id. One String per distinct label.
+         */
+        private final Map<String, Integer> atomIds = new HashMap<String, Integer>();
+        private final List<String> atomNames = new ArrayList<String>();
+
+        /**
+         * Atom ids of the labels of each state, by position, or null for a state without a labels line
+         */
+        private int[][] stateLabels = new int[0][];
+
+        /**
+         * Atom ids of the labels on the current labels line
+         */
+        private int[] lineLabels = new int[8];
+
+        /**
+         * Start and end offsets of the tokens of the current line, see split
+         */
+        private int[] tokenStarts = new int[8];
+        private int[] tokenEnds = new int[8];
+
+        /**
+         * True if the last byte seen was a \r, so a \n right after it doesn't end another line
+         */
+        private boolean afterCarriageReturn = false;
+
+        private boolean parsedKripkeLabelsLine = false;
+
+        /**
+         * Positions of the states on the init lines, or null if there's no init line
+         */
+        private int[] initialStates = null;
+        private int numInitialStates = 0;
+
+        Parse(String kripkeFilepath) {
+            kripkeFileObj.setKripkeFilepath(kripkeFilepath);
+            kripkeFileObj.setLineNum(1);
+        }
+
+        int getLineNum() {
+            return kripkeFileObj.getLineNum();
+        }
+
+        /**
+         * Parses every complete line (ending in \n, \r or \r\n) in buf from start to end
+         * @return the offset where the first unfinished line starts (end if there's none)
+         */
+        int lines(ByteBuffer buf, int start, int end) throws IOException {
+            int lineStart = start;
+            for (int i = start; i < end; i++) {
+                byte b = buf.get(i);
+                if (b == '\n' && afterCarriageReturn) {
+                    afterCarriageReturn = false; // second half of a \r\n
+                    lineStart = i + 1;
+                    continue;
+                }
+                afterCarriageReturn = b == '\r';
+                if (b == '\n' || b == '\r') {
+                    line(buf, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            return lineStart;
+        }
+
+        /**
+         * Parses the last line of the file, which has no line break after it
+         */
+        void lastLine(ByteBuffer buf, int start, int end) throws IOException {
+            if (start < end) { line(buf, start, end); }
+        }
+
+        private void line(ByteBuffer buf, int start, int end) throws IOException {
+            start = trimStart(buf, start, end);
+            end = trimEnd(buf, start, end);
+            // first line should always be state line
+            if (kripkeFileObj.getLineNum() == 1) {
+                if (end - start >= 3 && buf.get(start) == (byte) 0xEF && buf.get(start + 1) == (byte) 0xBB && buf.get(start + 2) == (byte) 0xBF) { // byte order mark
+                    start = trimStart(buf, start + 3, end);
+                }
+                parseStatesLine(buf, start, end);
+            }
+            // after first line, if it starts with a "t", it's a transition line
+            else if (start < end && buf.get(start) == 't') {
+                if (kripkeFileObj.getErrorMessage() == null) {
+                    parseTransitionLine(buf, start, end);
+                }
+            }
+            // and if it starts with an s it's a labels line
+            else if (start < end && buf.get(start) == 's') {
+                parseLabelsLine(buf, start, end);
+                parsedKripkeLabelsLine = true;
+            }
+            // and if it starts with an i it's the initial states line
+            else if (start < end && buf.get(start) == 'i') {
+                parseInitialStatesLine(buf, start, end);
+            }
+            kripkeFileObj.setLineNum(kripkeFileObj.getLineNum() + 1);
+        }
+
+        KripkeFileObj finish() {
+            if (!parsedKripkeLabelsLine) {
+                kripkeFileObj.setErrorMessage(kripkeFileObj.getKripkeFilepath() + ": Syntax error on line " + kripkeFileObj.getLineNum() + ": no labels line found (a label line example could be: \"s1 : p;\").");
+            }
+            int n = numStates;
+
+            // dense indices in ascending order of state number
+            long[] numbersAndPositions = new long[n];
+            for (int position = 0; position < n; position++) {
+                numbersAndPositions[position] = ((long) stateNumbers[position] << 32) | position;
+            }
+            Arrays.sort(numbersAndPositions);
+            int[] sortedNumbers = new int[n];
+            int[] indexOf = new int[n];
+            for (int i = 0; i < n; i++) {
+                sortedNumbers[i] = (int) (numbersAndPositions[i] >> 32);
+                indexOf[(int) numbersAndPositions[i]] = i;
+            }
+
+            // CSR arrays: the transitions are bucketed by from state and then (stably) by to state, which sorts every state's predecessors, and bucketing that order by from state again sorts every state's successors
+            int[] succOffsets = new int[n + 1];
+            int[] predOffsets = new int[n + 1];
+            for (int k = 0; k < numTransitions; k++) {
+                succOffsets[indexOf[transitionFroms[k]] + 1]++;
+                predOffsets[indexOf[transitionTos[k]] + 1]++;
+            }
+            for (int i = 0; i < n; i++) {
+                succOffsets[i + 1] += succOffsets[i];
+                predOffsets[i + 1] += predOffsets[i];
+            }
+            int[] byFrom = new int[numTransitions];
+            int[] fill = Arrays.copyOf(succOffsets, n);
+            for (int k = 0; k < numTransitions; k++) {
+                byFrom[fill[indexOf[transitionFroms[k]]]++] = k;
+            }
+            int[] byTo = new int[numTransitions];
+            int[] predSources = new int[numTransitions];
+            fill = Arrays.copyOf(predOffsets, n);
+            for (int k : byFrom) {
+                int p = fill[indexOf[transitionTos[k]]]++;
+                byTo[p] = k;
+                predSources[p] = indexOf[transitionFroms[k]];
+            }
+            int[] succTargets = new int[numTransitions];
+            int[] numbers = new int[numTransitions];
+            fill = Arrays.copyOf(succOffsets, n);
+            for (int k : byTo) {
+                int s = fill[indexOf[transitionFroms[k]]]++;
+                succTargets[s] = indexOf[transitionTos[k]];
+                numbers[s] = transitionNumbers[k];
+            }
+
+            // one bitset per atom that some state has, numbered in order of first use
+            int[] newAtomIds = new int[atomNames.size()];
+            Arrays.fill(newAtomIds, -1);
+            List<String> usedAtomNames = new ArrayList<String>();
+            List<long[]> atomWords = new ArrayList<long[]>();
+            for (int position = 0; position < n; position++) {
+                if (stateLabels[position] == null) { continue; }
+                int i = indexOf[position];
+                for (int atomId : stateLabels[position]) {
+                    if (newAtomIds[atomId] == -1) {
+                        newAtomIds[atomId] = usedAtomNames.size();
+                        usedAtomNames.add(atomNames.get(atomId));
+                        atomWords.add(new long[(n + 63) >>> 6]);
+                    }
+                    atomWords.get(newAtomIds[atomId])[i >>> 6] |= 1L << i;
+                }
+            }
+
+            Kripke kripke = new Kripke(sortedNumbers, succOffsets, succTargets, predOffsets, predSources, usedAtomNames.toArray(new String[0]), atomWords.toArray(new long[0][]), numbers);
+            if (initialStates != null) {
+                StateSet initial = kripke.emptySet();
+                for (int k = 0; k < numInitialStates; k++) {
+                    initial.add(indexOf[initialStates[k]]);
+                }
+                Kripke reachable = kripke.reachablePart(initial);
+                StateSet reachableInitial = reachable.emptySet();
+                for (int i = initial.nextSetBit(0); i >= 0; i = initial.nextSetBit(i + 1)) {
+                    reachableInitial.add(reachable.indexOfNumber(kripke.getStateNumber(i)));
+                }
+                kripke = reachable;
+                kripkeFileObj.setInitialStates(reachableInitial);
+            }
+            kripkeFileObj.setKripke(kripke);
+            return kripkeFileObj;
+        }
+
+        /**
+         * Parses the states line, like "s1, s2, s3, s4;" where the states are separated by a comma and a space and the last state is followed by a semicolon
+         */
+        private void parseStatesLine(ByteBuffer buf, int start, int end) {
+            int numTokens = split(buf, start, end, (byte) ',');
+            for (int i = 0; i < numTokens; i++) {
+                int stateStart = trimStart(buf, tokenStarts[i], tokenEnds[i]);
+                int number = number(buf, stateStart, trimEnd(buf, stateStart, tokenEnds[i]), ";s");
+                if (statesByNumber.get(number) >= 0) {
+                    kripkeFileObj.setErrorMessage(kripkeFileObj.getKripkeFilepath() + ": Syntax error on line 1: duplicate state \"s" + number + "\" found.");
+                    continue;
+                }
+                if (numStates == stateNumbers.length) { stateNumbers = Arrays.copyOf(stateNumbers, numStates * 2); }
+                statesByNumber.put(number, numStates);
+                stateNumbers[numStates++] = number;
+            }
+            stateLabels = new int[numStates][];
+        }
+
+        /**
+         * Parses a transition line, like "t4 : s4 – s2," which is the transition name and the from and to states of the transition respectively. The spaces matter and the transition line must end in a comma or semicolon.
+         */
+        private void parseTransitionLine(ByteBuffer buf, int start, int end) {
+            int numTokens = split(buf, start, end, (byte) ' '); // ie, ["t1",":","s1","-","s2,"]
+            if (numTokens > 1 && !(tokenEnds[1] - tokenStarts[1] == 1 && buf.get(tokenStarts[1]) == ':')) {
+                error("no colon found in transition line (a correct transition line example could be: \"t1 : s1 – s2;\").");
+                return;
+            }
+            if (numTokens < 5) {
+                error("no destination state found in transition line (a correct transition line example could be: \"t1 : s1 – s2;\").");
+                return;
+            }
+            int transitionNum = number(buf, tokenStarts[0], tokenEnds[0], "t");
+            int fromNum = number(buf, tokenStarts[2], tokenEnds[2], "s");
+            int toNum = number(buf, tokenStarts[4], tokenEnds[4], ",;s");
+            int from = statesByNumber.get(fromNum);
+            int to = statesByNumber.get(toNum);
+            if (from < 0) { error("transition from state (\"" + string(buf, tokenStarts[2], tokenEnds[2], "") + "\") not found in kripke states."); }
+            if (to < 0) { error("transition to state (\"" + string(buf, tokenStarts[4], tokenEnds[4], ",;") + "\") not found in kripke states."); }
+            if (from < 0 || to < 0) { return; }
+            long pair = ((long) fromNum << 32) | (toNum & 0xFFFFFFFFL);
+            int existing = transitionsByStates.get(pair);
+            if (existing >= 0) {
+                error("duplicate transition found (\"t" + transitionNumbers[existing] + " : s" + fromNum + " - s" + toNum + "\" and \"t" + transitionNum + " : s" + fromNum + " - s" + toNum + "\").");
+                return;
+            }
+            if (numTransitions == transitionNumbers.length) {
+                transitionNumbers = Arrays.copyOf(transitionNumbers, numTransitions * 2);
+                transitionFroms = Arrays.copyOf(transitionFroms, numTransitions * 2);
+                transitionTos = Arrays.copyOf(transitionTos, numTransitions * 2);
+            }
+            transitionsByStates.put(pair, numTransitions);
+            transitionNumbers[numTransitions] = transitionNum;
+            transitionFroms[numTransitions] = from;
+            transitionTos[numTransitions] = to;
+            numTransitions++;
+        }
+
+        /**
+         * Parses a labels line, like "s2 : q t r," (labels are separated by a space, the line ends in a comma or a semicolon if it's the last line). A state without labels is like "s3 : ,".
+         */
+        private void parseLabelsLine(ByteBuffer buf, int start, int end) {
+            int numTokens = split(buf, start, end, (byte) ' ');
+            int state = statesByNumber.get(number(buf, tokenStarts[0], tokenEnds[0], ",s"));
+            if (state < 0) { error("state \"" + string(buf, tokenStarts[0], tokenEnds[0], ",") + "\" not found in kripke states."); }
+            int numLabels = 0;
+            nextLabel:
+            for (int i = 2; i < numTokens; i++) { // skip state name and colon and start at labels
+                String label = string(buf, tokenStarts[i], tokenEnds[i], ",;");
+                Integer atomId = atomIds.get(label);
+                if (atomId == null) {
+                    atomId = atomNames.size();
+                    atomIds.put(label, atomId);
+                    atomNames.add(label);
+                }
+                for (int k = 0; k < numLabels; k++) {
+                    if (lineLabels[k] == atomId) {
+                        error("label \"" + label + "\" already exists in state \"" + string(buf, tokenStarts[0], tokenEnds[0], ",") + "\".");
+                        continue nextLabel;
+                    }
+                }
+                if (numLabels == lineLabels.length) { lineLabels = Arrays.copyOf(lineLabels, numLabels * 2); }
+                lineLabels[numLabels++] = atomId;
+            }
+            if (state >= 0) {
+                stateLabels[state] = Arrays.copyOf(lineLabels, numLabels);
+            }
+        }
+
+        /**
+         * Parses an initial states line, like "init : s1, s3;" where the states are separated by a comma and a space and the last state is followed by a semicolon
+         */
+        private void parseInitialStatesLine(ByteBuffer buf, int start, int end) {
+            int colon = start;
+            while (colon < end && buf.get(colon) != ':') { colon++; }
+            if (colon == end || !string(buf, start, colon, "").trim().equals("init")) {
+                error("initial states line must start with \"init :\" (a correct initial states line example could be: \"init : s1, s2;\").");
+                return;
+            }
+            if (initialStates == null) { initialStates = new int[8]; }
+            int numTokens = split(buf, colon + 1, end, (byte) ',');
+            for (int i = 0; i < numTokens; i++) {
+                int stateStart = trimStart(buf, tokenStarts[i], tokenEnds[i]);
+                int stateEnd = trimEnd(buf, stateStart, tokenEnds[i]);
+                if (stateStart == stateEnd) { continue; }
+                int state = statesByNumber.get(number(buf, stateStart, stateEnd, ";s"));
+                if (state < 0) {
+                    error("initial state \"" + string(buf, stateStart, stateEnd, ";") + "\" not found in kripke states.");
+                } else {
+                    if (numInitialStates == initialStates.length) { initialStates = Arrays.copyOf(initialStates, numInitialStates * 2); }
+                    initialStates[numInitialStates++] = state;
+                }
+            }
+        }
+
+        private void error(String message) {
+            kripkeFileObj.setErrorMessage(kripkeFileObj.getKripkeFilepath() + ": Syntax error on line " + kripkeFileObj.getLineNum() + ": " + message);
+        }
+
+        /**
+         * Splits buf from start to end into tokens at each separator, the same way String.split(separator, 0) does (ie, two separators in a row make an empty token and empty tokens at the end are dropped). The tokens go in tokenStarts and tokenEnds.
+         * @return the number of tokens
+         */
+        private int split(ByteBuffer buf, int start, int end, byte separator) {
+            int numTokens = 0;
+            int tokenStart = start;
+            for (int i = start; i <= end; i++) {
+                if (i == end || buf.get(i) == separator) {
+                    if (numTokens == tokenStarts.length) {
+                        tokenStarts = Arrays.copyOf(tokenStarts, numTokens * 2);
+                        tokenEnds = Arrays.copyOf(tokenEnds, numTokens * 2);
+                    }
+                    tokenStarts[numTokens] = tokenStart;
+                    tokenEnds[numTokens] = i;
+                    numTokens++;
+                    tokenStart = i + 1;
+                }
+            }
+            if (numTokens == 1) { return 1; } // no separator, the whole line is the token even if it's empty
+            while (numTokens > 0 && tokenStarts[numTokens - 1] == tokenEnds[numTokens - 1]) { numTokens--; }
+            return numTokens;
+        }
+
+        /**
+         * Reads a number from a token, leaving out the ignored characters (ie, 12 from "s12," with ignored ",s"). Reads the digits straight from the bytes. Anything else (a sign, another character, a number too big for an int) goes through parseInt on a String, so it's read or rejected the same way the String version did it.
+         */
+        private static int number(ByteBuffer buf, int start, int end, String ignored) {
+            int value = 0;
+            int digits = 0;
+            for (int i = start; i < end; i++) {
+                byte b = buf.get(i);
+                if (b >= '0' && b <= '9' && digits < 9) {
+                    value = value * 10 + (b - '0');
+                    digits++;
+                } else if (b < 0 || ignored.indexOf(b) < 0) {
+                    return parseInt(string(buf, start, end, ignored));
+                }
+            }
+            if (digits == 0) { return parseInt(string(buf, start, end, ignored)); }
+            return value;
+        }
+
+        /**
+         * @return the bytes from start to end as a String (UTF-8), leaving out the removed characters
+         */
+        private static String string(ByteBuffer buf, int start, int end, String removed) {
+            byte[] bytes = new byte[end - start];
+            int length = 0;
+            for (int i = start; i < end; i++) {
+                byte b = buf.get(i);
+                if (b < 0 || removed.indexOf(b) < 0) { bytes[length++] = b; }
+            }
+            return new String(bytes, 0, length, UTF_8);
+        }
+
+        private static int trimStart(ByteBuffer buf, int start, int end) {
+            while (start < end && (buf.get(start) & 0xFF) <= ' ') { start++; }
+            return start;
+        }
+
+        private static int trimEnd(ByteBuffer buf, int start, int end) {
+            while (end > start && (buf.get(end - 1) & 0xFF) <= ' ') { end--; }
+            return end;
+        }
+    }
+
+    /**
+     * Open addressing (linear probing) hash table from primitive long keys to non negative ints, so looking up a state number or a (from, to) pair doesn't box it
+     */
+    private static class LongIntHashMap {
+        private long[] keys = new long[16];
+        private int[] values = new int[16];  // value + 1, 0 for an empty slot
+        private int size;
+
+        /**
+         * @return the value of the key, or -1 if it isn't in the table
+         */
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); values[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) { return values[i] - 1; }
+            }
+            return -1;
+        }
+
+        /**
+         * Adds a key which isn't in the table yet
+         */
+        void put(long key, int value) {
+            if (2 * (size + 1) > keys.length) { grow(); }
+            insert(keys, values, key, value + 1);
+            size++;
+        }
+
+        private void grow() {
+            long[] newKeys = new long[keys.length * 2];
+            int[] newValues = new int[values.length * 2];
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != 0) { insert(newKeys, newValues, keys[i], values[i]); }
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+
+        private static void insert(long[] keys, int[] values, long key, int storedValue) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (values[i] != 0) { i = (i + 1) & mask; }
+            keys[i] = key;
+            values[i] = storedValue;
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package modelCheckCTL.controller.types.kripke;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Loads each kripke file once and hands out the same (frozen, see {@link Kripke#freeze()}) {@link KripkeFileObj} and {@link Kripke} to everyone who asks for that file afterwards, so validating a model, checking a state name and model checking several formulas don't each parse the file again.
+ *
+ * Entries are keyed by the kripke filepath and remember a fingerprint of the file they were loaded from: the last modified time and length for files on disk, or a SHA-256 hash of the content for other resources (ie, files in a jar). If the fingerprint changed since the file was loaded, the file is loaded again.
+ * The cache is bounded by the estimated heap size of the Kripkes in it (see {@link Kripke#estimateMemorySize()}): once the total is over the limit, the least recently used entries are dropped. The most recently loaded entry is always kept, even if it's bigger than the limit by itself.
+ * Files are found with the class loader first, same as the rest of the program (ie, "Model 1.txt" is in /resources), and if the class loader doesn't have them, as a filesystem path (ie, /data/models/big.txt), relative to the working directory if it isn't absolute. The actual parsing is done by the {@link Loader} passed to the constructor.
+ * Safe to use from several threads. Files are loaded outside of the lock, so two threads asking for the same new file at the same time may both load it (the first one's result is kept).
+ */
+public class KripkeRepository {
+
+    /**
+     * Parses a kripke file. Errors in the file are reported through {@link KripkeFileObj#getErrorMessage()}, same as a plain parse, and are cached along with the rest.
+     */
+    public interface Loader {
+        /**
+         * Parses a kripke file which isn't a file on disk (ie, a file in a jar)
+         */
+        KripkeFileObj load(String kripkeFilepath, InputStream inputStream) throws IOException;
+
+        /**
+         * Parses a kripke file on disk, so the loader can read the file directly (ie, memory map it)
+         */
+        KripkeFileObj load(String kripkeFilepath, File file) throws IOException;
+    }
+
+    /**
+     * Default cache limit: a quarter of the maximum heap
+     */
+    public static final long DEFAULT_MAX_BYTES = Runtime.getRuntime().maxMemory() / 4;
+
+    private final Loader loader;
+
+    private final ClassLoader classLoader;
+
+    /**
+     * Maximum total estimated size of the cached Kripkes in bytes
+     */
+    private final long maxBytes;
+
+    /**
+     * The cached files in least recently used order. Only used while holding its lock.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    /**
+     * Total estimated size of the cached Kripkes in bytes. Guarded by entries' lock.
+     */
+    private long totalBytes;
+
+    /**
+     * A cached file
+     */
+    private static class Entry {
+        final String fingerprint;
+        final KripkeFileObj kripkeFileObj;
+        final long bytes;
+
+        Entry(String fingerprint, KripkeFileObj kripkeFileObj, long bytes) {
+            this.fingerprint = fingerprint;
+            this.kripkeFileObj = kripkeFileObj;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Creates a repository with the default cache limit (see DEFAULT_MAX_BYTES)
+     * @param loader {@link Loader} which parses the kripke files
+     * @param classLoader ClassLoader the kripke files are found with
+     */
+    public KripkeRepository(Loader loader, ClassLoader classLoader) {
+        this(loader, classLoader, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param loader {@link Loader} which parses the kripke files
+     * @param classLoader ClassLoader the kripke files are found with
+     * @param maxBytes maximum total estimated size of the cached Kripkes in bytes
+     */
+    public KripkeRepository(Loader loader, ClassLoader classLoader, long maxBytes) {
+        if (loader == null || classLoader == null) { throw new NullPointerException("A param to KripkeRepository constructor is null"); }
+        if (maxBytes < 0) { throw new IllegalArgumentException("maxBytes in KripkeRepository constructor is negative"); }
+        this.loader = loader;
+        this.classLoader = classLoader;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets a kripke file, loading it only if it isn't cached yet or changed since it was loaded
+     * @param kripkeFilepath {@link String} of the file/filepath of the kripke file. Will be like kripke.txt if the file is in /resources or like end-to-end-tests/kripe.txt if in a subfolder of /resources, or a filesystem path.
+     * @return the shared {@link KripkeFileObj} of the file. Its {@link Kripke} is frozen.
+     * @throws IOException
+     */
+    public KripkeFileObj get(String kripkeFilepath) throws IOException {
+        if (kripkeFilepath == null) { throw new NullPointerException("kripkeFilepath is null in KripkeRepository get call"); }
+        URL url = classLoader.getResource(kripkeFilepath);
+        File file = url != null ? toFile(url) : new File(kripkeFilepath);
+        if (url == null && !file.isFile()) { throw new FileNotFoundException("kripke file not found! " + kripkeFilepath); }
+
+        // files on disk are fingerprinted without reading them; anything else is read and hashed, and the bytes are reused for the load
+        byte[] content = null;
+        String fingerprint;
+        if (file != null) {
+            fingerprint = "file:" + file.lastModified() + ":" + file.length();
+        } else {
+            content = readAll(url);
+            fingerprint = "sha256:" + sha256(content);
+        }
+
+        synchronized (entries) {
+            Entry entry = entries.get(kripkeFilepath);
+            if (entry != null && entry.fingerprint.equals(fingerprint)) {
+                return entry.kripkeFileObj;
+            }
+        }
+
+        KripkeFileObj kripkeFileObj;
+        if (file != null) {
+            kripkeFileObj = loader.load(kripkeFilepath, file);
+        } else {
+            try (InputStream inputStream = new ByteArrayInputStream(content)) {
+                kripkeFileObj = loader.load(kripkeFilepath, inputStream);
+            }
+        }
+        kripkeFileObj.getKripke().freeze();
+        Entry loaded = new Entry(fingerprint, kripkeFileObj, kripkeFileObj.getKripke().estimateMemorySize());
+
+        synchronized (entries) {
+            Entry existing = entries.get(kripkeFilepath);
+            if (existing != null && existing.fingerprint.equals(fingerprint)) {
+                return existing.kripkeFileObj; // another thread loaded it first
+            }
+            if (existing != null) {
+                entries.remove(kripkeFilepath);
+                totalBytes -= existing.bytes;
+            }
+            entries.put(kripkeFilepath, loaded);
+            totalBytes += loaded.bytes;
+            evict();
+        }
+        return kripkeFileObj;
+    }
+
+    /**
+     * Drops a file from the cache, so the next get loads it again
+     * @param kripkeFilepath {@link String} of the file/filepath of the kripke file
+     */
+    public void invalidate(String kripkeFilepath) {
+        synchronized (entries) {
+            Entry entry = entries.remove(kripkeFilepath);
+            if (entry != null) { totalBytes -= entry.bytes; }
+        }
+    }
+
+    /**
+     * Drops every file from the cache
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            totalBytes = 0;
+        }
+    }
+
+    /**
+     * @return number of cached files
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return total estimated size of the cached Kripkes in bytes
+     */
+    public long getTotalBytes() {
+        synchronized (entries) {
+            return totalBytes;
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Drops least recently used entries until the cache is within maxBytes, always keeping the most recently used one. Must be called while holding entries' lock.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && entries.size() > 1 && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            totalBytes -= eldest.bytes;
+        }
+    }
+
+    /**
+     * @return the file the URL points to, or null if it isn't a file on disk
+     */
+    private static File toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) { return null; }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static byte[] readAll(URL url) throws IOException {
+        try (InputStream inputStream = url.openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // every Java platform has SHA-256
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package modelCheckCTL.controller.types.kripke;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Compact binary snapshot of a {@link Kripke}, so a big model which was parsed once from its text file can be loaded again without parsing it. A snapshot holds the Kripke's index arrays as they are in memory, so loading one is just memory mapping the file and bulk copying each array out of it (no per-element decoding), and the {@link State} and {@link Transition} objects are only made if something asks for them.
+ *
+ * The format (all numbers little endian):
+ * magic "KSNP", int format version (FORMAT_VERSION), int number of states n, int number of transitions t, int number of atoms a, int 0 (reserved),
+ * the state index table (int[n], the state numbers by dense index),
+ * the forward CSR arrays (int[n + 1] offsets, int[t] targets) and the reverse CSR arrays (int[n + 1] offsets, int[t] sources),
+ * the atom dictionary (for each atom by id: int byte length and the UTF-8 bytes of its name), zero padded so the bitsets start at a multiple of 8 bytes,
+ * and the label bitsets (for each atom by id: long[(n + 63) / 64], see {@link StateSet}).
+ *
+ * Snapshot files end in .ksnap and are made from a kripke text file with the -c command line option (ie, -k model.txt -c model.ksnap). The {@link KripkeLoader} recognizes a snapshot by its magic, so a .ksnap file can be used with -k anywhere a kripke text file can.
+ */
+public class KripkeSnapshot {
+
+    /**
+     * First 4 bytes of every snapshot file ("KSNP")
+     */
+    static final int MAGIC = 0x504E534B;
+
+    /**
+     * Version of the format written by save. Bumped whenever the format changes, load rejects other versions.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * Size of the header in bytes
+     */
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * Maximum number of bytes mapped or buffered at a time (a single mapping can't be over 2 GB)
+     */
+    private static final int CHUNK_SIZE = 1 << 30;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private KripkeSnapshot() { }
+
+    /**
+     * @param firstBytes at least the first 4 bytes of a file, little endian
+     * @return true if the file is a snapshot
+     */
+    static boolean isSnapshot(ByteBuffer firstBytes) {
+        return firstBytes.remaining() >= 4 && firstBytes.order(ByteOrder.LITTLE_ENDIAN).getInt(firstBytes.position()) == MAGIC;
+    }
+
+    /**
+     * Writes a snapshot of a Kripke to a file, replacing the file if it exists
+     * @param kripke {@link Kripke} to save
+     * @param file {@link File} to write the snapshot to
+     * @throws IOException
+     */
+    public static void save(Kripke kripke, File file) throws IOException {
+        if (kripke == null || file == null) { throw new NullPointerException("A param to KripkeSnapshot save is null"); }
+        int n = kripke.getNumStates();
+        int numAtoms = kripke.getNumAtoms();
+        int[] stateNumbers = new int[n];
+        for (int i = 0; i < n; i++) {
+            stateNumbers[i] = kripke.getStateNumber(i);
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(0);
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(n).putInt(kripke.getNumTransitions()).putInt(numAtoms).putInt(0);
+            writeInts(channel, buffer, stateNumbers);
+            writeInts(channel, buffer, kripke.getSuccOffsets());
+            writeInts(channel, buffer, kripke.getSuccTargets());
+            writeInts(channel, buffer, kripke.getPredOffsets());
+            writeInts(channel, buffer, kripke.getPredSources());
+            long position = HEADER_SIZE + 4L * n + 2 * 4L * (n + 1) + 2 * 4L * kripke.getNumTransitions();
+            for (int atomId = 0; atomId < numAtoms; atomId++) {
+                byte[] name = kripke.getAtomName(atomId).getBytes(UTF_8);
+                if (buffer.remaining() < 4 + name.length) { flush(channel, buffer); }
+                if (buffer.remaining() < 4 + name.length) { throw new IOException("atom name is too long for a snapshot: " + kripke.getAtomName(atomId)); }
+                buffer.putInt(name.length).put(name);
+                position += 4 + name.length;
+            }
+            for (; position % 8 != 0; position++) {
+                if (!buffer.hasRemaining()) { flush(channel, buffer); }
+                buffer.put((byte) 0);
+            }
+            for (int atomId = 0; atomId < numAtoms; atomId++) {
+                writeLongs(channel, buffer, kripke.getAtomStates(atomId).words());
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Loads a snapshot by memory mapping it
+     * @param kripkeFilepath {@link String} of the snapshot file (used in error messages)
+     * @param channel {@link FileChannel} of the snapshot file, not closed
+     * @return the {@link Kripke}
+     * @throws IOException if the file isn't a snapshot of a version this program can read or is cut off
+     */
+    static Kripke load(final String kripkeFilepath, final FileChannel channel) throws IOException {
+        return load(kripkeFilepath, new Source() {
+            @Override
+            public ByteBuffer get(long position, int length) throws IOException {
+                return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            }
+
+            @Override
+            public long size() throws IOException {
+                return channel.size();
+            }
+        });
+    }
+
+    /**
+     * Loads a snapshot which is already in memory (ie, read from a file in a jar)
+     * @param kripkeFilepath {@link String} of the snapshot file (used in error messages)
+     * @param bytes {@link ByteBuffer} with the whole snapshot from its position to its limit
+     * @return the {@link Kripke}
+     * @throws IOException if the bytes aren't a snapshot of a version this program can read or are cut off
+     */
+    static Kripke load(String kripkeFilepath, final ByteBuffer bytes) throws IOException {
+        return load(kripkeFilepath, new Source() {
+            @Override
+            public ByteBuffer get(long position, int length) {
+                ByteBuffer slice = bytes.duplicate();
+                slice.position(bytes.position() + (int) position);
+                slice.limit(slice.position() + length);
+                return slice.slice();
+            }
+
+            @Override
+            public long size() {
+                return bytes.remaining();
+            }
+        });
+    }
+
+    /**
+     * Where a snapshot is loaded from: a memory mapped file or bytes in memory
+     */
+    private interface Source {
+        ByteBuffer get(long position, int length) throws IOException;
+
+        long size() throws IOException;
+    }
+
+    private static Kripke load(String kripkeFilepath, Source source) throws IOException {
+        long size = source.size();
+        if (size < HEADER_SIZE) { throw new IOException(kripkeFilepath + ": not a kripke snapshot (too short)"); }
+        ByteBuffer header = source.get(0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt() != MAGIC) { throw new IOException(kripkeFilepath + ": not a kripke snapshot"); }
+        int version = header.getInt();
+        if (version != FORMAT_VERSION) { throw new IOException(kripkeFilepath + ": kripke snapshot format version " + version + " is not supported (this program reads version " + FORMAT_VERSION + ")"); }
+        int n = header.getInt();
+        int t = header.getInt();
+        int numAtoms = header.getInt();
+        if (n < 0 || t < 0 || numAtoms < 0) { throw new IOException(kripkeFilepath + ": kripke snapshot header is corrupt"); }
+
+        long position = HEADER_SIZE;
+        long arraysSize = 4L * n + 2 * 4L * (n + 1) + 2 * 4L * t;
+        if (position + arraysSize > size) { throw new IOException(kripkeFilepath + ": kripke snapshot is cut off"); }
+        int[] stateNumbers = readInts(source, position, n);
+        position += 4L * n;
+        int[] succOffsets = readInts(source, position, n + 1);
+        position += 4L * (n + 1);
+        int[] succTargets = readInts(source, position, t);
+        position += 4L * t;
+        int[] predOffsets = readInts(source, position, n + 1);
+        position += 4L * (n + 1);
+        int[] predSources = readInts(source, position, t);
+        position += 4L * t;
+        if (succOffsets[0] != 0 || succOffsets[n] != t || predOffsets[0] != 0 || predOffsets[n] != t) { throw new IOException(kripkeFilepath + ": kripke snapshot transitions are corrupt"); }
+
+        String[] atomNames = new String[numAtoms];
+        for (int atomId = 0; atomId < numAtoms; atomId++) {
+            if (position + 4 > size) { throw new IOException(kripkeFilepath + ": kripke snapshot is cut off"); }
+            int length = source.get(position, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+            position += 4;
+            if (length < 0 || position + length > size) { throw new IOException(kripkeFilepath + ": kripke snapshot atom dictionary is corrupt"); }
+            byte[] name = new byte[length];
+            source.get(position, length).get(name);
+            atomNames[atomId] = new String(name, UTF_8);
+            position += length;
+        }
+        position = (position + 7) & ~7L;
+
+        int numWords = (n + 63) >>> 6;
+        if (position + 8L * numWords * numAtoms != size) { throw new IOException(kripkeFilepath + ": kripke snapshot is cut off or has extra bytes"); }
+        long[][] atomWords = new long[numAtoms][];
+        for (int atomId = 0; atomId < numAtoms; atomId++) {
+            atomWords[atomId] = readLongs(source, position, numWords);
+            position += 8L * numWords;
+        }
+        return new Kripke(stateNumbers, succOffsets, succTargets, predOffsets, predSources, atomNames, atomWords);
+    }
+
+    /**
+     * Bulk copies count ints starting at position out of the source, at most CHUNK_SIZE bytes at a time
+     */
+    private static int[] readInts(Source source, long position, int count) throws IOException {
+        int[] ints = new int[count];
+        int chunkInts = CHUNK_SIZE / 4;
+        for (int offset = 0; offset < count; offset += chunkInts) {
+            int length = Math.min(chunkInts, count - offset);
+            source.get(position + 4L * offset, 4 * length).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(ints, offset, length);
+        }
+        return ints;
+    }
+
+    /**
+     * Bulk copies count longs starting at position out of the source, at most CHUNK_SIZE bytes at a time
+     */
+    private static long[] readLongs(Source source, long position, int count) throws IOException {
+        long[] longs = new long[count];
+        int chunkLongs = CHUNK_SIZE / 8;
+        for (int offset = 0; offset < count; offset += chunkLongs) {
+            int length = Math.min(chunkLongs, count - offset);
+            source.get(position + 8L * offset, 8 * length).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(longs, offset, length);
+        }
+        return longs;
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] ints) throws IOException {
+        for (int offset = 0; offset < ints.length; ) {
+            if (buffer.remaining() < 4) { flush(channel, buffer); }
+            int length = Math.min(buffer.remaining() / 4, ints.length - offset);
+            buffer.asIntBuffer().put(ints, offset, length);
+            buffer.position(buffer.position() + 4 * length);
+            offset += length;
+        }
+    }
+
+    private static void writeLongs(FileChannel channel, ByteBuffer buffer, long[] longs) throws IOException {
+        for (int offset = 0; offset < longs.length; ) {
+            if (buffer.remaining() < 8) { flush(channel, buffer); }
+            int length = Math.min(buffer.remaining() / 8, longs.length - offset);
+            buffer.asLongBuffer().put(longs, offset, length);
+            buffer.position(buffer.position() + 8 * length);
+            offset += length;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,139 @@
+package modelCheckCTL.controller.types.kripke;
+
+import java.util.Arrays;
+
+/**
+ * The strongly connected components (SCCs) of a {@link Kripke}'s transition graph restricted to a {@link StateSet} of states (ie, the subgraph of the phi states when computing EG phi).
+ * Only transitions between two states of the restriction are part of the subgraph.
+ *
+ * The decomposition is computed with an iterative version of Tarjan's algorithm (with an explicit call stack instead of recursion, so graphs with millions of states can't overflow the Java stack) in O(|S| + |T|).
+ * A component is "nontrivial" if it has more than one state or is a single state with a transition to itself - those are the components an infinite path can stay in forever.
+ * Decompositions are immutable and are cached on the Kripke (see {@link Kripke#getSccDecomposition(StateSet)}).
+ */
+public class SccDecomposition {
+
+    /**
+     * componentOf[i] is the component id (0 to numComponents - 1) of the state with dense index i, or -1 if the state isn't in the restriction
+     */
+    private final int[] componentOf;
+
+    /**
+     * Number of components found
+     */
+    private final int numComponents;
+
+    /**
+     * Read-only {@link StateSet} of the states which are in a nontrivial component
+     */
+    private final StateSet nontrivialStates;
+
+    private SccDecomposition(int[] componentOf, int numComponents, StateSet nontrivialStates) {
+        this.componentOf = componentOf;
+        this.numComponents = numComponents;
+        this.nontrivialStates = nontrivialStates;
+    }
+
+    /**
+     * Decomposes the subgraph of the Kripke restricted to the specified states into its strongly connected components
+     * @param kripke {@link Kripke} whose transition graph is decomposed
+     * @param restriction {@link StateSet} of the states in the subgraph
+     * @return the {@link SccDecomposition} of the subgraph
+     */
+    public static SccDecomposition compute(Kripke kripke, StateSet restriction) {
+        int n = kripke.getNumStates();
+        int[] succOffsets = kripke.getSuccOffsets();
+        int[] succTargets = kripke.getSuccTargets();
+        int[] componentOf = new int[n];
+        int[] index = new int[n];
+        int[] low = new int[n];
+        int[] edgePos = new int[n];
+        int[] sccStack = new int[n];
+        int[] callStack = new int[n];
+        Arrays.fill(componentOf, -1);
+        Arrays.fill(index, -1);
+        StateSet nontrivialStates = StateSet.empty(n);
+        int sccStackSize = 0;
+        int nextIndex = 0;
+        int numComponents = 0;
+
+        for (int root = restriction.nextSetBit(0); root >= 0; root = restriction.nextSetBit(root + 1)) {
+            if (index[root] != -1) { continue; }
+            int callStackSize = 0;
+            index[root] = low[root] = nextIndex++;
+            edgePos[root] = succOffsets[root];
+            sccStack[sccStackSize++] = root;
+            callStack[callStackSize++] = root;
+
+            while (callStackSize > 0) {
+                int v = callStack[callStackSize - 1];
+                if (edgePos[v] < succOffsets[v + 1]) {
+                    // look at v's next transition
+                    int w = succTargets[edgePos[v]++];
+                    if (!restriction.contains(w)) { continue; }
+                    if (index[w] == -1) {
+                        index[w] = low[w] = nextIndex++;
+                        edgePos[w] = succOffsets[w];
+                        sccStack[sccStackSize++] = w;
+                        callStack[callStackSize++] = w;
+                    } else if (componentOf[w] == -1 && index[w] < low[v]) {
+                        // w is still on the SCC stack, so it's in v's component
+                        low[v] = index[w];
+                    }
+                } else {
+                    // all of v's transitions are done, so "return" from v
+                    callStackSize--;
+                    if (low[v] == index[v]) {
+                        int componentSize = 0;
+                        int w;
+                        do {
+                            w = sccStack[--sccStackSize];
+                            componentOf[w] = numComponents;
+                            componentSize++;
+                        } while (w != v);
+                        if (componentSize > 1 || hasSelfLoop(v, succOffsets, succTargets)) {
+                            for (int i = sccStackSize; i < sccStackSize + componentSize; i++) {
+                                nontrivialStates.add(sccStack[i]);
+                            }
+                        }
+                        numComponents++;
+                    }
+                    if (callStackSize > 0) {
+                        int u = callStack[callStackSize - 1];
+                        if (low[v] < low[u]) { low[u] = low[v]; }
+                    }
+                }
+            }
+        }
+        return new SccDecomposition(componentOf, numComponents, nontrivialStates.readOnly());
+    }
+
+    /**
+     * The successors of a state are sorted (see {@link Kripke}), so this is a binary search
+     */
+    private static boolean hasSelfLoop(int v, int[] succOffsets, int[] succTargets) {
+        return Arrays.binarySearch(succTargets, succOffsets[v], succOffsets[v + 1], v) >= 0;
+    }
+
+    /**
+     * @param index dense index of a state
+     * @return the component id of the state, or -1 if the state isn't in the restriction
+     */
+    public int getComponent(int index) {
+        return componentOf[index];
+    }
+
+    /**
+     * @return the number of strongly connected components in the subgraph
+     */
+    public int getNumComponents() {
+        return numComponents;
+    }
+
+    /**
+     * @return read-only {@link StateSet} of the states which are in a nontrivial component (more than one state, or one state with a transition to itself)
+     */
+    public StateSet getNontrivialStates() {
+        return nontrivialStates;
+    }
+
+}
@@ -29,10 +29,17 @@ import static java.lang.Character.isLowerCase;
 public class State implements Comparable<State> {
 
     /**
-     * State's {@link Integer} number in a Kripke structure.
+     * State's int number in a Kripke structure.
      * Note some Kripke implementations will start at s0 and others at s1.
+     * This is a primitive int so state numbers can safely be compared with == (a boxed {@link Integer} compared with == is only equal by value inside the Integer cache, ie below 128).
      */
-    private Integer number;
+    private int number;
+
+    /**
+     * State's dense index (0 to n-1) in the {@link Kripke} it belongs to, assigned by the Kripke when it is built. This is the bit position of the state in a {@link StateSet}.
+     * Is -1 until the state has been added to a Kripke.
+     */
+    private int index = -1;
 
     /**
      * {@link Set} of {@link Character}s representing each label or atomic proposition (ie, p)
@@ -51,11 +58,11 @@ public class State implements Comparable<State> {
     private Set transitions;
 
     /**
-     * Class constructor specifying the transition's {@link Integer} number in a Kripke structure.
+     * Class constructor specifying the state's number in a Kripke structure.
      * Note some implementations of Kripke structures will start at state s0 and others at s1.
      * @param number
      */
-    public State(Integer number) {
+    public State(int number) {
         this.transitions = new HashSet();
         this.labels = new HashSet();
         this.number = number;
@@ -73,8 +80,8 @@ public class State implements Comparable<State> {
         if (transition == null) { throw new NullPointerException("addTransition() argument is null"); }
         if (transition.getFrom() == null) { throw new NullPointerException("addTransition() argument's from state is null"); }
         if (transition.getTo() == null) { throw new NullPointerException("addTransition() argument's to state is null"); }
-        Integer thisStateNum = this.number;
-        Integer fromStateNum = transition.getFrom().getNumber();
+        int thisStateNum = this.number;
+        int fromStateNum = transition.getFrom().getNumber();
         if (thisStateNum != fromStateNum) {
             throw new IOException("Attempting to add transition to a state which has a from state other than the state being added to");
         } else {
@@ -90,10 +97,10 @@ public class State implements Comparable<State> {
      */
     public Boolean hasTransitionTo(State targetState) {
         if (targetState == null) { throw new NullPointerException("hasTransitionTo() argument is null"); }
-        Integer transitionStateNum = targetState.getNumber();
+        int transitionStateNum = targetState.getNumber();
         for (Object transitionObj : this.transitions) {
             modelCheckCTL.controller.types.kripke.Transition thisTransition = (modelCheckCTL.controller.types.kripke.Transition) transitionObj;
-            Integer thisTransitionToNum = thisTransition.getTo().getNumber();
+            int thisTransitionToNum = thisTransition.getTo().getNumber();
             if (thisTransitionToNum == transitionStateNum) {
                 return true;
             }
@@ -158,20 +165,35 @@ public class State implements Comparable<State> {
     }
 
     /**
-     * Gets state's {@link Integer} number in a Kripke structure (ie 1 in state s1).
-     * @return state's {@link Integer} number in a Kripke structure (ie 1 in state s1).
+     * Gets state's number in a Kripke structure (ie 1 in state s1).
+     * @return state's number in a Kripke structure (ie 1 in state s1).
      */
-    public Integer getNumber() {
+    public int getNumber() {
         return number;
     }
 
     /**
-     * Sets state's {@link Integer} number in a Kripke structure (ie 1 in state s1).
+     * Sets state's number in a Kripke structure (ie 1 in state s1).
      */
-    public void setNumber(Integer number) {
+    public void setNumber(int number) {
         this.number = number;
     }
 
+    /**
+     * Gets state's dense index in its {@link Kripke} (the state's bit position in a {@link StateSet}).
+     * @return the dense index, or -1 if the state hasn't been added to a Kripke
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Sets state's dense index in its {@link Kripke}. Only the Kripke should call this.
+     */
+    void setIndex(int index) {
+        this.index = index;
+    }
+
     /**
      * Gets {@link Set} of {@link Character}s representing each label or atomic proposition (ie, p)
      * @return {@link Set} of {@link Character}s representing each label or atomic proposition (ie, p)
@@ -207,7 +229,7 @@ public class State implements Comparable<State> {
      */
     @Override
     public int compareTo(State s) {
-      return getNumber().compareTo(s.getNumber());
+      return Integer.compare(getNumber(), s.getNumber());
     }
 
 }
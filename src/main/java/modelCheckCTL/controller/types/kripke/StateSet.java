@@ -0,0 +1,462 @@
+package modelCheckCTL.controller.types.kripke;
+
+import java.util.Arrays;
+
+/**
+ * A set of {@link State}s represented as a bitset over the dense state indices of a {@link Kripke} (see {@link Kripke#getIndex(State)}).
+ * Bit i is set when the state with index i is in the set. Every set built for one Kripke has the same universe size (the number of states in the Kripke), so the set operations below are just word-by-word bit operations on the backing long array instead of the linear "contains" scans in {@link modelCheckCTL.utils.Utils}.
+ *
+ * The in-place operations (addAll, retainAll, removeAll, complement) modify and return this set. The out-of-place operations (union, intersection, difference, complemented) leave this set alone and return a new one.
+ * Both sets in a binary operation must have the same universe size, otherwise an IllegalArgumentException is thrown.
+ * A set can be made read-only (see {@link #readOnly()}) so it can be shared, ie the per-atom label sets of a {@link Kripke}. The in-place operations throw an UnsupportedOperationException on a read-only set.
+ *
+ * Complements are lazy: a set has a complemented flag, and when it is set the states in the set are the ones whose bits are NOT set. So complement and complemented (the "not" of the model checker, which AX, AG and IMPLIES use too) are O(1) and allocate nothing proportional to the number of states, and every read (contains, nextSetBit, cardinality, the binary operations etc) just flips the bits as it goes.
+ * copy, readOnly and complemented share the bits with the set they are made from (copy on write): a modifiable set whose bits are shared or complemented makes its own plain copy of them the first time it is modified.
+ */
+public class StateSet {
+
+    /**
+     * Number of states in the universe (ie, the number of states in the {@link Kripke} this set belongs to). Valid indices are 0 to size - 1.
+     */
+    private final int size;
+
+    /**
+     * The bitset. Bit (i % 64) of words[i / 64] is set when the state with index i is in the set (is NOT in the set if complemented is true). Bits at and above size in the last word are always zero.
+     */
+    private long[] words;
+
+    /**
+     * True if the set is the complement of words
+     */
+    private boolean complemented;
+
+    /**
+     * True if words may be shared with another set, so they have to be copied before this set modifies them
+     */
+    private boolean sharedWords;
+
+    /**
+     * True if this set may not be modified
+     */
+    private final boolean readOnly;
+
+    /**
+     * Creates an empty set over a universe of the specified number of states
+     * @param size number of states in the universe
+     */
+    public StateSet(int size) {
+        if (size < 0) { throw new IllegalArgumentException("StateSet size is negative"); }
+        this.size = size;
+        this.words = new long[(size + 63) >>> 6];
+        this.readOnly = false;
+    }
+
+    private StateSet(int size, long[] words, boolean complemented, boolean sharedWords, boolean readOnly) {
+        this.size = size;
+        this.words = words;
+        this.complemented = complemented;
+        this.sharedWords = sharedWords;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * @param size number of states in the universe
+     * @return a new empty {@link StateSet}
+     */
+    public static StateSet empty(int size) {
+        return new StateSet(size);
+    }
+
+    /**
+     * @param size number of states in the universe
+     * @return a new {@link StateSet} containing every state in the universe
+     */
+    public static StateSet full(int size) {
+        StateSet full = new StateSet(size);
+        Arrays.fill(full.words, -1L);
+        full.clearUnusedBits();
+        return full;
+    }
+
+    /**
+     * Makes a (modifiable) set which takes over an array of bits without copying it, ie bits filled in directly by the parallel steps of the {@link modelCheckCTL.controller.ctl.checker.Evaluator}. The array must not be used by the caller afterwards.
+     * @param size number of states in the universe
+     * @param words the bits (see words), with (size + 63) / 64 entries. Bits at and above size are cleared.
+     * @return a {@link StateSet} of the states whose bits are set
+     */
+    public static StateSet fromWords(int size, long[] words) {
+        if (size < 0) { throw new IllegalArgumentException("StateSet size is negative"); }
+        if (words.length != (size + 63) >>> 6) { throw new IllegalArgumentException("StateSet words don't match the size"); }
+        StateSet set = new StateSet(size, words, false, false, false);
+        set.clearUnusedBits();
+        return set;
+    }
+
+    /**
+     * Makes a read-only set over existing bits without copying them. Used by {@link KripkeSnapshot} to load the label sets.
+     * @param size number of states in the universe
+     * @param words the bits (see words), with (size + 63) / 64 entries and no bits set at or above size
+     * @return a read-only {@link StateSet}
+     */
+    static StateSet readOnlyOf(int size, long[] words) {
+        if (words.length != (size + 63) >>> 6) { throw new IllegalArgumentException("StateSet words don't match the size"); }
+        return new StateSet(size, words, false, true, true);
+    }
+
+    /**
+     * The bits of this set, not complemented (when the set isn't complemented this is not a copy, so they must not be modified). Used by {@link KripkeSnapshot} to save the label sets.
+     */
+    long[] words() {
+        return complemented ? plainWords() : words;
+    }
+
+    /**
+     * O(1): the copy shares this set's bits until one of the two is modified
+     * @return a new (modifiable) {@link StateSet} with the same states as this one
+     */
+    public StateSet copy() {
+        shareWords();
+        return new StateSet(size, words, complemented, true, false);
+    }
+
+    /**
+     * Makes a read-only view of this set. The view shares this set's bits, and this set copies them before it is modified again, so the view never changes.
+     * @return a read-only {@link StateSet} with the same states as this one
+     */
+    public StateSet readOnly() {
+        if (readOnly) { return this; }
+        shareWords();
+        return new StateSet(size, words, complemented, true, true);
+    }
+
+    /**
+     * @return true if this set may not be modified
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @return number of states in the universe (not the number of states in the set, see {@link #cardinality()})
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @param index dense index of a state
+     * @return true if the state with the specified index is in the set
+     */
+    public boolean contains(int index) {
+        checkIndex(index);
+        return ((words[index >>> 6] & (1L << index)) != 0) != complemented;
+    }
+
+    /**
+     * Adds the state with the specified index to the set
+     * @param index dense index of a state
+     * @return true if the state was not already in the set
+     */
+    public boolean add(int index) {
+        checkIndex(index);
+        prepareWrite();
+        int w = index >>> 6;
+        long bit = 1L << index;
+        if ((words[w] & bit) != 0) { return false; }
+        words[w] |= bit;
+        return true;
+    }
+
+    /**
+     * Removes the state with the specified index from the set
+     * @param index dense index of a state
+     * @return true if the state was in the set
+     */
+    public boolean remove(int index) {
+        checkIndex(index);
+        prepareWrite();
+        int w = index >>> 6;
+        long bit = 1L << index;
+        if ((words[w] & bit) == 0) { return false; }
+        words[w] &= ~bit;
+        return true;
+    }
+
+    /**
+     * @return the number of states in the set
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        return complemented ? size - cardinality : cardinality;
+    }
+
+    /**
+     * @return true if there are no states in the set
+     */
+    public boolean isEmpty() {
+        for (int i = 0; i < words.length; i++) {
+            if (word(i) != 0) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Used for iterating over the set: for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) { ... }
+     * @param fromIndex index to start searching from (inclusive)
+     * @return the index of the first state in the set at or after fromIndex, or -1 if there is none
+     */
+    public int nextSetBit(int fromIndex) {
+        if (fromIndex < 0) { throw new IndexOutOfBoundsException("fromIndex in nextSetBit is negative"); }
+        if (fromIndex >= size) { return -1; }
+        long flip = complemented ? -1L : 0L;
+        int w = fromIndex >>> 6;
+        long word = (words[w] ^ flip) & (-1L << fromIndex);
+        while (true) {
+            if (word != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                return index < size ? index : -1;
+            }
+            if (++w == words.length) { return -1; }
+            word = words[w] ^ flip;
+        }
+    }
+
+
+    // In-place operations
+
+    /**
+     * In-place union. Adds all the states in other to this set.
+     * @param other {@link StateSet} over the same universe
+     * @return this set
+     */
+    public StateSet addAll(StateSet other) {
+        checkSameSize(other);
+        prepareWrite();
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= other.word(i);
+        }
+        return this;
+    }
+
+    /**
+     * In-place intersection. Removes all the states from this set which aren't in other.
+     * @param other {@link StateSet} over the same universe
+     * @return this set
+     */
+    public StateSet retainAll(StateSet other) {
+        checkSameSize(other);
+        prepareWrite();
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= other.word(i);
+        }
+        return this;
+    }
+
+    /**
+     * In-place difference. Removes all the states in other from this set.
+     * @param other {@link StateSet} over the same universe
+     * @return this set
+     */
+    public StateSet removeAll(StateSet other) {
+        checkSameSize(other);
+        prepareWrite();
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= ~other.word(i);
+        }
+        return this;
+    }
+
+    /**
+     * In-place complement. After this call the set contains exactly the states of the universe which were not in it before. O(1): only flips the complemented flag.
+     * @return this set
+     */
+    public StateSet complement() {
+        checkWritable();
+        complemented = !complemented;
+        return this;
+    }
+
+
+    // Out-of-place operations
+
+    /**
+     * @param other {@link StateSet} over the same universe
+     * @return a new {@link StateSet} of the states in this set or other
+     */
+    public StateSet union(StateSet other) {
+        checkSameSize(other);
+        long[] result = new long[words.length];
+        for (int i = 0; i < words.length; i++) {
+            result[i] = word(i) | other.word(i);
+        }
+        return new StateSet(size, result, false, false, false);
+    }
+
+    /**
+     * @param other {@link StateSet} over the same universe
+     * @return a new {@link StateSet} of the states in both this set and other
+     */
+    public StateSet intersection(StateSet other) {
+        checkSameSize(other);
+        long[] result = new long[words.length];
+        for (int i = 0; i < words.length; i++) {
+            result[i] = word(i) & other.word(i);
+        }
+        return new StateSet(size, result, false, false, false);
+    }
+
+    /**
+     * @param other {@link StateSet} over the same universe
+     * @return a new {@link StateSet} of the states in this set which are not in other
+     */
+    public StateSet difference(StateSet other) {
+        checkSameSize(other);
+        long[] result = new long[words.length];
+        for (int i = 0; i < words.length; i++) {
+            result[i] = word(i) & ~other.word(i);
+        }
+        return new StateSet(size, result, false, false, false);
+    }
+
+    /**
+     * @param other {@link StateSet} over the same universe
+     * @return a new {@link StateSet} of the states in exactly one of this set and other
+     */
+    public StateSet symmetricDifference(StateSet other) {
+        checkSameSize(other);
+        long[] result = new long[words.length];
+        for (int i = 0; i < words.length; i++) {
+            result[i] = word(i) ^ other.word(i);
+        }
+        return new StateSet(size, result, false, false, false);
+    }
+
+    /**
+     * O(1): the new set shares this set's bits with the complemented flag flipped (see the class comment)
+     * @return a new (modifiable) {@link StateSet} of the states of the universe which are not in this set
+     */
+    public StateSet complemented() {
+        shareWords();
+        return new StateSet(size, words, !complemented, true, false);
+    }
+
+    /**
+     * @param other {@link StateSet} over the same universe
+     * @return true if every state in this set is also in other
+     */
+    public boolean isSubsetOf(StateSet other) {
+        checkSameSize(other);
+        for (int i = 0; i < words.length; i++) {
+            if ((word(i) & ~other.word(i)) != 0) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Two {@link StateSet}s are equal if they have the same universe size and contain the same state indices
+     * @param o object to compare to
+     * @return true if equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) { return true; }
+        if (!(o instanceof StateSet)) { return false; }
+        StateSet other = (StateSet) o;
+        if (size != other.size) { return false; }
+        if (words == other.words && complemented == other.complemented) { return true; }
+        for (int i = 0; i < words.length; i++) {
+            if (word(i) != other.word(i)) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Same as Arrays.hashCode of the (not complemented) bits, so equal sets have equal hash codes whether or not they are complemented
+     */
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+        for (int i = 0; i < words.length; i++) {
+            long word = word(i);
+            hashCode = 31 * hashCode + (int) (word ^ (word >>> 32));
+        }
+        return 31 * size + hashCode;
+    }
+
+    /**
+     * @return the state indices in the set in a format like "{0, 2, 3}"
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+            if (sb.length() > 1) { sb.append(", "); }
+            sb.append(i);
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * @param i index into words
+     * @return word i of the set's bits with the complemented flag applied (bits at and above size are zero)
+     */
+    private long word(int i) {
+        if (!complemented) { return words[i]; }
+        long word = ~words[i];
+        if (i == words.length - 1 && (size & 63) != 0) { word &= (1L << size) - 1; }
+        return word;
+    }
+
+    /**
+     * Called before the words are shared with another set. A read-only set's words are never modified, so only a modifiable set has to remember to copy them.
+     */
+    private void shareWords() {
+        if (!readOnly) { sharedWords = true; }
+    }
+
+    /**
+     * Called before every in-place modification: makes sure this set is modifiable and owns a plain (not complemented) copy of its bits
+     */
+    private void prepareWrite() {
+        checkWritable();
+        if (sharedWords || complemented) {
+            words = plainWords();
+            complemented = false;
+            sharedWords = false;
+        }
+    }
+
+    /**
+     * @return a new array of the set's bits with the complemented flag applied
+     */
+    private long[] plainWords() {
+        long[] plainWords = new long[words.length];
+        for (int i = 0; i < words.length; i++) {
+            plainWords[i] = word(i);
+        }
+        return plainWords;
+    }
+
+    private void clearUnusedBits() {
+        if (words.length > 0 && (size & 63) != 0) {
+            words[words.length - 1] &= (1L << size) - 1;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) { throw new IndexOutOfBoundsException("state index " + index + " is outside of StateSet of size " + size); }
+    }
+
+    private void checkWritable() {
+        if (readOnly) { throw new UnsupportedOperationException("StateSet is read-only"); }
+    }
+
+    private void checkSameSize(StateSet other) {
+        if (other == null) { throw new NullPointerException("StateSet param is null"); }
+        if (other.size != size) { throw new IllegalArgumentException("StateSets have different sizes (" + size + " and " + other.size + ")"); }
+    }
+
+}
@@ -1,5 +1,6 @@
 package modelCheckCTL.controller.types.misc;
 
+import modelCheckCTL.controller.types.modelCheckRelated.Engine;
 import modelCheckCTL.controller.types.modelCheckRelated.FormulaInputSource;
 
 import java.io.IOException;
@@ -7,6 +8,8 @@ import java.io.IOException;
 import static modelCheckCTL.controller.types.modelCheckRelated.FormulaInputSource.FILE;
 import static modelCheckCTL.controller.types.modelCheckRelated.FormulaInputSource.ARGUMENT;
 import static modelCheckCTL.utils.Utils.isStateName;
+import static modelCheckCTL.utils.Utils.isKripkeFile;
+import static modelCheckCTL.utils.Utils.isKripkeSnapshotFile;
 import static modelCheckCTL.utils.Utils.isTxtFile;
 
 /**
@@ -78,6 +81,41 @@ public class Arguments {
      */
     Integer endToEndTestNum;
 
+    /**
+     * {@link Integer} number of threads to run the end to end tests on (the -j flag). Null if not specified. Set by Options.parseArgs after the Arguments is constructed, since it goes with any of the constructors.
+     */
+    Integer numThreads;
+
+    /**
+     * {@link Integer} number of threads the preE, AX and fixpoint steps of big models are split over (the -p flag). Null if not specified. Set by Options.parseArgs after the Arguments is constructed, same as numThreads.
+     */
+    Integer parallelism;
+
+    /**
+     * {@link Engine} to model check with (the -x flag). Null if not specified. Set by Options.parseArgs after the Arguments is constructed, same as numThreads.
+     */
+    Engine engine;
+
+    /**
+     * {@link Boolean} for whether formulas are checked on the bisimulation quotient of the kripke (the -q flag). Null if not specified. Set by Options.parseArgs after the Arguments is constructed, same as numThreads.
+     */
+    Boolean minimize;
+
+    /**
+     * {@link String} of the initial states (the -i flag), separated by commas (ie, "s1,s3"). Null if not specified. Set by Options.parseArgs after the Arguments is constructed, same as numThreads.
+     */
+    String initialStates;
+
+    /**
+     * Optional .txt {@link String} filename of a batch formula file (the -b flag): one formula per line, optionally with a state to check in front of it (ie, "s1;EXp"). All the formulas are model checked against the one kripke. Null when not in batch mode.
+     */
+    String batchFilename;
+
+    /**
+     * {@link String} filename of the .ksnap snapshot file to convert the kripke text file to (the -c flag, see {@link modelCheckCTL.controller.types.kripke.KripkeSnapshot}). Null when not converting.
+     */
+    String snapshotFilename;
+
     public Arguments(Boolean runEndToEndTests, Integer endToEndTestNum, Boolean runOnlyMicrowave) throws IOException {
         this.runEndToEndTests = runEndToEndTests;
         this.endToEndTestNum = endToEndTestNum;
@@ -100,8 +138,8 @@ public class Arguments {
             throw new NullPointerException("Arguments param is null");
         } else if (kripkeFilename == "" || stateToCheckStr == "" || modelInputStr == "") {
             throw new IOException("Arguments param is empty string");
-        } else if (!isTxtFile(kripkeFilename)) {
-            throw new IOException("kripke filename in Arguments isn't a .txt filename.");
+        } else if (!isKripkeFile(kripkeFilename)) {
+            throw new IOException("kripke filename in Arguments isn't a .txt or .ksnap filename.");
         }
         this.kripkeFilename = kripkeFilename;
         if (!isStateName(stateToCheckStr)) {
@@ -140,8 +178,8 @@ public class Arguments {
             throw new NullPointerException("Arguments param is null");
         } else if (kripkeFilename == "" || modelInputStr == "") {
             throw new IOException("Arguments param is empty string");
-        } else if (!isTxtFile(kripkeFilename)) {
-            throw new IOException("kripke filename in Arguments isn't a .txt filename.");
+        } else if (!isKripkeFile(kripkeFilename)) {
+            throw new IOException("kripke filename in Arguments isn't a .txt or .ksnap filename.");
         }
         this.kripkeFilename = kripkeFilename;
         this.formulaInputSource = formulaInputSource;
@@ -161,6 +199,51 @@ public class Arguments {
         this.runOnlyMicrowave = runOnlyMicrowave;
     }
 
+    /**
+     * Batch mode constructor. Only the kripke file name and the batch formula file name are specified - the formulas and states to check are in the batch file.
+     * @param kripkeFilename {@link String} Filename of .txt file containing the kripke structure. Don't include the full path, just the filename. The file needs to be in the src/main/resources directory.
+     * @param batchFilename {@link String} Filename of .txt file containing the formulas, one per line. The file needs to be in the src/main/resources directory.
+     * @throws IOException
+     */
+    public Arguments(String kripkeFilename, String batchFilename) throws IOException {
+        if (kripkeFilename == null || batchFilename == null) {
+            throw new NullPointerException("Arguments param is null");
+        } else if (kripkeFilename == "" || batchFilename == "") {
+            throw new IOException("Arguments param is empty string");
+        } else if (!isKripkeFile(kripkeFilename)) {
+            throw new IOException("kripke filename in Arguments isn't a .txt or .ksnap filename.");
+        } else if (!isTxtFile(batchFilename)) {
+            throw new IOException("batch filename in Arguments isn't a .txt filename.");
+        }
+        this.kripkeFilename = kripkeFilename;
+        this.batchFilename = batchFilename;
+        this.runEndToEndTests = false;
+        this.runOnlyMicrowave = false;
+    }
+
+    /**
+     * Snapshot conversion arguments (-k <kripke file> -c <snapshot file>): the kripke text file is saved as a {@link modelCheckCTL.controller.types.kripke.KripkeSnapshot} and nothing is model checked.
+     * @param kripkeFilename {@link String} filename of the .txt kripke file
+     * @param snapshotFilename {@link String} filename (or filesystem path) of the .ksnap file to write
+     * @return the {@link Arguments}
+     * @throws IOException
+     */
+    public static Arguments snapshotConversion(String kripkeFilename, String snapshotFilename) throws IOException {
+        if (kripkeFilename == null || snapshotFilename == null) {
+            throw new NullPointerException("Arguments param is null");
+        } else if (kripkeFilename == "" || snapshotFilename == "") {
+            throw new IOException("Arguments param is empty string");
+        } else if (!isTxtFile(kripkeFilename)) {
+            throw new IOException("kripke filename in Arguments isn't a .txt filename.");
+        } else if (!isKripkeSnapshotFile(snapshotFilename)) {
+            throw new IOException("snapshot filename in Arguments isn't a .ksnap filename.");
+        }
+        Arguments arguments = new Arguments(false, null, false);
+        arguments.kripkeFilename = kripkeFilename;
+        arguments.snapshotFilename = snapshotFilename;
+        return arguments;
+    }
+
     public String getFormula() {
         return formula;
     }
@@ -192,4 +275,32 @@ public class Arguments {
     public Boolean getRunOnlyMicrowave() {
         return runOnlyMicrowave;
     }
+
+    public String getBatchFilename() {
+        return batchFilename;
+    }
+
+    public Integer getNumThreads() {
+        return numThreads;
+    }
+
+    public Integer getParallelism() {
+        return parallelism;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public Boolean getMinimize() {
+        return minimize;
+    }
+
+    public String getInitialStates() {
+        return initialStates;
+    }
+
+    public String getSnapshotFilename() {
+        return snapshotFilename;
+    }
 }
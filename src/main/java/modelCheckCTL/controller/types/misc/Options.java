@@ -1,5 +1,6 @@
 package modelCheckCTL.controller.types.misc;
 
+import modelCheckCTL.controller.types.modelCheckRelated.Engine;
 import modelCheckCTL.controller.types.modelCheckRelated.FormulaInputSource;
 import modelCheckCTL.controller.types.misc.TestFiles;
 
@@ -77,6 +78,41 @@ public class Options {
      */
     Boolean runOnlyMicrowave;
 
+    /**
+     * {@link Integer} number of threads the end to end tests are run on (-j). Defaults to the number of available processors.
+     */
+    Integer numThreads;
+
+    /**
+     * {@link Integer} number of threads the preE, AX and fixpoint steps of big models are split over (-p, see Evaluator). Defaults to 1, which computes them on the thread doing the model checking.
+     */
+    Integer parallelism;
+
+    /**
+     * {@link Engine} the formulas are model checked with (-x). Defaults to AUTO, which checks locally when there is a state to check and globally otherwise.
+     */
+    Engine engine;
+
+    /**
+     * {@link Boolean} for whether formulas are checked on the bisimulation quotient of the kripke (-q, see BisimulationQuotient) and the results mapped back to its states. Defaults to false.
+     */
+    Boolean minimize;
+
+    /**
+     * Names of the initial states (-i), ie {"s1", "s3"}. Only the states of the kripke reachable from them are model checked. Null if not specified.
+     */
+    String[] initialStates;
+
+    /**
+     * A {@link String} for the batch formula file (-b), if one was specified. Ie, formulas.txt. Null if not in batch mode.
+     */
+    String batchFilename;
+
+    /**
+     * A {@link String} for the snapshot file (-c) to convert the kripke file to, if one was specified. Ie, model.ksnap. Null if not converting.
+     */
+    String snapshotFilename;
+
 
     /**
      * Empty constructor - for unit testing only
@@ -101,6 +137,13 @@ public class Options {
         this.formulaInputSource = arguments.getFormulaInputSource();
         this.endToEndTests = endToEndTests;
         this.runOnlyMicrowave = arguments.getRunOnlyMicrowave();
+        this.batchFilename = arguments.getBatchFilename();
+        this.snapshotFilename = arguments.getSnapshotFilename();
+        this.numThreads = arguments.getNumThreads() != null ? arguments.getNumThreads() : Runtime.getRuntime().availableProcessors();
+        this.parallelism = arguments.getParallelism() != null ? arguments.getParallelism() : 1;
+        this.engine = arguments.getEngine() != null ? arguments.getEngine() : Engine.AUTO;
+        this.minimize = arguments.getMinimize() != null ? arguments.getMinimize() : false;
+        this.initialStates = arguments.getInitialStates() != null ? arguments.getInitialStates().trim().split("\\s*,\\s*") : null;
 
         if (arguments.getFormulaFilename() != null) {
             this.formulaInputFilename = arguments.getFormulaFilename();
@@ -152,6 +195,8 @@ public class Options {
      *  DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
      *
      * @param args Two command line arguments are mandatory: -k <kripke file> specifying the kripke filename and then either -a <model> or -f <model filename>. There is an optional -s <state name> argument specifying a state to check.
+     * Or, in batch mode, -k <kripke file> and -b <formula file> with one formula per line (see Controller.runBatch). -j <threads> sets the number of threads the end to end tests run on. -x <engine> picks how formulas are checked: auto (default), global, local, symbolic or cross (see Engine). -p <threads> splits the preE, AX and fixpoint steps of big models over that many threads. -q checks the formulas on the bisimulation quotient of the kripke. -i <states> (ie, -i s1,s3) drops the states which aren't reachable from those initial states.
+     * Or -k <kripke file> -c <snapshot file> to save the kripke as a binary snapshot (see KripkeSnapshot), which can then be used as the kripke file (-k model.ksnap).
      * @throws IOException
      */
 
@@ -167,6 +212,13 @@ public class Options {
         Boolean runEndToEndTests = false;
         Boolean runOnlyMicrowave = false;
         Integer endToEndTestNum = null;
+        String batchFilename = null;
+        String snapshotFilename = null;
+        Integer numThreads = null;
+        Integer parallelism = null;
+        Engine engine = null;
+        Boolean minimize = null;
+        String initialStates = null;
 
         while (i < args.length && args[i].startsWith("-")) {
             arg = args[i++];
@@ -200,7 +252,7 @@ public class Options {
             // end to end tests
             if (arg.equals("-e")) {
                 runEndToEndTests = true;
-                if (i < args.length) {
+                if (i < args.length && !args[i].startsWith("-")) {
                     endToEndTestNum = parseInt(args[i++]);
                 }
             }
@@ -210,19 +262,82 @@ public class Options {
                 runOnlyMicrowave = true;
             }
 
+            // batch formula file
+            if (arg.equals("-b")) {
+                if (i < args.length)
+                    batchFilename = args[i++];
+            }
+
+            // snapshot file to convert the kripke file to
+            if (arg.equals("-c")) {
+                if (i < args.length)
+                    snapshotFilename = args[i++];
+            }
+
+            // number of threads for the end to end tests
+            if (arg.equals("-j")) {
+                if (i < args.length) {
+                    numThreads = parseInt(args[i++]);
+                    if (numThreads < 1) { throw new IOException("number of threads after -j must be at least 1"); }
+                }
+            }
+
+            // number of threads for the preE, AX and fixpoint steps
+            if (arg.equals("-p")) {
+                if (i < args.length) {
+                    parallelism = parseInt(args[i++]);
+                    if (parallelism < 1) { throw new IOException("number of threads after -p must be at least 1"); }
+                }
+            }
+
+            // check on the bisimulation quotient
+            if (arg.equals("-q")) {
+                minimize = true;
+            }
+
+            // initial states
+            if (arg.equals("-i")) {
+                if (i < args.length)
+                    initialStates = args[i++];
+            }
+
+            // model checking engine
+            if (arg.equals("-x")) {
+                if (i < args.length) {
+                    String engineName = args[i++];
+                    try {
+                        engine = Engine.valueOf(engineName.toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("engine after -x must be auto, global, local, symbolic or cross, not " + engineName);
+                    }
+                }
+            }
+
         }
+        modelCheckCTL.controller.types.misc.Arguments arguments = null;
         if (i != args.length)
-            System.err.println("Usage: java -jar modelCheckingCTL -k <kripke file> [-s <state to check>] -af <formula> -e [<test num>]");
-        else if (stateToCheckStr == null) {
+            System.err.println("Usage: java -jar modelCheckingCTL -k <kripke file> [-s <state to check>] -af <formula> -e [<test num>] [-j <threads>] [-x auto|global|local|symbolic|cross] [-p <threads>] [-q] [-i <initial states>] | -k <kripke file> -b <formula file> | -k <kripke file> -c <snapshot file>");
+        else if (snapshotFilename != null) {
+            arguments = modelCheckCTL.controller.types.misc.Arguments.snapshotConversion(kripkeFilename, snapshotFilename);
+        } else if (batchFilename != null) {
+            arguments = new modelCheckCTL.controller.types.misc.Arguments(kripkeFilename, batchFilename);
+        } else if (stateToCheckStr == null) {
             if (kripkeFilename.equals("")) {
-                return new modelCheckCTL.controller.types.misc.Arguments(runEndToEndTests, endToEndTestNum, runOnlyMicrowave);
+                arguments = new modelCheckCTL.controller.types.misc.Arguments(runEndToEndTests, endToEndTestNum, runOnlyMicrowave);
             } else {
-                return new modelCheckCTL.controller.types.misc.Arguments(kripkeFilename, formulaInputSource, formulaInputStr, runEndToEndTests, endToEndTestNum, runOnlyMicrowave);
+                arguments = new modelCheckCTL.controller.types.misc.Arguments(kripkeFilename, formulaInputSource, formulaInputStr, runEndToEndTests, endToEndTestNum, runOnlyMicrowave);
             }
         } else if (stateToCheckStr != null) {
-            return new modelCheckCTL.controller.types.misc.Arguments(kripkeFilename,stateToCheckStr,formulaInputSource,formulaInputStr,runEndToEndTests, endToEndTestNum, runOnlyMicrowave);
+            arguments = new modelCheckCTL.controller.types.misc.Arguments(kripkeFilename,stateToCheckStr,formulaInputSource,formulaInputStr,runEndToEndTests, endToEndTestNum, runOnlyMicrowave);
         }
-        return null;
+        if (arguments != null) {
+            arguments.numThreads = numThreads;
+            arguments.parallelism = parallelism;
+            arguments.engine = engine;
+            arguments.minimize = minimize;
+            arguments.initialStates = initialStates;
+        }
+        return arguments;
     }
 
     public String getStateToCheckStr() {
@@ -272,4 +387,46 @@ public class Options {
     public Boolean getRunOnlyMicrowave() {
         return runOnlyMicrowave;
     }
+
+    public String getBatchFilename() {
+        return batchFilename;
+    }
+
+    public Integer getNumThreads() {
+        return numThreads;
+    }
+
+    public String getSnapshotFilename() {
+        return snapshotFilename;
+    }
+
+    public Integer getParallelism() {
+        return parallelism;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public Boolean getMinimize() {
+        return minimize;
+    }
+
+    public String[] getInitialStates() {
+        return initialStates;
+    }
+
+    /**
+     * @return true if a snapshot file to convert the kripke file to was specified with -c
+     */
+    public Boolean getRunSnapshotConversion() {
+        return snapshotFilename != null;
+    }
+
+    /**
+     * @return true if a batch formula file was specified with -b
+     */
+    public Boolean getRunBatch() {
+        return batchFilename != null;
+    }
 }
@@ -35,6 +35,11 @@ public class EndToEndTestResult {
      */
     String stateToTest;
 
+    /**
+     * A {@link String} describing the first engine which disagreed with the global engine in the cross check (-x cross), ie "symbolic engine disagrees with global on s3 (holds)". Null if the engines agreed or weren't cross checked.
+     */
+    String engineMismatch;
+
     public EndToEndTestResult(modelCheckCTL.controller.types.modelCheckRelated.ModelCheckResults modelCheckResults, Boolean expectedResult, Boolean actualResult, Boolean testPass, String formula, String stateToTest) {
         this.modelCheckResults = modelCheckResults;
         this.expectedResult = expectedResult;
@@ -92,4 +97,12 @@ public class EndToEndTestResult {
         this.stateToTest = stateToTest;
     }
 
+    public String getEngineMismatch() {
+        return engineMismatch;
+    }
+
+    public void setEngineMismatch(String engineMismatch) {
+        this.engineMismatch = engineMismatch;
+    }
+
 }
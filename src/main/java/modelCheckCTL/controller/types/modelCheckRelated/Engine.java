@@ -0,0 +1,12 @@
+package modelCheckCTL.controller.types.modelCheckRelated;
+
+/**
+ * Enumerates the ways a formula can be model checked (the -x flag). GLOBAL computes the states of the whole model which hold for the formula (see {@link modelCheckCTL.controller.ctl.checker.Evaluator}). LOCAL only works out the answer for the state to check, searching forward from it (see {@link modelCheckCTL.controller.ctl.checker.LocalChecker}), and is only used when there is a state to check. SYMBOLIC computes the same states as GLOBAL with binary decision diagrams (see {@link modelCheckCTL.controller.ctl.checker.SymbolicChecker}). AUTO (the default) picks LOCAL when there is a state to check and GLOBAL otherwise. CROSS checks like GLOBAL, but in the end to end tests also checks every formula with all the other engines, with and without -q, and fails the test if any of them disagrees with GLOBAL on any state (see {@link modelCheckCTL.controller.Controller#crossCheck}).
+ */
+public enum Engine {
+    AUTO,
+    GLOBAL,
+    LOCAL,
+    SYMBOLIC,
+    CROSS
+}
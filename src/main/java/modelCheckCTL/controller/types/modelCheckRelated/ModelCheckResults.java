@@ -1,25 +1,25 @@
 package modelCheckCTL.controller.types.modelCheckRelated;
 
+import modelCheckCTL.controller.types.kripke.Kripke;
 import modelCheckCTL.controller.types.kripke.State;
+import modelCheckCTL.controller.types.kripke.StateSet;
 
 import java.util.Set;
 
-import static modelCheckCTL.utils.Utils.containsStateName;
-
 /**
  * The results of a single model check run. Contains the necessary details about how the model check went and what was checked exactly.
  */
 public class ModelCheckResults {
 
     /**
-     * {@link Set} of {@link State}s that held for the formula
+     * {@link StateSet} of the states that held for the formula. Null if only the state to check was checked (see {@link Engine#LOCAL}).
      */
-    Set statesThatHold;
+    StateSet statesThatHold;
 
     /**
-     * {@link Set} of all {@link State}s in the model
+     * {@link Kripke} the formula was checked on. The indices in statesThatHold refer to this Kripke's states.
      */
-    Set allStates;
+    Kripke kripke;
 
     /**
      * {@link State} specified to check if it holds for the model. This is optional. If omitted, all states are checked. All the end to end tests contain a state to check, but for user inputted models/formulas, the state to check is optional. Will be null if omitted.
@@ -36,14 +36,14 @@ public class ModelCheckResults {
      */
     Boolean stateToCheckHold;
 
-    public ModelCheckResults(Set statesThatHold, Set allStates, String stateToCheck, String formula) {
+    public ModelCheckResults(StateSet statesThatHold, Kripke kripke, String stateToCheck, String formula) {
         this.statesThatHold = statesThatHold;
-        this.allStates = allStates;
+        this.kripke = kripke;
         this.stateToCheck = stateToCheck;
         this.formula = formula;
 
         if (statesThatHold != null && stateToCheck != null) {
-            if (containsStateName(statesThatHold, stateToCheck)) {
+            if (holds(stateToCheck)) {
                 stateToCheckHold = true;
             } else {
                 stateToCheckHold = false;
@@ -52,6 +52,33 @@ public class ModelCheckResults {
 
     }
 
+    /**
+     * Results of a check of only the state to check (see {@link Engine#LOCAL}), which doesn't have the states that held for the formula
+     * @param stateToCheckHold true if the state to check held for the formula
+     * @param kripke {@link Kripke} the formula was checked on
+     * @param stateToCheck name of the state checked, ie "s1"
+     * @param formula the CTL formula checked
+     */
+    public ModelCheckResults(Boolean stateToCheckHold, Kripke kripke, String stateToCheck, String formula) {
+        this.kripke = kripke;
+        this.stateToCheck = stateToCheck;
+        this.formula = formula;
+        this.stateToCheckHold = stateToCheckHold;
+    }
+
+    /**
+     * Checks if a state held for the formula
+     * @param stateName {@link String} name of the state, ie "s1"
+     * @return true if the state is in the model and held for the formula. If only the state to check was checked, false for every other state.
+     */
+    public Boolean holds(String stateName) {
+        if (statesThatHold == null) {
+            return stateToCheckHold != null && stateToCheckHold && stateName != null && stateName.equals(stateToCheck);
+        }
+        int index = kripke.indexOf(stateName);
+        return index >= 0 && statesThatHold.contains(index);
+    }
+
     public String getStateToCheck() {
         return stateToCheck;
     }
@@ -68,20 +95,27 @@ public class ModelCheckResults {
         this.formula = formula;
     }
 
+    /**
+     * @return {@link Set} of all {@link State}s in the model
+     */
     public Set getAllStates() {
-        return allStates;
+        return kripke.getStates();
     }
 
-    public void setStatesThatHold(Set statesThatHold) {
+    public void setStatesThatHold(StateSet statesThatHold) {
         this.statesThatHold = statesThatHold;
     }
 
-    public Set getStatesThatHold() {
+    public StateSet getStatesThatHold() {
         return statesThatHold;
     }
 
-    public void setAllStates(Set allStates) {
-        this.allStates = allStates;
+    public Kripke getKripke() {
+        return kripke;
+    }
+
+    public void setKripke(Kripke kripke) {
+        this.kripke = kripke;
     }
 
     public Boolean getStateToCheckHold() {
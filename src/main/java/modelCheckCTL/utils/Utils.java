@@ -1,7 +1,9 @@
 package modelCheckCTL.utils;
 
 import modelCheckCTL.controller.ctl.Parser.Token;
+import modelCheckCTL.controller.types.kripke.Kripke;
 import modelCheckCTL.controller.types.kripke.State;
+import modelCheckCTL.controller.types.kripke.StateSet;
 import modelCheckCTL.controller.types.kripke.Transition;
 
 import java.io.IOException;
@@ -12,8 +14,8 @@ import java.util.*;
  * The state utilities here are: isStateName, getStatesStr, getState and statesWithLabel.
  * The transition utilities here are: getTransition and getTransitionsStr.
  * The label utility here is: getLabelsStr
- * The set utilities here are: contains, containsStateName, areEqual, copy, intersection, union and subtract.
- * The miscellaneous utilities here are: removeByteOrderMark, handleError and isTxtFile
+ * The set utilities here are: contains, containsStateName, areEqual, copy, intersection, union and subtract. The {@link StateSet} overloads of areEqual, intersection, union and subtract are the ones the model checker uses.
+ * The miscellaneous utilities here are: removeByteOrderMark, handleError, isTxtFile, isKripkeSnapshotFile and isKripkeFile
  */
 public class Utils {
 
@@ -73,12 +75,11 @@ public class Utils {
     /**
      * Gets a state from a state set, given its state number.
      * Throws IOExceptionError if state is not found. Throws NullPointerError if either param is null.
-     * @param stateNum {@link Integer} of state needed from state set
+     * @param stateNum number of state needed from state set
      * @param states The {@link Set} of {@link State}s one needs a particular state from
      * @return the {@link State} from the state set, if found
      */
-    public static State getState(Integer stateNum, Set states) throws IOException {
-        if (stateNum == null) { throw new NullPointerException("stateNum param in getState is null"); }
+    public static State getState(int stateNum, Set states) throws IOException {
         if (states == null) { throw new NullPointerException("states param in getState is null"); }
         for (Object stateObj : states) {
             if (stateObj == null) { throw new NullPointerException("a state in state set in getState is null"); }
@@ -109,6 +110,17 @@ public class Utils {
        return statesWithLabel;
     }
 
+    /**
+     * Takes a JavaCC {@link Token} of a CTL label and returns a {@link StateSet} of the states in the {@link Kripke} with that label.
+     * This is a lookup in the Kripke's label index, which is built when the Kripke is loaded.
+     * @param kripke {@link Kripke} whose states are searched for the label
+     * @param t {@link Token} of a label of which we want to know which states have it
+     * @return the shared, read-only {@link StateSet} of the states which contain the specified label
+     */
+    public static StateSet statesWithLabel(Kripke kripke, Token t) {
+        return kripke.getStatesWithLabel(t.toString());
+    }
+
 
     // Transitions Utils
 
@@ -125,7 +137,7 @@ public class Utils {
         for (Object transitionObj : transitions) {
             if (transitionObj == null) { throw new NullPointerException("a state in state set in getState is null"); }
             Transition transition = (Transition) transitionObj;
-            if (transition.getNumber() == transitionNum) {
+            if (transitionNum.equals(transition.getNumber())) {
                 return transition;
             }
         }
@@ -208,7 +220,7 @@ public class Utils {
     public static Boolean contains(Set states, State state) {
         if (states == null) { throw new NullPointerException("States param in contains is null"); }
         if (state == null) { throw new NullPointerException("State param in contains is null"); }
-        Integer stateNum = state.getNumber();
+        int stateNum = state.getNumber();
         for (Object stateObj : states) {
             State thisState = (State) stateObj;
             if (thisState.getNumber() == stateNum) {
@@ -275,7 +287,7 @@ public class Utils {
         Set copy = new HashSet();
         for (Object stateObj : set) {
             State state = (State) stateObj;
-            Integer stateNum = state.getNumber();
+            int stateNum = state.getNumber();
             Set copyLabels = state.getLabels();
             State copyState = new State(stateNum);
             Set stateTransitions = state.getTransitions();
@@ -339,13 +351,54 @@ public class Utils {
         Set aCopy = copy(a);
         for (Object stateObj : b) {
             State thisState = (State) stateObj;
-            Integer stateNumToRemove = thisState.getNumber();
+            int stateNumToRemove = thisState.getNumber();
             State stateToRemove = getState(stateNumToRemove,aCopy);
             aCopy.remove(stateToRemove);
         }
         return aCopy;
     }
 
+    /**
+     * Tests if two {@link StateSet}s contain exactly the same states
+     * @param setA {@link StateSet} to be compared to setB
+     * @param setB {@link StateSet} to be compared to setA
+     * @return true if the sets contain the same states
+     */
+    public static Boolean areEqual(StateSet setA, StateSet setB) {
+        if (setA == null || setB == null) { throw new NullPointerException("areEqual param(s) is null."); }
+        return setA.equals(setB);
+    }
+
+    /**
+     * {@link StateSet} intersection operation. Neither param is modified.
+     * @param a first {@link StateSet} for the intersection operation
+     * @param b second {@link StateSet} for the intersection operation
+     * @return a new {@link StateSet} of the states which are in both supplied sets
+     */
+    public static StateSet intersection(StateSet a, StateSet b) {
+        return a.intersection(b);
+    }
+
+    /**
+     * {@link StateSet} union operation. Neither param is modified.
+     * @param a first {@link StateSet} for the union operation
+     * @param b second {@link StateSet} for the union operation
+     * @return a new {@link StateSet} of the states which are in either set
+     */
+    public static StateSet union(StateSet a, StateSet b) {
+        return a.union(b);
+    }
+
+    /**
+     * {@link StateSet} subtraction operation. Neither param is modified.
+     * @param a {@link StateSet} to subtract from
+     * @param b {@link StateSet} of states to subtract
+     * @return a new {@link StateSet} of the states in a which are not in b
+     */
+    public static StateSet subtract(StateSet a, StateSet b) {
+        return a.difference(b);
+    }
+
 
     // Misc Utils
 
@@ -397,4 +450,26 @@ public class Utils {
         return true;
     }
 
+    /**
+     * Checks if {@link String} ends in .ksnap (a {@link modelCheckCTL.controller.types.kripke.KripkeSnapshot} file) and has at least one character before the period.
+     * Throws NullPointerException if {@link String} is null.
+     * @param str The {@link String} one wants to check if it ends in .ksnap
+     * @return false if string doesn't match the conditions above, otherwise returns true.
+     */
+    public static Boolean isKripkeSnapshotFile(String str) {
+        if (str == null) { throw new NullPointerException("isKripkeSnapshotFile param is null"); }
+        int indexOfPeriod = str.lastIndexOf(".");
+        return indexOfPeriod > 0 && str.substring(indexOfPeriod).equals(".ksnap");
+    }
+
+    /**
+     * Checks if {@link String} is a kripke file name, either a kripke text file (.txt) or a kripke snapshot (.ksnap)
+     * @param str The {@link String} one wants to check
+     * @return true if it ends in .txt or .ksnap with at least one character before the period
+     * @throws IOException
+     */
+    public static Boolean isKripkeFile(String str) throws IOException {
+        return isTxtFile(str) || isKripkeSnapshotFile(str);
+    }
+
 }
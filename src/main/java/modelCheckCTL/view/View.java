@@ -1,13 +1,14 @@
 package modelCheckCTL.view;
 
+import modelCheckCTL.controller.types.kripke.Kripke;
 import modelCheckCTL.controller.types.kripke.State;
+import modelCheckCTL.controller.types.kripke.StateSet;
 import modelCheckCTL.controller.types.misc.Options;
 import modelCheckCTL.controller.types.modelCheckRelated.*;
 
 import java.util.List;
 import java.util.Set;
 
-import static modelCheckCTL.utils.Utils.containsStateName;
 import static modelCheckCTL.utils.Utils.handleError;
 
 /**
@@ -102,8 +103,11 @@ public class View {
             Boolean testPass = endToEndTestResult.getTestPass();
             String formula = endToEndTestResult.getFormula();
             String stateToTest = endToEndTestResult.getStateToTest();
+            String engineMismatch = endToEndTestResult.getEngineMismatch();
 
-            if (testPass) {
+            if (engineMismatch != null) {
+                System.out.println("❌ failed model checking - " + formula + ": " + engineMismatch);
+            } else if (testPass) {
                 if (actualResult) {
                     System.out.println("✅ passed model checking - " + formula + " holds for " + stateToTest);
                 } else if (!actualResult) {
@@ -157,8 +161,11 @@ public class View {
             Boolean testPass = endToEndTestResult.getTestPass();
             String formula = endToEndTestResult.getFormula();
             String stateToTest = endToEndTestResult.getStateToTest();
+            String engineMismatch = endToEndTestResult.getEngineMismatch();
 
-            if (testPass) {
+            if (engineMismatch != null) {
+                System.out.println("❌ failed model checking - " + formula + ": " + engineMismatch);
+            } else if (testPass) {
                 if (actualResult) {
                     System.out.println("✅ passed model checking - " + formula + " holds for " + stateToTest);
                 } else if (!actualResult) {
@@ -232,7 +239,6 @@ public class View {
      * @param modelCheckResults
      */
     public void printModelCheckResults(ModelCheckResults modelCheckResults) {
-        Set statesThatHold = modelCheckResults.getStatesThatHold();
         Set allStates = modelCheckResults.getAllStates();
         String stateToCheck = modelCheckResults.getStateToCheck();
         String formula = modelCheckResults.getFormula();
@@ -247,7 +253,7 @@ public class View {
             for (Object stateObj : allStates) {
                 State state = (State) stateObj;
                 String stateStr = state.toString();
-                if (containsStateName(statesThatHold,stateStr)) {
+                if (modelCheckResults.holds(stateStr)) {
                    System.out.println("✅ " + stateStr + " holds for " + formula);
                 } else {
                     System.out.println("❌ " + stateStr + " does not hold for " + formula);
@@ -256,4 +262,64 @@ public class View {
         }
     }
 
+    /**
+     * Prints the result of one formula in batch mode, on one line. With a state to check, says whether the state holds. Without one, lists all the states which hold.
+     * @param lineNum line number of the formula in the batch formula file
+     * @param modelCheckResults results of checking the formula
+     */
+    public void printBatchResult(int lineNum, ModelCheckResults modelCheckResults) {
+        String stateToCheck = modelCheckResults.getStateToCheck();
+        String formula = modelCheckResults.getFormula();
+        if (stateToCheck != null) {
+            if (modelCheckResults.getStateToCheckHold()) {
+                System.out.println("✅ " + stateToCheck + " holds for " + formula + " (line " + lineNum + ")");
+            } else {
+                System.out.println("❌ " + stateToCheck + " does not hold for " + formula + " (line " + lineNum + ")");
+            }
+        } else {
+            StateSet statesThatHold = modelCheckResults.getStatesThatHold();
+            Kripke kripke = modelCheckResults.getKripke();
+            StringBuilder states = new StringBuilder();
+            for (int i = statesThatHold.nextSetBit(0); i >= 0; i = statesThatHold.nextSetBit(i + 1)) {
+                if (states.length() > 0) { states.append(", "); }
+                states.append(kripke.getStateName(i));
+            }
+            if (states.length() > 0) {
+                System.out.println("✅ " + formula + " holds for " + states + " (line " + lineNum + ")");
+            } else {
+                System.out.println("❌ " + formula + " holds for no states (line " + lineNum + ")");
+            }
+        }
+    }
+
+    /**
+     * Prints a batch mode line which couldn't be checked
+     * @param lineNum line number of the formula in the batch formula file
+     * @param formula the formula on the line
+     * @param error what was wrong with the line
+     */
+    public void printBatchError(int lineNum, String formula, String error) {
+        System.out.println("❌ error on line " + lineNum + " (\"" + formula + "\"): " + error);
+    }
+
+    /**
+     * Prints the totals at the end of batch mode
+     * @param batchFilename name of the batch formula file
+     * @param numChecked number of formulas checked
+     * @param numErrors number of lines which couldn't be checked
+     */
+    public void printBatchSummary(String batchFilename, int numChecked, int numErrors) {
+        System.out.println("-- batch done: " + numChecked + " formulas checked, " + numErrors + " errors (" + batchFilename + ") --");
+    }
+
+    /**
+     * Prints the result of converting a kripke text file to a snapshot (-c)
+     * @param kripkeFilename name of the kripke text file
+     * @param snapshotFilename name of the snapshot file written
+     * @param kripke the {@link Kripke} which was saved
+     */
+    public void printSnapshotSaved(String kripkeFilename, String snapshotFilename, Kripke kripke) {
+        System.out.println("✅ saved " + kripkeFilename + " as snapshot " + snapshotFilename + " (" + kripke.getNumStates() + " states, " + kripke.getNumTransitions() + " transitions, " + kripke.getNumAtoms() + " atoms)");
+    }
+
 }
@@ -0,0 +1,229 @@
+package modelCheckCTL.controller.ctl.bdd;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the {@link BddManager} operations against truth tables: every BDD is evaluated on all the assignments of its NUM_VARS variables (assignment a gives variable v the value of bit v of a), before and after forced garbage collection and reordering
+ */
+public class BddManagerTest {
+
+    private static final int NUM_VARS = 8;
+
+    private static final int NUM_ASSIGNMENTS = 1 << NUM_VARS;
+
+    /**
+     * Regression: fromKeys used to check its variables against the level order before the operation started, so a reordering at the start of the operation built the BDD against a stale order
+     */
+    @Test
+    public void fromKeysIsRightWhenTheOperationReorders() {
+        Random random = new Random(1);
+        BddManager bdd = new BddManager(NUM_VARS);
+        bdd.setAutoReorder(true);
+        bdd.setStressTest(true);
+        // x0 == x4, x1 == x5, ... (with the variables shuffled) is big unless the pairs are next to each other, so each new pairing makes sifting move the variables at the start of the next operation
+        int pairs = BddManager.TRUE;
+        for (int round = 0; round < 100; round++) {
+            int[] pairing = randomOrder(random);
+            boolean[] pairsEqual = new boolean[NUM_ASSIGNMENTS];
+            for (int a = 0; a < NUM_ASSIGNMENTS; a++) {
+                pairsEqual[a] = true;
+                for (int i = 0; i < NUM_VARS / 2; i++) {
+                    pairsEqual[a] &= (a >>> pairing[i] & 1) == (a >>> pairing[i + NUM_VARS / 2] & 1);
+                }
+            }
+            int nextPairs = bdd.ref(fromTable(bdd, pairsEqual, identityOrder(), random));
+            if (pairs != BddManager.TRUE) { bdd.deref(pairs); }
+            pairs = nextPairs;
+            boolean[] expected = randomTable(random);
+            int f = bdd.ref(fromTable(bdd, expected, round % 2 == 0 ? identityOrder() : randomOrder(random), random));
+            assertArrayEquals("round " + round, expected, table(bdd, f));
+            assertArrayEquals("round " + round, pairsEqual, table(bdd, pairs));
+            bdd.deref(f);
+        }
+    }
+
+    @Test
+    public void operationsMatchTruthTablesAcrossReordering() {
+        Random random = new Random(2);
+        for (int round = 0; round < 40; round++) {
+            BddManager bdd = new BddManager(NUM_VARS);
+            bdd.setAutoReorder(round % 2 == 0);
+            bdd.setStressTest(round % 4 == 0);
+            boolean[] tf = randomTable(random);
+            boolean[] tg = randomTable(random);
+            boolean[] th = randomTable(random);
+            int f = bdd.ref(fromTable(bdd, tf, randomOrder(random), random));
+            int g = bdd.ref(fromTable(bdd, tg, randomOrder(random), random));
+            int h = bdd.ref(fromTable(bdd, th, randomOrder(random), random));
+            bdd.reorder();
+
+            int[] quantified = randomSubset(random);
+            boolean[] inCube = new boolean[NUM_VARS];
+            for (int v : quantified) {
+                inCube[v] = true;
+            }
+            int cube = bdd.ref(bdd.cube(quantified));
+            int[] renaming = randomOrder(random);
+            int replacement = bdd.newReplacement(renaming);
+
+            List<Integer> results = new ArrayList<Integer>();
+            List<boolean[]> expected = new ArrayList<boolean[]>();
+            boolean[] and = new boolean[NUM_ASSIGNMENTS];
+            boolean[] or = new boolean[NUM_ASSIGNMENTS];
+            boolean[] diff = new boolean[NUM_ASSIGNMENTS];
+            boolean[] not = new boolean[NUM_ASSIGNMENTS];
+            boolean[] ite = new boolean[NUM_ASSIGNMENTS];
+            boolean[] renamed = new boolean[NUM_ASSIGNMENTS];
+            for (int a = 0; a < NUM_ASSIGNMENTS; a++) {
+                and[a] = tf[a] && tg[a];
+                or[a] = tf[a] || tg[a];
+                diff[a] = tf[a] && !tg[a];
+                not[a] = !tf[a];
+                ite[a] = tf[a] ? tg[a] : th[a];
+                int b = 0;
+                for (int v = 0; v < NUM_VARS; v++) {
+                    if ((a >>> renaming[v] & 1) != 0) { b |= 1 << v; }
+                }
+                renamed[a] = tf[b];
+            }
+            results.add(bdd.ref(bdd.and(f, g)));
+            expected.add(and);
+            results.add(bdd.ref(bdd.or(f, g)));
+            expected.add(or);
+            results.add(bdd.ref(bdd.diff(f, g)));
+            expected.add(diff);
+            results.add(bdd.ref(bdd.not(f)));
+            expected.add(not);
+            results.add(bdd.ref(bdd.ite(f, g, h)));
+            expected.add(ite);
+            bdd.reorder();
+            results.add(bdd.ref(bdd.exists(f, cube)));
+            expected.add(exists(tf, inCube));
+            results.add(bdd.ref(bdd.relProd(f, g, cube)));
+            expected.add(exists(and, inCube));
+            results.add(bdd.ref(bdd.replace(f, replacement)));
+            expected.add(renamed);
+
+            for (int i = 0; i < results.size(); i++) {
+                assertArrayEquals("round " + round + " result " + i, expected.get(i), table(bdd, results.get(i)));
+            }
+            bdd.gc();
+            bdd.reorder();
+            for (int i = 0; i < results.size(); i++) {
+                assertArrayEquals("round " + round + " result " + i + " after reordering", expected.get(i), table(bdd, results.get(i)));
+            }
+            // the same operations again give the same nodes, since every node is unique
+            assertEquals(results.get(0).intValue(), bdd.and(f, g));
+            assertEquals(results.get(6).intValue(), bdd.relProd(f, g, cube));
+        }
+    }
+
+    /**
+     * @return the BDD of a truth table, built with fromKeys with the variables in the given order
+     */
+    private static int fromTable(BddManager bdd, boolean[] table, int[] vars, Random random) {
+        long[] keys = new long[2 * NUM_ASSIGNMENTS];
+        int count = 0;
+        for (int a = 0; a < NUM_ASSIGNMENTS; a++) {
+            if (!table[a]) { continue; }
+            long key = 0;
+            for (int i = 0; i < vars.length; i++) {
+                key = (key << 1) | (a >>> vars[i] & 1);
+            }
+            keys[count++] = key;
+            if (random.nextInt(4) == 0) { keys[count++] = key; }  // fromKeys takes duplicates
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long swap = keys[i];
+            keys[i] = keys[j];
+            keys[j] = swap;
+        }
+        return bdd.fromKeys(keys, count, vars);
+    }
+
+    /**
+     * @return the truth table of f, checking on the way that the variables of every path go down the levels (which the operations rely on)
+     */
+    private static boolean[] table(BddManager bdd, int f) {
+        boolean[] table = new boolean[NUM_ASSIGNMENTS];
+        for (int a = 0; a < NUM_ASSIGNMENTS; a++) {
+            int node = f;
+            int level = -1;
+            while (node != BddManager.FALSE && node != BddManager.TRUE) {
+                assertTrue("variables out of level order", bdd.getLevel(bdd.getVar(node)) > level);
+                level = bdd.getLevel(bdd.getVar(node));
+                node = (a >>> bdd.getVar(node) & 1) != 0 ? bdd.getHigh(node) : bdd.getLow(node);
+            }
+            table[a] = node == BddManager.TRUE;
+        }
+        return table;
+    }
+
+    private static boolean[] exists(boolean[] table, boolean[] inCube) {
+        boolean[] result = new boolean[NUM_ASSIGNMENTS];
+        for (int a = 0; a < NUM_ASSIGNMENTS; a++) {
+            if (!table[a]) { continue; }
+            int free = 0;
+            for (int v = 0; v < NUM_VARS; v++) {
+                if (inCube[v]) { free |= 1 << v; }
+            }
+            int fixed = a & ~free;
+            // every assignment which only differs from a on the quantified variables
+            for (int sub = free; ; sub = (sub - 1) & free) {
+                result[fixed | sub] = true;
+                if (sub == 0) { break; }
+            }
+        }
+        return result;
+    }
+
+    private static boolean[] randomTable(Random random) {
+        boolean[] table = new boolean[NUM_ASSIGNMENTS];
+        double density = random.nextDouble();
+        for (int a = 0; a < NUM_ASSIGNMENTS; a++) {
+            table[a] = random.nextDouble() < density;
+        }
+        return table;
+    }
+
+    private static int[] identityOrder() {
+        int[] vars = new int[NUM_VARS];
+        for (int v = 0; v < NUM_VARS; v++) {
+            vars[v] = v;
+        }
+        return vars;
+    }
+
+    private static int[] randomOrder(Random random) {
+        int[] vars = identityOrder();
+        for (int i = NUM_VARS - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = vars[i];
+            vars[i] = vars[j];
+            vars[j] = swap;
+        }
+        return vars;
+    }
+
+    private static int[] randomSubset(Random random) {
+        List<Integer> vars = new ArrayList<Integer>();
+        for (int v = 0; v < NUM_VARS; v++) {
+            if (random.nextBoolean()) { vars.add(v); }
+        }
+        int[] subset = new int[vars.size()];
+        for (int i = 0; i < subset.length; i++) {
+            subset[i] = vars.get(i);
+        }
+        return subset;
+    }
+
+}
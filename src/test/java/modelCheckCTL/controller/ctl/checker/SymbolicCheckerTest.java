@@ -0,0 +1,198 @@
+package modelCheckCTL.controller.ctl.checker;
+
+import modelCheckCTL.controller.ctl.Parser.Parser;
+import modelCheckCTL.controller.ctl.bdd.BddManager;
+import modelCheckCTL.controller.ctl.formula.Formula;
+import modelCheckCTL.controller.types.kripke.Kripke;
+import modelCheckCTL.controller.types.kripke.KripkeFileObj;
+import modelCheckCTL.controller.types.kripke.KripkeLoader;
+import modelCheckCTL.controller.types.kripke.StateSet;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks the {@link SymbolicChecker} (and the {@link BddManager} under it) against the {@link Evaluator} on random models, with the BDDs garbage collected and reordered in every operation. The models have states without transitions, so the deadlock rules are covered too.
+ */
+public class SymbolicCheckerTest {
+
+    private static final String[] ATOMS = { "p", "q", "r" };
+
+    private static final String[] UNARY_OPERATORS = { "AX", "AF", "AG", "EX", "EF", "EG" };
+
+    private static final String[] BINARY_OPERATORS = { "and", "or", "->" };
+
+    @Test
+    public void stressTestedSymbolicCheckerMatchesEvaluator() throws Exception {
+        Random random = new Random(1);
+        for (int model = 0; model < 60; model++) {
+            Kripke kripke = randomKripke(random, 1 + random.nextInt(model % 2 == 0 ? 12 : 60));
+            Evaluator evaluator = new Evaluator(kripke);
+            SymbolicChecker stressTested = new SymbolicChecker(kripke, true);
+            SymbolicChecker symbolicChecker = new SymbolicChecker(kripke);
+            for (int i = 0; i < 8; i++) {
+                String formula = formula(random, 1 + random.nextInt(4));
+                Formula compiledFormula = Parser.compile(formula);
+                StateSet expected = evaluator.evaluate(compiledFormula);
+                assertEquals(formula + " on model " + model, expected, stressTested.evaluate(compiledFormula));
+                assertEquals(formula + " on model " + model, expected, symbolicChecker.evaluate(compiledFormula));
+            }
+        }
+    }
+
+    /**
+     * The atoms on their own, which are the only BDDs SymbolicChecker builds after the model with fromKeys
+     */
+    @Test
+    public void stressTestedAtomsMatchLabels() throws Exception {
+        Random random = new Random(2);
+        for (int model = 0; model < 100; model++) {
+            Kripke kripke = randomKripke(random, 4 + random.nextInt(7));
+            SymbolicChecker stressTested = new SymbolicChecker(kripke, true);
+            for (String atom : ATOMS) {
+                assertEquals(atom + " on model " + model, kripke.getStatesWithLabel(atom), stressTested.evaluate(Parser.compile(atom)));
+            }
+        }
+    }
+
+    /**
+     * Raw {@link BddManager} operations on a model's transition relation, with the states encoded by index and the variables forced into a new order first: the preimage of every atom has to be the Evaluator's EX of it
+     */
+    @Test
+    public void preimageAfterReorderingMatchesEvaluator() throws Exception {
+        Random random = new Random(3);
+        for (int model = 0; model < 40; model++) {
+            Kripke kripke = randomKripke(random, 1 + random.nextInt(60));
+            int n = kripke.getNumStates();
+            int numBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(0, n - 1)));
+            BddManager bdd = new BddManager(2 * numBits);
+            int[] currentVars = new int[numBits];
+            int[] nextVars = new int[numBits];
+            int[] bothVars = new int[2 * numBits];
+            int[] toNextMap = new int[2 * numBits];
+            for (int b = 0; b < numBits; b++) {
+                currentVars[b] = 2 * b;
+                nextVars[b] = 2 * b + 1;
+                toNextMap[2 * b] = 2 * b + 1;
+                toNextMap[2 * b + 1] = -1;
+            }
+            for (int v = 0; v < 2 * numBits; v++) {
+                bothVars[v] = v;
+            }
+            int[] succOffsets = kripke.getSuccOffsets();
+            int[] succTargets = kripke.getSuccTargets();
+            long[] edgeKeys = new long[succOffsets[n]];
+            for (int i = 0; i < n; i++) {
+                for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+                    edgeKeys[s] = (long) i << numBits | succTargets[s];
+                }
+            }
+            // the keys have all the current bits first, so the starting (interleaved) order isn't theirs
+            int[] keyVars = new int[2 * numBits];
+            System.arraycopy(currentVars, 0, keyVars, 0, numBits);
+            System.arraycopy(nextVars, 0, keyVars, numBits, numBits);
+            int transitions = bdd.ref(bdd.fromKeys(edgeKeys, edgeKeys.length, keyVars));
+            int nextCube = bdd.ref(bdd.cube(nextVars));
+            int toNext = bdd.newReplacement(toNextMap);
+            bdd.reorder();
+            Evaluator evaluator = new Evaluator(kripke);
+            for (String atom : ATOMS) {
+                StateSet labelled = kripke.getStatesWithLabel(atom);
+                long[] keys = new long[n];
+                int count = 0;
+                for (int i = labelled.nextSetBit(0); i >= 0; i = labelled.nextSetBit(i + 1)) {
+                    keys[count++] = i;
+                }
+                int phi = bdd.ref(bdd.fromKeys(keys, count, currentVars));
+                bdd.reorder();
+                int preimage = bdd.ref(bdd.relProd(transitions, bdd.replace(phi, toNext), nextCube));
+                bdd.gc();
+                StateSet expected = evaluator.evaluate(Parser.compile("EX " + atom));
+                for (int i = 0; i < n; i++) {
+                    assertEquals("EX " + atom + " for state " + i + " on model " + model, expected.contains(i), holds(bdd, preimage, i, numBits));
+                }
+                bdd.deref(phi);
+                bdd.deref(preimage);
+            }
+        }
+    }
+
+    /**
+     * @return whether the BDD over the current state variables is true for the state with index state
+     */
+    private static boolean holds(BddManager bdd, int f, int state, int numBits) {
+        int node = f;
+        while (node != BddManager.FALSE && node != BddManager.TRUE) {
+            int var = bdd.getVar(node);
+            int bit = state >>> (numBits - 1 - var / 2) & 1;  // current state bit b is variable 2b, most significant bit first
+            node = bit != 0 ? bdd.getHigh(node) : bdd.getLow(node);
+        }
+        return node == BddManager.TRUE;
+    }
+
+    /**
+     * @return a random {@link Kripke} with about 15% of its states without transitions and each atom on about 40% of the states
+     */
+    private static Kripke randomKripke(Random random, int numStates) throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < numStates; i++) {
+            text.append(i > 0 ? ", " : "").append("s").append(i);
+        }
+        text.append(";\n");
+        TreeSet<Long> edges = new TreeSet<Long>();
+        for (int i = 0; i < numStates; i++) {
+            if (random.nextDouble() < 0.15) { continue; }
+            int numSuccessors = 1 + random.nextInt(3);
+            for (int j = 0; j < numSuccessors; j++) {
+                edges.add((long) i * numStates + random.nextInt(numStates));
+            }
+        }
+        if (edges.isEmpty()) { edges.add(0L); }
+        List<String> transitions = new ArrayList<String>();
+        for (long edge : edges) {
+            transitions.add("t" + (transitions.size() + 1) + " : s" + edge / numStates + " - s" + edge % numStates);
+        }
+        appendLines(text, transitions);
+        List<String> labels = new ArrayList<String>();
+        for (int i = 0; i < numStates; i++) {
+            StringBuilder label = new StringBuilder("s" + i + " :");
+            for (String atom : ATOMS) {
+                if (random.nextDouble() < 0.4) { label.append(" ").append(atom); }
+            }
+            labels.add(label.toString());
+        }
+        appendLines(text, labels);
+        KripkeFileObj kripkeFileObj = new KripkeLoader().load("random model", new ByteArrayInputStream(text.toString().getBytes("UTF-8")));
+        assertNull(kripkeFileObj.getErrorMessage());
+        return kripkeFileObj.getKripke();
+    }
+
+    private static void appendLines(StringBuilder text, List<String> lines) {
+        for (int i = 0; i < lines.size(); i++) {
+            text.append(lines.get(i)).append(i < lines.size() - 1 ? ",\n" : ";\n");
+        }
+    }
+
+    private static String formula(Random random, int depth) {
+        String expression = expression(random, depth);
+        if (depth > 0 && random.nextDouble() < 0.35) { return expression + " " + BINARY_OPERATORS[random.nextInt(BINARY_OPERATORS.length)] + " " + formula(random, depth - 1); }
+        return expression;
+    }
+
+    private static String expression(Random random, int depth) {
+        int choice = depth <= 0 ? 0 : random.nextInt(10);
+        if (choice <= 1) { return ATOMS[random.nextInt(ATOMS.length)]; }
+        if (choice == 2) { return "not " + expression(random, depth - 1); }
+        if (choice == 3) { return "(" + formula(random, depth - 1) + ")"; }
+        if (choice <= 7) { return UNARY_OPERATORS[random.nextInt(UNARY_OPERATORS.length)] + " " + expression(random, depth - 1); }
+        return (random.nextBoolean() ? "E" : "A") + "(" + expression(random, depth - 1) + " U " + expression(random, depth - 1) + ")";
+    }
+
+}